@@ -33,7 +33,9 @@ void QuadrumCode::startup(const uint8_t* animationData, uint16_t planeRate) {
 	this->animationData = (int8_t*) animationData;
 	this->loopCallWait = (1000000.0f / (float) planeRate);
 	
-	this->channelCount = animationData[1];
+	this->compressed = (animationData[1] & COMPRESSED_FLAG) != 0;
+	this->frameTable = (animationData[1] & FRAME_TABLE_FLAG) != 0;
+	this->channelCount = animationData[1] & ~(COMPRESSED_FLAG | FRAME_TABLE_FLAG);
 	this->channelSize = animationData[2];
 	this->channelMaxValue = (int16_t) pow(2, channelSize) - 1;
 	
@@ -43,7 +45,20 @@ void QuadrumCode::startup(const uint8_t* animationData, uint16_t planeRate) {
 	this->frameCount = bti.value;
 	
 	int16_t frameBitSize = pow(cubeSide, 3) * channelCount * channelSize;
-	this->frameDataSize = (int16_t) (ceil((float) frameBitSize / (float) BYTE_SIZE)) + 4;	// + 4 (sizeof(float)) because of frame duration at beginning
+	this->voxelDataSize = (uint16_t) ceil((float) frameBitSize / (float) BYTE_SIZE);
+	this->frameDataSize = (int16_t) voxelDataSize + 4;	// + 4 (sizeof(float)) because of frame duration at beginning
+	
+	if(compressed) {	// frames are decoded into ram as they are shown
+		frameBuffer = (int8_t*) malloc(voxelDataSize);
+		if(frameBuffer == NULL)
+			cubeSide = -1;	// not enough ram, start fails
+		readPosition = INIT_DATA_SIZE;
+	}
+	if(frameTable) {	// every distinct frame is stored once, steps point at them
+		uint16_t payloadCount = (uint16_t) (uint8_t) animationData[5] | ((uint16_t) (uint8_t) animationData[6] << 8);
+		offsetTablePosition = FRAME_TABLE_INIT_DATA_SIZE + ((uint32_t) (uint16_t) frameCount * FRAME_TABLE_STEP_SIZE);
+		payloadPosition = offsetTablePosition + ((uint32_t) payloadCount * FRAME_TABLE_OFFSET_SIZE);
+	}
 }
 
 bool QuadrumCode::start() {
@@ -54,12 +69,34 @@ bool QuadrumCode::start() {
 		uint32_t startTime = micros();
 		
 		if(micros() > incrementFrameTime) {
-			ByteToFloat frameDuration;
-			for(int16_t i = 0; i < sizeof(float); i++)
-				frameDuration.bytes[i] = (uint8_t) animationData[INIT_DATA_SIZE + (currentFrame * frameDataSize) + i];
-			incrementFrameTime = (uint32_t) (frameDuration.value * 1000.0f) + micros();
-			
-			voxelData = &animationData[INIT_DATA_SIZE + (currentFrame * frameDataSize) + sizeof(float)];
+			if(frameTable) {
+				float frameDuration;
+				uint32_t position = readTablePayload(currentFrame, &frameDuration);
+				incrementFrameTime = (uint32_t) (frameDuration * 1000.0f) + micros();
+				
+				if(compressed) {
+					readPosition = position;
+					decodeFrame();
+					voxelData = frameBuffer;
+				}
+				else {
+					voxelData = &animationData[position];
+				}
+			}
+			else if(compressed) {
+				if(currentFrame == 0)
+					readPosition = INIT_DATA_SIZE;
+				incrementFrameTime = (uint32_t) (readFloat(readPosition) * 1000.0f) + micros();
+				
+				readPosition += sizeof(float);
+				decodeFrame();
+				voxelData = frameBuffer;
+			}
+			else {
+				incrementFrameTime = (uint32_t) (readFloat(INIT_DATA_SIZE + ((uint32_t) currentFrame * frameDataSize)) * 1000.0f) + micros();
+				
+				voxelData = &animationData[INIT_DATA_SIZE + (currentFrame * frameDataSize) + sizeof(float)];
+			}
 			currentFrame++;
 			if(currentFrame >= frameCount)
 				currentFrame = 0;
@@ -80,6 +117,60 @@ void QuadrumCode::terminate() {
 	continueAnimation = false;
 }
 
+float QuadrumCode::readFloat(uint32_t position) {
+	ByteToFloat btf;
+	for(int16_t i = 0; i < sizeof(float); i++)
+		btf.bytes[i] = (uint8_t) animationData[position + i];
+	return btf.value;
+}
+uint32_t QuadrumCode::readTablePayload(int16_t step, float* duration) {
+	uint32_t stepPosition = FRAME_TABLE_INIT_DATA_SIZE + ((uint32_t) step * FRAME_TABLE_STEP_SIZE);
+	uint16_t payloadIndex = (uint16_t) (uint8_t) animationData[stepPosition] | ((uint16_t) (uint8_t) animationData[stepPosition + 1] << 8);
+	*duration = readFloat(stepPosition + 2);
+	
+	uint32_t offsetPosition = offsetTablePosition + ((uint32_t) payloadIndex * FRAME_TABLE_OFFSET_SIZE);
+	uint32_t offset = 0;
+	for(int16_t i = FRAME_TABLE_OFFSET_SIZE - 1; i >= 0; i--)
+		offset = (offset << 8) | (uint8_t) animationData[offsetPosition + i];
+	return payloadPosition + offset;
+}
+
+void QuadrumCode::decodeFrame() {
+	uint8_t encoding = (uint8_t) animationData[readPosition];
+	uint16_t payloadLength = (uint16_t) (uint8_t) animationData[readPosition + 1] | ((uint16_t) (uint8_t) animationData[readPosition + 2] << 8);
+	const uint8_t* payload = (const uint8_t*) &animationData[readPosition + FRAME_HEADER_SIZE];
+	
+	if(encoding == ENCODING_RAW) {
+		memcpy(frameBuffer, payload, voxelDataSize);
+		payloadLength = voxelDataSize;	// raw frames do not store their length
+	}
+	else {
+		decodeRle(payload, payloadLength, encoding == ENCODING_DELTA_RLE);
+	}
+	readPosition += FRAME_HEADER_SIZE + payloadLength;
+}
+void QuadrumCode::decodeRle(const uint8_t* payload, uint16_t payloadLength, bool xorDelta) {
+	uint16_t writePos = 0;
+	uint16_t readPos = 0;
+	while(readPos < payloadLength && writePos < voxelDataSize) {
+		uint8_t control = payload[readPos++];
+		if(control < RLE_REPEAT_FLAG) {	// control + 1 literal bytes
+			for(uint16_t i = 0; i <= control && writePos < voxelDataSize; i++, readPos++, writePos++)
+				frameBuffer[writePos] = xorDelta ? frameBuffer[writePos] ^ payload[readPos] : payload[readPos];
+		}
+		else {	// one byte repeated
+			uint16_t repeat = control - RLE_REPEAT_FLAG + RLE_MIN_REPEAT;
+			uint8_t value = payload[readPos++];
+			if(xorDelta && value == 0) {	// unchanged run
+				writePos += repeat;
+				continue;
+			}
+			for(uint16_t i = 0; i < repeat && writePos < voxelDataSize; i++, writePos++)
+				frameBuffer[writePos] = xorDelta ? frameBuffer[writePos] ^ value : value;
+		}
+	}
+}
+
 uint8_t QuadrumCode::getChannelBrightness(uint16_t channel, uint16_t x, uint16_t y, uint16_t z) {
     if(channel >= channelCount)
 		return 0;
@@ -55,6 +55,13 @@ private:
 	const int16_t BYTE_SIZE = 8,
 			INIT_DATA_SIZE = 5;
 	
+	// compressed animations and frame tables, see AnimationEncoder in the Quadrum editor
+	const uint8_t COMPRESSED_FLAG = 0x80, FRAME_TABLE_FLAG = 0x40;
+	const uint8_t ENCODING_RAW = 0, ENCODING_RLE = 1, ENCODING_DELTA_RLE = 2;
+	const uint8_t RLE_REPEAT_FLAG = 0x80, RLE_MIN_REPEAT = 3;
+	const int16_t FRAME_HEADER_SIZE = 3;
+	const int16_t FRAME_TABLE_INIT_DATA_SIZE = 7, FRAME_TABLE_STEP_SIZE = 6, FRAME_TABLE_OFFSET_SIZE = 4;
+	
 	int16_t cubeSide, channelCount, channelSize, channelMaxValue;
 	
 	int16_t frameCount, frameDataSize;
@@ -66,10 +73,23 @@ private:
 	int8_t* animationData;
 	int8_t* voxelData;
 	
+	bool compressed = false;
+	uint16_t voxelDataSize;
+	uint32_t readPosition;	// position of the next frame in a compressed animation
+	int8_t* frameBuffer = NULL;	// decoded frame of a compressed animation
+	
+	bool frameTable = false;
+	uint32_t offsetTablePosition, payloadPosition;	// steps start at FRAME_TABLE_INIT_DATA_SIZE
+	
 	bool continueAnimation = true;
 	
 	void startup(const uint8_t* animationData, uint16_t planeRate);
 	
+	float readFloat(uint32_t position);
+	uint32_t readTablePayload(int16_t step, float* duration);	// returns the position of the step's payload
+	void decodeFrame();	// decodes the frame at readPosition into frameBuffer
+	void decodeRle(const uint8_t* payload, uint16_t payloadLength, bool xorDelta);
+	
 };
 
 #endif
@@ -47,8 +47,10 @@ void QuadrumSerial::startup(uint16_t cubeSide, uint16_t channelCount, uint16_t c
 
     this->writeVoxelData = new int8_t[voxelDataSize];
 	this->displayVoxelData = new int8_t[voxelDataSize];
+	this->streamBuffer = new int8_t[CHUNK_HEADER_SIZE + MAX_STREAM_SIZE + 1 + CHECKSUM_SIZE];
+	this->serialSpeed = SERIAL_SPEED;
 	
-	for(int8_t i = 0; i < voxelDataSize; i++) {
+	for(int16_t i = 0; i < voxelDataSize; i++) {
 		writeVoxelData[i] = 0;
 		displayVoxelData[i] = 0;
 	}
@@ -58,10 +60,13 @@ void QuadrumSerial::start() {
 	initSerialWait();
 
 	while(continueCommunication) {
-		uint32_t startTime = micros();
-		uint32_t midRequestTime = startTime;
+		uint32_t midRequestTime = micros();
 		
-		while(requestData(startTime, midRequestTime));
+		// every request gets the whole wait for its answer, an answer arriving after the next request would be taken for its answer
+		if(windowStream)
+			while(requestWindow(micros(), midRequestTime));
+		else
+			while(requestData(micros(), midRequestTime));
 		
 		float delayTime = (float) ((dataRetrieveWaitTime) + DATA_RETREIVE_WAIT_TIME_MARGIN) - (float) (micros() - midRequestTime);
 		delayMicroseconds(max((int32_t) delayTime, 0));
@@ -92,15 +97,102 @@ void QuadrumSerial::initSerialWait() {
 				sendChar((int8_t) cubeSide);
 				sendChar((int8_t) channelCount);
 				sendChar((int8_t) channelSize);
+				sendChar((int8_t) (MAX_STREAM_SIZE & 0xFF));	// maximum stream size, little endian
+				sendChar((int8_t) (MAX_STREAM_SIZE >> 8));
+				sendChar((int8_t) (STREAM_WINDOW_FEATURE | CHECKSUM_FEATURE | DELTA_STREAM_FEATURE | CODED_STREAM_FEATURE));	// supported features
+				sendChar((int8_t) MAX_STREAM_WINDOW);
 				
 				int8_t initAcknowledge = 0;
 				retrieveBuffer(micros(), midRequestTime, &initAcknowledge, 1);	// send millis() as startTime to get maximum response time
-				if((uint8_t) initAcknowledge == INIT_ACKNOWLEDGE_PACKET)
+				if((uint8_t) initAcknowledge == INIT_ACKNOWLEDGE_PACKET) {
+					int8_t chosenStreamSize[2];	// stream size chosen by the editor, little endian
+					retrieveBuffer(micros(), midRequestTime, chosenStreamSize, 2);
+					streamSize = (int16_t) ((uint8_t) chosenStreamSize[0] | ((uint16_t) (uint8_t) chosenStreamSize[1] << 8));
+					if(streamSize < MIN_STREAM_SIZE || streamSize > MAX_STREAM_SIZE)
+						streamSize = LEGACY_STREAM_SIZE;
+					int8_t features = 0;	// features the editor uses
+					retrieveBuffer(micros(), midRequestTime, &features, 1);
+					if(((uint8_t) features & CHECKSUM_FEATURE) != 0)
+						checksumSize = CHECKSUM_SIZE;
+					if(((uint8_t) features & STREAM_WINDOW_FEATURE) != 0) {
+						windowStream = true;
+						maxChunks = (voxelDataSize + streamSize - 1) / streamSize;	// a chunk covers at least streamSize bytes
+						receivedChunks = new uint8_t[(maxChunks + BYTE_SIZE - 1) / BYTE_SIZE];
+						resetTransfer(0);
+					}
+					negotiateSerialSpeed();
 					break;
+				}
 			}
 		}
 	}
 }
+void QuadrumSerial::negotiateSerialSpeed() {
+	uint32_t midRequestTime = 0;
+	int8_t request[2];	// request packet, number of proposed speeds
+	retrieveBuffer(micros(), midRequestTime, request, 2);
+	if((uint8_t) request[0] != SERIAL_SPEED_REQUEST_PACKET)
+		return;
+	
+	// speeds are proposed fastest first as 4 bytes each (little endian), pick the first one supported
+	uint8_t speedIndex = NO_SERIAL_SPEED;
+	int32_t speed = SERIAL_SPEED;
+	for(uint8_t i = 0; i < (uint8_t) request[1]; i++) {
+		int8_t proposedSpeed[4];
+		retrieveBuffer(micros(), midRequestTime, proposedSpeed, 4);
+		int32_t value = 0;
+		for(int16_t j = 3; j >= 0; j--)
+			value = (value << 8) | (uint8_t) proposedSpeed[j];
+		if(speedIndex == NO_SERIAL_SPEED && value > 0 && value <= MAX_SERIAL_SPEED) {
+			speedIndex = i;
+			speed = value;
+		}
+	}
+	sendChar(SERIAL_SPEED_CONFIRM_PACKET);
+	sendChar((int8_t) speedIndex);
+	if(speedIndex == NO_SERIAL_SPEED)
+		return;
+	
+	Serial.flush();	// finish sending the confirmation at the old speed
+	Serial.end();
+	Serial.begin(speed);
+	serialSpeed = speed;
+	uint32_t switchTime = micros();
+	
+	int8_t probe[1 + SERIAL_SPEED_PROBE_SIZE];
+	if(retrieveInitBuffer(probe, 1 + SERIAL_SPEED_PROBE_SIZE, (uint32_t) MAX_INIT_RETREIVE_WAIT)) {
+		bool validProbe = (uint8_t) probe[0] == SERIAL_SPEED_PROBE_PACKET;
+		for(int16_t i = 0; i < SERIAL_SPEED_PROBE_SIZE; i++)
+			validProbe = validProbe && (uint8_t) probe[1 + i] == SERIAL_SPEED_PROBE_DATA[i];
+		
+		if(validProbe) {
+			sendChar(SERIAL_SPEED_PROBE_ACKNOWLEDGE_PACKET);
+			for(int16_t i = 0; i < SERIAL_SPEED_PROBE_SIZE; i++)
+				sendChar((int8_t) SERIAL_SPEED_PROBE_DATA[i]);
+			return;
+		}
+		
+		// the editor falls back on its own, switch back at the same time as without a probe
+		while(micros() - switchTime < (uint32_t) MAX_INIT_RETREIVE_WAIT);
+	}
+	Serial.end();
+	Serial.begin(SERIAL_SPEED);
+	serialSpeed = SERIAL_SPEED;
+}
+bool QuadrumSerial::retrieveInitBuffer(int8_t* buffer, uint16_t bufferSize, uint32_t timeout) {
+	uint32_t startTime = micros();
+	uint16_t i = 0;
+	while(i < bufferSize) {
+		if(Serial.available() > 0) {
+			buffer[i] = Serial.read();
+			i++;
+		}
+		else if(micros() - startTime > timeout) {
+			return false;
+		}
+	}
+	return true;
+}
 
 bool QuadrumSerial::requestData(uint32_t startTime, uint32_t& midRequestTime) {
 	if(!clearSerialBuffer(startTime, midRequestTime))
@@ -114,23 +206,13 @@ bool QuadrumSerial::requestData(uint32_t startTime, uint32_t& midRequestTime) {
 		if(!retrieveBuffer(startTime, midRequestTime, &streamStartData, 1))
 			return false;
 
-		if((uint8_t) streamStartData == STREAM_START_COMPRESSED_PACKET) {
-			int8_t compressedStream[STREAM_SIZE];
-			if(!retrieveBuffer(startTime, midRequestTime, compressedStream, STREAM_SIZE))
+		if((uint8_t) streamStartData == STREAM_START_COMPRESSED_PACKET || (uint8_t) streamStartData == STREAM_START_RAW_PACKET ||
+				(uint8_t) streamStartData == STREAM_START_CODED_PACKET) {
+			// the whole packet is kept for the checksum, the stream is only read once it passed
+			streamBuffer[0] = streamStartData;
+			if(!retrieveBuffer(startTime, midRequestTime, streamBuffer + 1, getStreamOffsetSize() + streamSize))
 				return false;
 
-			readCompressedStream(compressedStream, STREAM_SIZE);
-
-			if(!endOfStream(startTime, midRequestTime))
-				return false;
-		}
-		if((uint8_t) streamStartData == STREAM_START_RAW_PACKET) {
-			int8_t rawStream[STREAM_SIZE];
-			if(!retrieveBuffer(startTime, midRequestTime, rawStream, STREAM_SIZE))
-				return false;
-
-			readRawStream(rawStream, STREAM_SIZE);
-
 			if(!endOfStream(startTime, midRequestTime))
 				return false;
 		}
@@ -143,44 +225,275 @@ bool QuadrumSerial::requestData(uint32_t startTime, uint32_t& midRequestTime) {
 				sendChar(FRAME_FAILED_PACKET);
 			}
 			voxelDataStride = 0;
+			previousStride = -1;
 		}
 	}
+	return true;
 }
 bool QuadrumSerial::endOfStream(uint32_t startTime, uint32_t& midRequestTime) {
-	int8_t endStreamData[2];
-	if(!retrieveBuffer(startTime, midRequestTime, endStreamData, 2))
+	int16_t streamStart = 1 + getStreamOffsetSize();
+	int8_t* endStreamData = streamBuffer + streamStart + streamSize;
+	if(!retrieveBuffer(startTime, midRequestTime, endStreamData, 1 + checksumSize))
 		return false;
 	
-	// endStreamData[0] - end of stream packet, endStreamData[1] - checksum
+	// streamBuffer[1..2] - offset with checksums, endStreamData[0] - end of stream packet, endStreamData[1..] - checksum
 	{
-		if((uint8_t) endStreamData[0] == STREAM_END_PACKET) {
-			// FUTURE: control checksum, if pass send ack otherwise corrupt
+		if((uint8_t) endStreamData[0] == STREAM_END_PACKET && isChecksumValid(streamBuffer, streamStart + streamSize + 1)) {
+			if(streamStart > 1) {
+				int16_t offset = (int16_t) ((uint8_t) streamBuffer[1] | ((uint16_t) (uint8_t) streamBuffer[2] << 8));
+				if(offset != voxelDataStride) {
+					// sent again because the acknowledge got lost, it is already written
+					sendChar(offset == previousStride ? STREAM_ACKNOWLEDGE_PACKET : STREAM_CORRUPTED_PACKET);
+					return true;
+				}
+			}
+
+			if((uint8_t) streamBuffer[0] == STREAM_START_COMPRESSED_PACKET)
+				increasedStride = readCompressedStream(streamBuffer + streamStart, streamSize, voxelDataStride);
+			else if((uint8_t) streamBuffer[0] == STREAM_START_CODED_PACKET)
+				increasedStride = readCodedStream(streamBuffer + streamStart, streamSize, voxelDataStride);
+			else
+				increasedStride = readRawStream(streamBuffer + streamStart, streamSize, voxelDataStride);
+
 			sendChar(STREAM_ACKNOWLEDGE_PACKET);
+			previousStride = voxelDataStride;
 			if(voxelDataStride + increasedStride <= voxelDataSize)
 				voxelDataStride += increasedStride;
 		}
 		else {
-			sendChar(STREAM_CORRUPTED_PACKET);
+			sendChar(STREAM_CORRUPTED_PACKET);	// the editor sends the same packet again
 		}
 	}
 	return true;
 }
-void QuadrumSerial::readRawStream(int8_t* stream, uint16_t streamSize) {
-	increasedStride = 0;
-	for(int16_t i = 0; i < streamSize && voxelDataStride + i < voxelDataSize; i++) {
-		writeVoxelData[voxelDataStride + i] = stream[i];
-		increasedStride++;
+int16_t QuadrumSerial::getStreamOffsetSize() {
+	return checksumSize == CHECKSUM_SIZE ? STREAM_OFFSET_SIZE : 0;
+}
+bool QuadrumSerial::isChecksumValid(int8_t* packet, uint16_t packetSize) {
+	if(checksumSize != CHECKSUM_SIZE)
+		return true;	// placeholder byte of editors without checksums
+	uint16_t checksum = (uint8_t) packet[packetSize] | ((uint16_t) (uint8_t) packet[packetSize + 1] << 8);
+	return getChecksum(packet, packetSize) == checksum;
+}
+uint16_t QuadrumSerial::getChecksum(int8_t* data, uint16_t dataSize) {
+	// crc-16/ccitt (polynomial 0x1021), a nibble at a time so the table stays 32 bytes
+	static const uint16_t CHECKSUM_TABLE[16] = {
+		0x0000, 0x1021, 0x2042, 0x3063, 0x4084, 0x50A5, 0x60C6, 0x70E7,
+		0x8108, 0x9129, 0xA14A, 0xB16B, 0xC18C, 0xD1AD, 0xE1CE, 0xF1EF
+	};
+	uint16_t crc = CHECKSUM_INITIAL_VALUE;
+	for(uint16_t i = 0; i < dataSize; i++) {
+		uint8_t value = (uint8_t) data[i];
+		crc = (crc << 4) ^ CHECKSUM_TABLE[(crc >> 12) ^ (value >> 4)];
+		crc = (crc << 4) ^ CHECKSUM_TABLE[(crc >> 12) ^ (value & 0x0F)];
 	}
+	return crc;
 }
-void QuadrumSerial::readCompressedStream(int8_t* stream, uint16_t streamSize) {
-	increasedStride = 0;
-	for(int16_t i = 0; i + 1 < streamSize && voxelDataStride + increasedStride < voxelDataSize; i += 2) {
+int16_t QuadrumSerial::readRawStream(int8_t* stream, uint16_t streamSize, int16_t offset) {
+	int16_t written = 0;
+	for(int16_t i = 0; i < streamSize && offset + i < voxelDataSize; i++) {
+		writeVoxelData[offset + i] = stream[i];
+		written++;
+	}
+	return written;
+}
+int16_t QuadrumSerial::readCompressedStream(int8_t* stream, uint16_t streamSize, int16_t offset) {
+	int16_t written = 0;
+	for(int16_t i = 0; i + 1 < streamSize && offset + written < voxelDataSize; i += 2) {
 		// stream[i + 0] - one byte in voxelData, stream[i + 1] - number of bytes to apply stream[i + 0] to in voxelData
-		for(int16_t j = 0; j < (int16_t) stream[i + 1] && voxelDataStride + increasedStride < voxelDataSize; j++) {
-			writeVoxelData[voxelDataStride + increasedStride] = stream[i + 0];
-			increasedStride++;
+		for(int16_t j = 0; j < (int16_t) stream[i + 1] && offset + written < voxelDataSize; j++) {
+			writeVoxelData[offset + written] = stream[i + 0];
+			written++;
 		}
 	}
+	return written;
+}
+int16_t QuadrumSerial::readCodedStream(int8_t* stream, uint16_t streamSize, int16_t offset) {
+	// literal runs (token is the length), zero runs and repeat runs (value follows), 0 ends the stream
+	int16_t written = 0;
+	uint16_t i = 0;
+	while(i < streamSize && offset + written < voxelDataSize) {
+		uint8_t token = (uint8_t) stream[i++];
+		if(token == 0)
+			break;
+
+		if(token < CODED_RUN_TOKEN) {
+			for(uint8_t j = 0; j < token && i < streamSize && offset + written < voxelDataSize; j++)
+				writeVoxelData[offset + written++] = stream[i++];
+			continue;
+		}
+
+		uint16_t length = token & CODED_EXTENDED_LENGTH;
+		if(length == CODED_EXTENDED_LENGTH) {	// length continues in the next bytes
+			uint8_t lengthByte = CODED_LENGTH_BYTE_MAX;
+			while(lengthByte == CODED_LENGTH_BYTE_MAX && i < streamSize) {
+				lengthByte = (uint8_t) stream[i++];
+				length += lengthByte;
+			}
+		}
+		int8_t value = 0;
+		if((token & CODED_REPEAT_RUN_FLAG) != 0) {
+			length += CODED_MIN_REPEAT_RUN_LENGTH;
+			if(i < streamSize)
+				value = stream[i++];
+		}
+		else {
+			length += CODED_MIN_ZERO_RUN_LENGTH;
+		}
+		for(uint16_t j = 0; j < length && offset + written < voxelDataSize; j++)
+			writeVoxelData[offset + written++] = value;
+	}
+	return written;
+}
+void QuadrumSerial::readDeltaStream(int8_t* stream, uint16_t streamSize) {
+	// runs of offset (little endian), length and length bytes, a run of length 0 ends the stream
+	for(uint16_t i = 0; i + DELTA_RUN_HEADER_SIZE < streamSize;) {
+		uint16_t offset = (uint8_t) stream[i] | ((uint16_t) (uint8_t) stream[i + 1] << 8);
+		uint8_t length = (uint8_t) stream[i + 2];
+		if(length == 0)
+			break;
+		i += DELTA_RUN_HEADER_SIZE;
+		for(uint8_t j = 0; j < length && i < streamSize; j++, i++) {
+			if(offset + j < (uint16_t) voxelDataSize)
+				writeVoxelData[offset + j] = stream[i];
+		}
+	}
+}
+
+/*
+	Window stream, used when the editor enables STREAM_WINDOW_FEATURE on init. Every request carries a
+	cumulative acknowledge of the current transfer (the first chunk not received yet and which of the 8 chunks
+	after it were received), followed by its checksum with CHECKSUM_FEATURE. The editor answers with a burst
+	of up to MAX_STREAM_WINDOW chunks it has not seen acknowledged, or a display packet once the whole
+	transfer was acknowledged. Chunks carry their offset in the voxel data so they can be written directly,
+	missing or corrupted chunks are simply sent again later.
+	Delta chunks (DELTA_STREAM_FEATURE) patch a copy of the display buffer instead of filling the whole frame.
+*/
+bool QuadrumSerial::requestWindow(uint32_t startTime, uint32_t& midRequestTime) {
+	if(!clearSerialBuffer(startTime, midRequestTime))
+		return false;
+
+	int8_t request[WINDOW_REQUEST_SIZE];
+	request[0] = STREAM_WINDOW_REQUEST_PACKET;
+	request[1] = (int8_t) transferId;
+	request[2] = (int8_t) (acknowledgedChunks & 0xFF);
+	request[3] = (int8_t) (acknowledgedChunks >> 8);
+	request[4] = (int8_t) getSelectiveAcknowledge();
+	for(int16_t i = 0; i < WINDOW_REQUEST_SIZE; i++)
+		sendChar(request[i]);
+	if(checksumSize == CHECKSUM_SIZE) {	// a corrupted request could otherwise acknowledge chunks or end the connection
+		uint16_t checksum = getChecksum(request, WINDOW_REQUEST_SIZE);
+		sendChar((int8_t) (checksum & 0xFF));
+		sendChar((int8_t) (checksum >> 8));
+	}
+
+	// response[0] - window/display packet, response[1] - chunk count/transfer id to display
+	int8_t response[2];
+	if(!retrieveBuffer(startTime, midRequestTime, response, 2))
+		return false;
+
+	if((uint8_t) response[0] == STREAM_WINDOW_PACKET) {
+		uint8_t chunkCount = min((uint8_t) response[1], MAX_STREAM_WINDOW);
+		uint16_t chunkSize = CHUNK_HEADER_SIZE + streamSize + 1 + checksumSize;
+
+		// a burst takes longer than a single packet, keep the display running while it arrives
+		uint32_t burstStartTime = micros();
+		serialRetrieveWait = MAX_SERIAL_RETREIVE_WAIT + getTransferTime(chunkCount * chunkSize);
+		bool filled = true;
+		for(uint8_t i = 0; i < chunkCount && filled; i++) {
+			filled = retrieveBuffer(burstStartTime, midRequestTime, streamBuffer, chunkSize);
+			if(filled)
+				readChunk(streamBuffer);
+		}
+		serialRetrieveWait = MAX_SERIAL_RETREIVE_WAIT;
+		return filled;
+	}
+	else if((uint8_t) response[0] == DISPLAY_PACKET) {
+		uint8_t displayId = (uint8_t) response[1];
+		if(transferDisplayed && displayId == displayedTransferId) {
+			sendChar(FRAME_DISPLAYED_PACKET);	// the previous answer got lost
+		}
+		else if(displayId == transferId && (transferChunks > 0 ? acknowledgedChunks >= transferChunks : receivedSize >= voxelDataSize)) {
+			swapDisplayBuffer();
+			sendChar(FRAME_DISPLAYED_PACKET);
+			resetTransfer(transferId);
+			displayedTransferId = displayId;
+			transferDisplayed = true;
+		}
+		else {
+			sendChar(FRAME_FAILED_PACKET);
+			resetTransfer(transferId);
+		}
+	}
+	else {
+		// out of step with the editor, most likely in the middle of a burst sent twice, let it pass before asking again
+		skipSerialBytes(midRequestTime);
+		return false;
+	}
+	return true;
+}
+void QuadrumSerial::readChunk(int8_t* chunk) {
+	// chunk[0] - stream format, chunk[1] - transfer id, chunk[2..3] - sequence, chunk[4..5] - offset (little endian)
+	uint8_t format = (uint8_t) chunk[0];
+	if((format != STREAM_START_COMPRESSED_PACKET && format != STREAM_START_RAW_PACKET && format != STREAM_START_CODED_PACKET &&
+			format != STREAM_START_DELTA_PACKET) ||
+			(uint8_t) chunk[CHUNK_HEADER_SIZE + streamSize] != STREAM_END_PACKET ||
+			!isChecksumValid(chunk, CHUNK_HEADER_SIZE + streamSize + 1))
+		return;	// corrupted, never acknowledged so it will be sent again
+
+	uint8_t chunkTransferId = (uint8_t) chunk[1];
+	uint16_t sequence = (uint8_t) chunk[2] | ((uint16_t) (uint8_t) chunk[3] << 8);
+	uint16_t offset = (uint8_t) chunk[4] | ((uint16_t) (uint8_t) chunk[5] << 8);
+
+	if(chunkTransferId != transferId)
+		resetTransfer(chunkTransferId);	// the editor moved on to another frame
+	if(format == STREAM_START_DELTA_PACKET) {
+		// offset holds the transfer's chunk count, the first delta chunk starts from the displayed frame
+		if(sequence >= maxChunks || offset == 0 || offset > maxChunks || isChunkReceived(sequence))
+			return;
+		if(transferChunks == 0) {
+			for(int16_t i = 0; i < voxelDataSize; i++)
+				writeVoxelData[i] = displayVoxelData[i];
+			transferChunks = offset;
+		}
+		readDeltaStream(chunk + CHUNK_HEADER_SIZE, streamSize);
+	}
+	else if(sequence >= maxChunks || offset >= (uint16_t) voxelDataSize || isChunkReceived(sequence))
+		return;
+	else if(format == STREAM_START_COMPRESSED_PACKET)
+		receivedSize += readCompressedStream(chunk + CHUNK_HEADER_SIZE, streamSize, offset);
+	else if(format == STREAM_START_CODED_PACKET)
+		receivedSize += readCodedStream(chunk + CHUNK_HEADER_SIZE, streamSize, offset);
+	else
+		receivedSize += readRawStream(chunk + CHUNK_HEADER_SIZE, streamSize, offset);
+
+	receivedChunks[sequence / BYTE_SIZE] |= 1 << (sequence % BYTE_SIZE);
+	while(acknowledgedChunks < maxChunks && isChunkReceived(acknowledgedChunks))
+		acknowledgedChunks++;
+}
+void QuadrumSerial::resetTransfer(uint8_t transferId) {
+	if(transferId != this->transferId)
+		transferDisplayed = false;
+	this->transferId = transferId;
+	for(uint16_t i = 0; i < (maxChunks + BYTE_SIZE - 1) / BYTE_SIZE; i++)
+		receivedChunks[i] = 0;
+	acknowledgedChunks = 0;
+	transferChunks = 0;
+	receivedSize = 0;
+}
+bool QuadrumSerial::isChunkReceived(uint16_t sequence) {
+	return (receivedChunks[sequence / BYTE_SIZE] & (1 << (sequence % BYTE_SIZE))) != 0;
+}
+uint8_t QuadrumSerial::getSelectiveAcknowledge() {
+	uint8_t acknowledge = 0;
+	for(uint16_t i = 0; i < BYTE_SIZE && acknowledgedChunks + 1 + i < maxChunks; i++) {
+		if(isChunkReceived(acknowledgedChunks + 1 + i))
+			acknowledge |= 1 << i;
+	}
+	return acknowledge;
+}
+float QuadrumSerial::getTransferTime(uint16_t byteCount) {
+	return ((float) byteCount * BITS_PER_SERIAL_BYTE * 1000000.0f) / (float) serialSpeed;
 }
 
 void QuadrumSerial::swapDisplayBuffer() {
@@ -195,6 +508,15 @@ bool QuadrumSerial::clearSerialBuffer(uint32_t startTime, uint32_t& midRequestTi
 		return false;
 	return true;
 }
+void QuadrumSerial::skipSerialBytes(uint32_t& midRequestTime) {
+	uint32_t lastByteTime = micros();
+	while(hasTimeLeft(lastByteTime, midRequestTime)) {
+		if(Serial.available() > 0) {
+			Serial.read();
+			lastByteTime = micros();
+		}
+	}
+}
 bool QuadrumSerial::retrieveBuffer(uint32_t startTime, uint32_t& midRequestTime, int8_t* buffer, uint16_t bufferSize) {
 	uint16_t i = 0;
 	while(i < bufferSize) {
@@ -214,7 +536,7 @@ bool QuadrumSerial::hasTimeLeft(uint32_t startTime, uint32_t& midRequestTime) {
 	if(midRequestTime == 0) {
 		return true;
 	}
-	else if(((float) micros() - (float) startTime) < MAX_SERIAL_RETREIVE_WAIT) {
+	else if(((float) micros() - (float) startTime) < serialRetrieveWait) {
 		if((float) (micros() - midRequestTime) > (dataRetrieveWaitTime)) {
 			float delayTime = (float) ((dataRetrieveWaitTime) + DATA_RETREIVE_WAIT_TIME_MARGIN) - (float) (micros() - midRequestTime);
 			delayMicroseconds(max((int32_t) delayTime, 0));
@@ -47,15 +47,49 @@ private:
 	const int16_t MAX_CUBE_SIDE = 8;
 	const int16_t MAX_CHANNEL_COUNT = 3;
 	const float MAX_INIT_RETREIVE_WAIT = 500000, MAX_SERIAL_RETREIVE_WAIT = 10000;
-	const int32_t SERIAL_SPEED = 115200;
+	const int32_t SERIAL_SPEED = 115200;	// used on init and whenever a faster speed fails
+	const int32_t MAX_SERIAL_SPEED = 1000000;	// fastest speed accepted from the editor, lower it if the board's serial chip can not keep up
+	const uint8_t NO_SERIAL_SPEED = 0xFF;
+	const float BITS_PER_SERIAL_BYTE = 10;	// start and stop bit
+	const int16_t SERIAL_SPEED_PROBE_SIZE = 4;
+	const uint8_t SERIAL_SPEED_PROBE_DATA[4] = {0x55, 0xAA, 0x0F, 0xF0};
 	const float DATA_RETREIVE_WAIT_TIME_MARGIN = 1000;
-	const int16_t STREAM_SIZE = 8;
+	const int16_t LEGACY_STREAM_SIZE = 8;	// used by editors that do not choose a stream size
+	const int16_t MAX_STREAM_SIZE = 64;	// advertised to the editor, fits the serial receive buffer
+	const int16_t MIN_STREAM_SIZE = 2;
+	const uint8_t STREAM_WINDOW_FEATURE = 0x01, CHECKSUM_FEATURE = 0x02, DELTA_STREAM_FEATURE = 0x04, CODED_STREAM_FEATURE = 0x08;	// init data feature flags, the editor answers with the ones it uses
+	const uint8_t MAX_STREAM_WINDOW = 8;	// chunks the editor may send in one burst
+	const int16_t CHUNK_HEADER_SIZE = 6;	// start packet, transfer id, sequence, offset
+	const int16_t WINDOW_REQUEST_SIZE = 5;	// request packet, transfer id, first missing chunk, selective acknowledge
+	const int16_t DELTA_RUN_HEADER_SIZE = 3;	// offset, length
+	const uint8_t CODED_RUN_TOKEN = 0x80, CODED_REPEAT_RUN_FLAG = 0x40;	// coded stream tokens, literals are below CODED_RUN_TOKEN
+	const uint8_t CODED_EXTENDED_LENGTH = 0x3F, CODED_LENGTH_BYTE_MAX = 0xFF;
+	const uint16_t CODED_MIN_ZERO_RUN_LENGTH = 1, CODED_MIN_REPEAT_RUN_LENGTH = 3;
+	const int16_t PLACEHOLDER_CHECKSUM_SIZE = 1, CHECKSUM_SIZE = 2;	// crc-16 checksum, little endian
+	const int16_t STREAM_OFFSET_SIZE = 2;	// stop and wait packets carry their offset (little endian) with checksums
+	const uint16_t CHECKSUM_INITIAL_VALUE = 0xFFFF;
 	const int16_t AVERAGE_LOOP_TIME_ITERATIONS = 256;
 
 	int8_t *writeVoxelData;	// 2 buffers because of double buffering
 	int16_t voxelDataStride, increasedStride;
+	int16_t previousStride = -1;	// stride before the last packet was written, a packet sent again starts there
 	int8_t *displayVoxelData;
 	int16_t voxelDataSize;
+	
+	int16_t streamSize = LEGACY_STREAM_SIZE;	// chosen by the editor on init
+	int8_t *streamBuffer;	// a whole packet, start packet to checksum
+	int16_t checksumSize = PLACEHOLDER_CHECKSUM_SIZE;
+	int32_t serialSpeed;
+	float serialRetrieveWait = MAX_SERIAL_RETREIVE_WAIT;	// raised while a window burst arrives
+
+	// window stream state, chunks of a transfer are numbered and written straight to their offset
+	bool windowStream = false;
+	uint8_t transferId = 0, displayedTransferId = 0;
+	bool transferDisplayed = false;	// displayedTransferId was swapped in, answer a repeated display packet again
+	uint8_t *receivedChunks;	// one bit per sequence number
+	uint16_t maxChunks, acknowledgedChunks;	// every chunk below acknowledgedChunks has been received
+	uint16_t transferChunks;	// chunk count of a delta transfer, 0 for full transfers
+	int16_t receivedSize;
 
 	int16_t cubeSide, channelCount, channelSize;
 	float dataRetrieveWaitTime;
@@ -67,15 +101,30 @@ private:
 	void startup(uint16_t cubeSide, uint16_t channelCount, uint16_t channelSize, uint16_t planeRate); // called from constructors
 
 	void initSerialWait(); // runs only in the beginning of communication to establish correct paremeters (cubeSide, channelCount, channelSize) on PC
+	void negotiateSerialSpeed();	// switches to a faster speed proposed by the editor, stays at SERIAL_SPEED if the probe fails
+	bool retrieveInitBuffer(int8_t* buffer, uint16_t bufferSize, uint32_t timeout);	// returns true if buffer was filled within timeout microseconds
 
 	bool requestData(uint32_t startTime, uint32_t& midRequestTime);	// returns hasTimeLeft
 	bool endOfStream(uint32_t startTime, uint32_t& midRequestTime);	// returns true of end of stream was successful
-	void readRawStream(int8_t* stream, uint16_t streamSize);
-	void readCompressedStream(int8_t* stream, uint16_t streamSize);
+	int16_t getStreamOffsetSize();	// offset bytes after the start packet of stop and wait packets
+	bool isChecksumValid(int8_t* packet, uint16_t packetSize);	// checks the checksum following packetSize bytes of packet
+	uint16_t getChecksum(int8_t* data, uint16_t dataSize);
+	int16_t readRawStream(int8_t* stream, uint16_t streamSize, int16_t offset);	// returns number of voxel data bytes written
+	int16_t readCompressedStream(int8_t* stream, uint16_t streamSize, int16_t offset);
+	int16_t readCodedStream(int8_t* stream, uint16_t streamSize, int16_t offset);
+	void readDeltaStream(int8_t* stream, uint16_t streamSize);
+
+	bool requestWindow(uint32_t startTime, uint32_t& midRequestTime);	// returns hasTimeLeft
+	void readChunk(int8_t* chunk);
+	void resetTransfer(uint8_t transferId);
+	bool isChunkReceived(uint16_t sequence);
+	uint8_t getSelectiveAcknowledge();	// bit i set if chunk acknowledgedChunks + 1 + i was received
+	float getTransferTime(uint16_t byteCount);	// microseconds
 
 	void swapDisplayBuffer();
 	bool clearSerialBuffer(uint32_t startTime, uint32_t& midRequestTime);	// returns true if buffer was successfully cleared
 	bool retrieveBuffer(uint32_t startTime, uint32_t& midRequestTime, int8_t* buffer, uint16_t bufferSize);	// returns true if buffer was successfully filled
+	void skipSerialBytes(uint32_t& midRequestTime);	// reads until nothing arrived for serialRetrieveWait
 	void sendChar(int8_t data);
 	bool hasTimeLeft(uint32_t startTime, uint32_t& midRequestTime); // returns true if there is no time (dataRetrieveMax) left
 
@@ -83,12 +132,16 @@ private:
 	const int16_t INIT_REQUEST_PACKET = 127;
 	const int8_t INIT_START_PACKET = 120;
 	const int16_t INIT_ACKNOWLEDGE_PACKET = 113;
+	const uint8_t SERIAL_SPEED_REQUEST_PACKET = 106, SERIAL_SPEED_CONFIRM_PACKET = 99;
+	const uint8_t SERIAL_SPEED_PROBE_PACKET = 92, SERIAL_SPEED_PROBE_ACKNOWLEDGE_PACKET = 85;
 
 	const int8_t STREAM_REQUEST_PACKET = 63, TERMINATE_COMMUNICATION_PACKET = 0;
-	const int16_t STREAM_START_COMPRESSED_PACKET = 32, STREAM_START_RAW_PACKET = 31, DISPLAY_PACKET = 24;
+	const int16_t STREAM_START_CODED_PACKET = 34, STREAM_START_DELTA_PACKET = 33, STREAM_START_COMPRESSED_PACKET = 32, STREAM_START_RAW_PACKET = 31, DISPLAY_PACKET = 24;
 	const int16_t STREAM_END_PACKET = 248;
 	const int8_t STREAM_ACKNOWLEDGE_PACKET = 240, STREAM_CORRUPTED_PACKET = 224;
 	const int8_t FRAME_DISPLAYED_PACKET = 217, FRAME_FAILED_PACKET = 210;
+	const int8_t STREAM_WINDOW_REQUEST_PACKET = 56;
+	const uint8_t STREAM_WINDOW_PACKET = 49;
 
 };
 
@@ -0,0 +1,250 @@
+/*
+ * AnimationEncoder.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package codeGenerator;
+
+import project.Frame;
+import project.Project;
+import project.VoxelDataCache;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+	Builds the animation arrays that QuadrumCode can not read straight frame by frame: compressed arrays, which
+	are decoded into a frame buffer in ram, and arrays with a frame table, which store every distinct frame only
+	once. Both flags are set in the channel count byte and can be combined.
+
+	Compressed frames are stored raw, run length encoded, or as the run length encoded XOR delta to the frame
+	shown before them, whichever is smallest. The first frame is never a delta so playback can start over from
+	it. Deltas only depend on the frame shown before, so equal deltas can share a payload in the frame table too.
+
+	array layout without FRAME_TABLE_FLAG:
+	(1 byte) cube side, (1 byte) channel count | flags, (1 byte) channel size, (2 bytes) frame count (little endian)
+	for every frame:
+		(4 bytes) duration in milliseconds (float, little endian)
+		(payload)
+
+	array layout with FRAME_TABLE_FLAG:
+	(1 byte) cube side, (1 byte) channel count | flags, (1 byte) channel size, (2 bytes) step count (little endian)
+	(2 bytes) payload count (little endian)
+	for every step: (2 bytes) payload index (little endian), (4 bytes) duration in milliseconds (float, little endian)
+	for every payload: (4 bytes) offset of the payload from the first payload (little endian)
+	every payload
+
+	payload without COMPRESSED_FLAG:
+	(voxel data size bytes) voxel data
+
+	payload with COMPRESSED_FLAG:
+	(1 byte) encoding, ENCODING_RAW, ENCODING_RLE or ENCODING_DELTA_RLE
+	(2 bytes) length (little endian), 0 for raw frames which always hold voxel data size bytes
+	(length bytes) encoded voxel data
+
+	run length encoding, repeated until the frame is complete:
+		control byte below RLE_REPEAT_FLAG: control + 1 literal bytes follow
+		control byte from RLE_REPEAT_FLAG: the next byte is repeated control - RLE_REPEAT_FLAG + RLE_MIN_REPEAT times
+*/
+public class AnimationEncoder {
+	public static final int COMPRESSED_FLAG = 0x80, FRAME_TABLE_FLAG = 0x40;
+	public static final byte ENCODING_RAW = 0, ENCODING_RLE = 1, ENCODING_DELTA_RLE = 2;
+	private static final int RLE_REPEAT_FLAG = 0x80;
+	private static final int RLE_MIN_REPEAT = 3, RLE_MAX_REPEAT = 0x7F + RLE_MIN_REPEAT, RLE_MAX_LITERAL = 0x80;
+	private static final int INIT_DATA_SIZE = 5;
+	private static final int BYTES_IN_FRAME_DURATION = 4;
+	private static final int MAX_PAYLOAD_LENGTH = 0xFFFF;
+
+	private final byte[] data;
+	private final long rawSize;	// size of the same animation as a plain array
+	private int payloadCount = 0;
+
+	public AnimationEncoder(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable) {
+		int frameCount = project.getFrameSize();
+		int voxelDataSize = Frame.getVoxelDataSize(project.getSide(), channelCount, channelSize);
+		rawSize = INIT_DATA_SIZE + ((long) frameCount * (voxelDataSize + BYTES_IN_FRAME_DURATION));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(project.getSide());
+		out.write(channelCount | (compressed ? COMPRESSED_FLAG : 0) | (frameTable ? FRAME_TABLE_FLAG : 0));
+		out.write(channelSize);
+		writeShort(out, frameCount);
+
+		// payloads of the frame table, equal payloads are found through their hash
+		HashMap<Payload, Integer> payloadIndices = new HashMap<>();
+		ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+		ByteArrayOutputStream payloadOffsets = new ByteArrayOutputStream();
+		ByteArrayOutputStream steps = new ByteArrayOutputStream();
+
+		byte[] previousVoxelData = null;
+		byte[] deltaData = new byte[voxelDataSize];
+		byte[] rleData = new byte[getMaxRleSize(voxelDataSize)];
+		byte[] deltaRleData = new byte[rleData.length];
+		for(int i = 0; i < frameCount; i++) {
+			Frame frame = project.getFrame(i);
+			byte[] voxelData = VoxelDataCache.getVoxelData(frame, channelCount, channelSize);
+
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			if(compressed) {
+				int rleLength = encodeRle(voxelData, rleData);
+				int deltaRleLength = Integer.MAX_VALUE;
+				if(i > 0) {
+					for(int j = 0; j < voxelDataSize; j++)
+						deltaData[j] = (byte) (voxelData[j] ^ previousVoxelData[j]);
+					deltaRleLength = encodeRle(deltaData, deltaRleData);
+				}
+
+				int maxLength = Math.min(voxelDataSize - 1, MAX_PAYLOAD_LENGTH);
+				if(deltaRleLength < rleLength && deltaRleLength <= maxLength)
+					writeCompressedPayload(payload, ENCODING_DELTA_RLE, deltaRleData, deltaRleLength, deltaRleLength);
+				else if(rleLength <= maxLength)
+					writeCompressedPayload(payload, ENCODING_RLE, rleData, rleLength, rleLength);
+				else
+					writeCompressedPayload(payload, ENCODING_RAW, voxelData, voxelDataSize, 0);
+			}
+			else {
+				payload.write(voxelData, 0, voxelDataSize);
+			}
+
+			if(frameTable) {
+				Payload key = new Payload(payload.toByteArray());
+				Integer payloadIndex = payloadIndices.get(key);
+				if(payloadIndex == null) {
+					payloadIndex = payloadCount++;
+					payloadIndices.put(key, payloadIndex);
+					writeInt(payloadOffsets, payloads.size());
+					writeBytes(payloads, key.getData());
+				}
+				writeShort(steps, payloadIndex);
+				writeDuration(steps, frame.getDurationInMillis());
+			}
+			else {
+				writeDuration(out, frame.getDurationInMillis());
+				writeBytes(out, payload.toByteArray());
+				payloadCount++;
+			}
+
+			previousVoxelData = voxelData;
+		}
+
+		if(frameTable) {
+			writeShort(out, payloadCount);
+			writeBytes(out, steps.toByteArray());
+			writeBytes(out, payloadOffsets.toByteArray());
+			writeBytes(out, payloads.toByteArray());
+		}
+		data = out.toByteArray();
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+	public long getRawSize() {
+		return rawSize;
+	}
+	public double getCompressionRatio() {
+		return (double) rawSize / data.length;
+	}
+	public int getPayloadCount() {
+		return payloadCount;	// distinct frames stored in the array
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >> 8);
+	}
+	private static void writeInt(ByteArrayOutputStream out, int value) {
+		for(int i = 0; i < Integer.BYTES; i++)
+			out.write(value >> (8 * i));
+	}
+	private static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+		out.write(bytes, 0, bytes.length);
+	}
+	private static void writeDuration(ByteArrayOutputStream out, float durationInMillis) {
+		writeInt(out, Float.floatToRawIntBits(durationInMillis));
+	}
+	private static void writeCompressedPayload(ByteArrayOutputStream out, byte encoding, byte[] payload, int payloadLength, int lengthField) {
+		out.write(encoding);
+		writeShort(out, lengthField);
+		out.write(payload, 0, payloadLength);
+	}
+
+	protected static int getMaxRleSize(int dataSize) {
+		return dataSize + ((dataSize + RLE_MAX_LITERAL - 1) / RLE_MAX_LITERAL);	// one control byte per literal run at worst
+	}
+	// encodes data into rleData, which must hold getMaxRleSize bytes, and returns the encoded length
+	protected static int encodeRle(byte[] data, byte[] rleData) {
+		int length = 0;
+		int literalStart = 0;
+		for(int i = 0; i < data.length;) {
+			int repeat = 1;
+			while(i + repeat < data.length && repeat < RLE_MAX_REPEAT && data[i + repeat] == data[i])
+				repeat++;
+
+			if(repeat >= RLE_MIN_REPEAT) {
+				length = writeLiterals(data, literalStart, i, rleData, length);
+				rleData[length++] = (byte) (RLE_REPEAT_FLAG + repeat - RLE_MIN_REPEAT);
+				rleData[length++] = data[i];
+				i += repeat;
+				literalStart = i;
+			}
+			else {
+				i += repeat;
+			}
+		}
+		return writeLiterals(data, literalStart, data.length, rleData, length);
+	}
+	private static int writeLiterals(byte[] data, int start, int end, byte[] rleData, int length) {
+		while(start < end) {
+			int count = Math.min(end - start, RLE_MAX_LITERAL);
+			rleData[length++] = (byte) (count - 1);
+			System.arraycopy(data, start, rleData, length, count);
+			length += count;
+			start += count;
+		}
+		return length;
+	}
+}
+
+// an encoded frame payload, compared by content
+class Payload {
+	private final byte[] data;
+	private final int hash;
+
+	public Payload(byte[] data) {
+		this.data = data;
+		hash = Arrays.hashCode(data);
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	@Override
+	public boolean equals(Object object) {
+		return object instanceof Payload && Arrays.equals(data, ((Payload) object).data);
+	}
+}
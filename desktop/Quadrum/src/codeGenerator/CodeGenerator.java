@@ -24,50 +24,227 @@
 
 package codeGenerator;
 
-import main.GeneralMethods;
 import project.Frame;
 import project.Project;
-import java.nio.ByteBuffer;
+import project.VoxelDataCache;
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 
+/*
+	Generates the animation array read by QuadrumCode. The code is streamed to an Appendable in small chunks,
+	so exports never hold the whole text in memory. Compressed arrays are laid out as described in
+	AnimationEncoder.
+
+	array layout:
+	(1 byte) cube side, (1 byte) channel count, (1 byte) channel size, (2 bytes) frame count (little endian)
+	for every frame: (4 bytes) duration in milliseconds (float, little endian), (voxel data size bytes) voxel data
+*/
 public class CodeGenerator {
+	public static final String HEADER_FILE_EXTENSION = "h";
+	public static final String HEADER_FILE_TYPE_DESCRIPTION = "C header file (*.h)";
+	private static final String PREVIEW_TRUNCATED_NOTE = " ...\n\n// preview truncated, copy or export to get the full code";
+	private static final int INIT_DATA_SIZE = 5;
+	private static final int BYTES_IN_FRAME_DURATION = 4;
+	private static final int HEADER_FILE_BYTES_PER_LINE = 16;
+
 	public static String getCodeString(Project project, int channelCount, int channelSize) {
+		return getCodeString(project, channelCount, channelSize, false, false);
+	}
+	public static String getCodeString(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable) {
+		StringBuilder generatedString = new StringBuilder();
+		try {
+			writeCode(project, channelCount, channelSize, compressed, frameTable, generatedString);
+		}
+		catch(IOException e) {
+			e.printStackTrace();	// never thrown by a StringBuilder
+		}
+		return generatedString.toString();
+	}
+	// returns at most the first maxLength characters of the code, followed by a note if it was cut off
+	public static String getPreviewString(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable, int maxLength) {
 		StringBuilder generatedString = new StringBuilder();
-		
-		StringBuilder stringData = new StringBuilder();
-
-		stringData.append("0x").append(GeneralMethods.byteToHex((byte) project.getSide()));
-		stringData.append(",");
-		stringData.append("0x").append(GeneralMethods.byteToHex((byte) channelCount));
-		stringData.append(",");
-		stringData.append("0x").append(GeneralMethods.byteToHex((byte) channelSize));
-		byte[] frameCountBytes = ByteBuffer.allocate(2).putShort((short) project.getFrameSize()).array();
-		for(int j = frameCountBytes.length - 1; j >= 0; j--) {
-			stringData.append(",");
-			stringData.append("0x").append(GeneralMethods.byteToHex(frameCountBytes[j]));
+		CodeWriter writer = new CodeWriter(generatedString, 0, maxLength);
+		try {
+			writeArray(project, channelCount, channelSize, compressed, frameTable, writer);
+			writer.flush();
 		}
+		catch(PreviewFullException e) {
+			generatedString.append(PREVIEW_TRUNCATED_NOTE);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		return generatedString.toString();
+	}
 
-		int totalArraySize = 5;	// size 5 because of init data above
-		for(int i = 0; i < project.getFrameSize(); i++) {
-			Frame frame = project.getFrame(i);
-			byte[] frameVoxelData = new byte[Frame.getVoxelDataSize(project.getSide(), channelCount, channelSize)];
+	// writes the array declaration as a single line
+	public static void writeCode(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable, Appendable out) throws IOException {
+		CodeWriter writer = new CodeWriter(out, 0, -1);
+		writeArray(project, channelCount, channelSize, compressed, frameTable, writer);
+		writer.flush();
+	}
+	// writes a header file that can be included in an Arduino sketch and passed to QuadrumCode
+	public static void writeHeaderFile(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable, OutputStream outputStream) throws IOException {
+		Writer out = new OutputStreamWriter(outputStream, StandardCharsets.US_ASCII);
+		CodeWriter writer = new CodeWriter(out, HEADER_FILE_BYTES_PER_LINE, -1);
+		writer.write("// Generated by Quadrum: " + project.getName() + ", " + project.getFrameSize() + " frames, " +
+				channelCount + " color channels with " + channelSize + " bit resolution\n");
+		writer.write("#ifndef QUADRUM_ANIMATION_H\n#define QUADRUM_ANIMATION_H\n\n#include <stdint.h>\n\n");
+		writeArray(project, channelCount, channelSize, compressed, frameTable, writer);
+		writer.write("\n\n#endif\n");
+		writer.flush();
+		out.flush();
+	}
+	public static boolean exportHeaderFile(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable, String path) {
+		try(OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(path))) {
+			writeHeaderFile(project, channelCount, channelSize, compressed, frameTable, outputStream);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
 
-			totalArraySize += frameVoxelData.length + 4;
-			frame.updateVoxelData(frameVoxelData, channelCount, channelSize);
+	private static void writeArray(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable, CodeWriter writer) throws IOException {
+		if(compressed || frameTable) {
+			writeEncodedArray(project, channelCount, channelSize, compressed, frameTable, writer);
+			return;
+		}
 
-			byte[] frameDurationBytes = ByteBuffer.allocate(4).putFloat(project.getFrame(i).getDurationInMillis()).array();
-			for(int j = frameDurationBytes.length - 1; j >= 0; j--) {
-				stringData.append(",");
-				stringData.append("0x").append(GeneralMethods.byteToHex(frameDurationBytes[j]));
-			}
+		int frameCount = project.getFrameSize();
+		int voxelDataSize = Frame.getVoxelDataSize(project.getSide(), channelCount, channelSize);
+		long totalArraySize = INIT_DATA_SIZE + ((long) frameCount * (voxelDataSize + BYTES_IN_FRAME_DURATION));
 
-			for(int j = 0; j < frameVoxelData.length; j++) {
-				stringData.append(",");
-				stringData.append("0x").append(GeneralMethods.byteToHex(frameVoxelData[j]));
-			}
+		writer.write("const uint8_t animation[" + totalArraySize + "] = {");
+		writer.startArray();
+		writer.writeByte(project.getSide());
+		writer.writeByte(channelCount);
+		writer.writeByte(channelSize);
+		writer.writeByte(frameCount);
+		writer.writeByte(frameCount >> 8);
+
+		for(int i = 0; i < frameCount; i++) {
+			Frame frame = project.getFrame(i);
+			int frameDuration = Float.floatToRawIntBits(frame.getDurationInMillis());
+			for(int j = 0; j < BYTES_IN_FRAME_DURATION; j++)
+				writer.writeByte(frameDuration >> (8 * j));
+
+			byte[] frameVoxelData = VoxelDataCache.getVoxelData(frame, channelCount, channelSize);
+			for(int j = 0; j < frameVoxelData.length; j++)
+				writer.writeByte(frameVoxelData[j]);
 		}
+		writer.endArray();
+		writer.write("};");
+	}
+	private static void writeEncodedArray(Project project, int channelCount, int channelSize, boolean compressed, boolean frameTable, CodeWriter writer) throws IOException {
+		AnimationEncoder encoder = new AnimationEncoder(project, channelCount, channelSize, compressed, frameTable);
+		byte[] data = encoder.getData();
 
-		generatedString.append("const uint8_t animation[" + totalArraySize + "] = {" + stringData + "};");
+		if(compressed)
+			writer.write(String.format(Locale.ROOT, "// compressed animation, %d bytes instead of %d (ratio %.2f), needs QuadrumCode with compression support\n",
+					data.length, encoder.getRawSize(), encoder.getCompressionRatio()));
+		else
+			writer.write(String.format(Locale.ROOT, "// animation with frame table, %d bytes instead of %d (ratio %.2f), needs QuadrumCode with frame table support\n",
+					data.length, encoder.getRawSize(), encoder.getCompressionRatio()));
+		if(frameTable)
+			writer.write("// " + encoder.getPayloadCount() + " distinct frames in " + project.getFrameSize() + " steps\n");
+		writer.write("const uint8_t animation[" + data.length + "] = {");
+		writer.startArray();
+		for(byte value : data)
+			writer.writeByte(value);
+		writer.endArray();
+		writer.write("};");
+	}
+}
 
-		return generatedString.toString();
+// buffers the generated characters and hands them to an Appendable in chunks
+class CodeWriter {
+	private static final int BUFFER_SIZE = 8192;
+	private static final int HEX_SIZE = 4;
+	private static final char[] HEX_TABLE = createHexTable();	// "0x" and two hex digits for every byte value
+
+	private final Appendable out;
+	private final int bytesPerLine;	// 0 writes the whole array on one line
+	private final int maxLength;	// -1 for no limit
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferSize = 0;
+	private long writtenLength = 0;
+	private long arrayBytes = 0;
+
+	public CodeWriter(Appendable out, int bytesPerLine, int maxLength) {
+		this.out = out;
+		this.bytesPerLine = bytesPerLine;
+		this.maxLength = maxLength;
+	}
+
+	private static char[] createHexTable() {
+		char[] hexDigits = "0123456789ABCDEF".toCharArray();
+		char[] table = new char[256 * HEX_SIZE];
+		for(int i = 0; i < 256; i++) {
+			table[i * HEX_SIZE] = '0';
+			table[(i * HEX_SIZE) + 1] = 'x';
+			table[(i * HEX_SIZE) + 2] = hexDigits[i >>> 4];
+			table[(i * HEX_SIZE) + 3] = hexDigits[i & 0x0F];
+		}
+		return table;
 	}
+
+	public void startArray() throws IOException {
+		arrayBytes = 0;
+		if(bytesPerLine > 0)
+			write("\n\t");
+	}
+	public void endArray() throws IOException {
+		if(bytesPerLine > 0)
+			write("\n");
+	}
+	public void writeByte(int value) throws IOException {
+		if(bufferSize + HEX_SIZE + 3 > BUFFER_SIZE)
+			flush();
+		if(arrayBytes > 0) {
+			buffer[bufferSize++] = ',';
+			if(bytesPerLine > 0 && arrayBytes % bytesPerLine == 0) {
+				buffer[bufferSize++] = '\n';
+				buffer[bufferSize++] = '\t';
+			}
+		}
+		System.arraycopy(HEX_TABLE, (value & 0xFF) * HEX_SIZE, buffer, bufferSize, HEX_SIZE);
+		bufferSize += HEX_SIZE;
+		arrayBytes++;
+	}
+	public void write(String text) throws IOException {
+		for(int start = 0; start < text.length();) {
+			if(bufferSize == BUFFER_SIZE)
+				flush();
+			int end = Math.min(text.length(), start + BUFFER_SIZE - bufferSize);
+			text.getChars(start, end, buffer, bufferSize);
+			bufferSize += end - start;
+			start = end;
+		}
+	}
+	public void flush() throws IOException {
+		int length = bufferSize;
+		bufferSize = 0;
+		if(maxLength >= 0 && writtenLength + length > maxLength) {
+			out.append(CharBuffer.wrap(buffer, 0, (int) (maxLength - writtenLength)));
+			writtenLength = maxLength;
+			throw new PreviewFullException();
+		}
+		// skip the per character copy of append where possible
+		if(out instanceof Writer)
+			((Writer) out).write(buffer, 0, length);
+		else if(out instanceof StringBuilder)
+			((StringBuilder) out).append(buffer, 0, length);
+		else
+			out.append(CharBuffer.wrap(buffer, 0, length));
+		writtenLength += length;
+	}
+}
+
+// thrown by CodeWriter once a preview has reached its maximum length
+class PreviewFullException extends IOException {
+	private static final long serialVersionUID = 1L;
 }
@@ -81,7 +81,7 @@ public class ProjectManager {
 	public void remove(int index) {
 		if(index < 0 || index >= projects.size())
 			return;
-		projects.remove(index);
+		projects.remove(index).close();
 		if(current >= projects.size())
 			setCurrent(Math.max(index - 1, 0));	// also updates projects to ui
 		else
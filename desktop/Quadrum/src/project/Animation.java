@@ -31,6 +31,7 @@ import ui.editor.controls.simulator.SimulatorControls;
 public class Animation implements Runnable {
 	private static final long MIN_SLEEP_TIME = 17,
 			START_FRAME_DELAY = 100;
+	private static final int STREAM_AHEAD_FRAMES = 4;	// frames queued for the cube ahead of the one playing
 
 	private Project project;
 	private Thread thread = new Thread(this);
@@ -69,7 +70,9 @@ public class Animation implements Runnable {
 	@Override
 	public void run() {
 		serialInterface.startStreamingProject(project);
-		serialInterface.sendFrame(project.getFrame(0));
+		long startTime = System.currentTimeMillis() + START_FRAME_DELAY;
+		for(int i = 0; i < STREAM_AHEAD_FRAMES && (i < project.getFrameSize() || project.isLoop()); i++)
+			serialInterface.queueFrame(project.getFrame(i % project.getFrameSize()), startTime + getPlaybackTime(0, i));
 		try{ Thread.sleep(START_FRAME_DELAY); }
 		catch(InterruptedException e) {}
 
@@ -80,8 +83,9 @@ public class Animation implements Runnable {
 
 				simulatorControls.setFrameOverride(i);
 
-				serialInterface.displayStreamedFrame();
-				serialInterface.sendFrame(project.getFrame((i + 1) % project.getFrameSize()));
+				int streamFrame = i + STREAM_AHEAD_FRAMES;
+				if(streamFrame < project.getFrameSize() || project.isLoop())
+					serialInterface.queueFrame(project.getFrame(streamFrame % project.getFrameSize()), timeBefore + getPlaybackTime(i, STREAM_AHEAD_FRAMES));
 
 				Platform.runLater(() -> simulatorControls.updateLayout());	// must run on platform thread to avoid error when drawing to canvas
 
@@ -105,4 +109,11 @@ public class Animation implements Runnable {
 		serialInterface.endStreamingProject(project);
 		Platform.runLater(this::terminateAnimation);
 	}
+	// time it takes to play count frames from frame first on
+	private long getPlaybackTime(int first, int count) {
+		long playbackTime = 0;
+		for(int i = first; i < first + count; i++)
+			playbackTime += Math.max(project.getFrame(i % project.getFrameSize()).getDurationInMillis(), MIN_SLEEP_TIME);
+		return playbackTime;
+	}
 }
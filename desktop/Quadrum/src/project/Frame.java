@@ -30,41 +30,188 @@ import java.util.Arrays;
 public class Frame {
 	public static final String DEFAULT_FRAME_NAME = "FRAME";
 	private static final float STARTUP_FRAME_DURATION = 100.0f;
+	public static final int RGB_BYTES = 3;
 
 	private String name = DEFAULT_FRAME_NAME;
 	private float durationInMillis = STARTUP_FRAME_DURATION;
 	private int side;
-	private Voxel[][][] voxels;
+	private int[] voxels;	// packed 0xRRGGBB colors, indexed as in the qu3d file (z major, x minor), null while evicted to frameStore
+
+	// set while the frame belongs to a project that keeps its frames in a FrameStore
+	private volatile FrameStore frameStore = null;
+	private int storeSlot = -1;	// slot in the frame store's mapped file, -1 if none
+	private int sourceIndex = -1;	// frame index in the frame store's qu3d source file, -1 if none
+	private boolean storeModified = false;	// true if voxels has changes not yet written to storeSlot or sourceIndex
+	private volatile boolean unreadable = false;	// true while voxels is an empty stand-in for a source chunk that could not be read
+
+	private volatile int version = 0;	// increased after the voxels changed
+
+	private FrameSnapshot snapshot = null;	// set while a save of this frame is pending, preserved before the voxels change
 
 	public Frame(int side) {
 		this.side = side;
 
-		voxels = new Voxel[getSide()][getSide()][getSide()];
-		for(int x = 0; x < getSide(); x++)
-			for(int y = 0; y < getSide(); y++)
-				for(int z = 0; z < getSide(); z++)
-					voxels[x][y][z] = new Voxel();
+		voxels = new int[getSide() * getSide() * getSide()];
+		Arrays.fill(voxels, Voxel.STARTUP_VOXEL_RGB);
+	}
+	protected Frame(int side, int[] voxels) {
+		this.side = side;
+		this.voxels = voxels;	// null for frames that are decoded later by a frame store
 	}
 	public Frame(Frame copyFrame) {
 		this.side = copyFrame.getSide();
 		durationInMillis = copyFrame.getDurationInMillis();
 		// does not copy frame name
 
-		voxels = new Voxel[copyFrame.getSide()][copyFrame.getSide()][copyFrame.getSide()];
-		for(int x = 0; x < getSide(); x++)
-			for(int y = 0; y < getSide(); y++)
-				for(int z = 0; z < getSide(); z++)
-					voxels[x][y][z] = new Voxel(copyFrame.getVoxel(x, y, z));
+		voxels = copyFrame.getVoxels().clone();
+		unreadable = copyFrame.isUnreadable();
 	}
 
 	public int getSide() {
 		return side;
 	}
 
+	// index of a voxel in the array returned by copyVoxels
+	public int getVoxelIndex(int x, int y, int z) {
+		return (((z * side) + y) * side) + x;
+	}
+
 	public Voxel getVoxel(int x, int y, int z) {
 		if(x >= side || y >= side || z >= side)
 			return null;
-		return voxels[x][y][z];
+		return new Voxel(this, getVoxelIndex(x, y, z));	// voxels are only views of this frame's buffer
+	}
+
+	public int getRgb(int x, int y, int z) {
+		return getVoxels()[getVoxelIndex(x, y, z)];
+	}
+	public void setRgb(int x, int y, int z, int rgb) {
+		setRgb(getVoxelIndex(x, y, z), rgb);
+	}
+	protected int getRgb(int index) {
+		return getVoxels()[index];
+	}
+	protected void setRgb(int index, int rgb) {
+		preserveSnapshot();
+		FrameStore store = frameStore;
+		if(store == null) {
+			voxels[index] = rgb & 0xFFFFFF;
+			unreadable = false;
+			version++;
+			return;
+		}
+		synchronized(store) {	// make sure the write is not lost to a concurrent eviction
+			store.load(this)[index] = rgb & 0xFFFFFF;
+			storeModified = true;
+			unreadable = false;
+		}
+		version++;
+	}
+
+	// rgbData is laid out as R G B per voxel in the same order as in the qu3d file
+	public void writeRgbData(byte[] rgbData) {
+		packRgb(getVoxels(), rgbData);
+	}
+	public void readRgbData(byte[] rgbData) {
+		preserveSnapshot();
+		FrameStore store = frameStore;
+		if(store == null) {
+			unpackRgb(rgbData, voxels);
+			unreadable = false;
+			version++;
+			return;
+		}
+		synchronized(store) {
+			unpackRgb(rgbData, store.load(this));
+			storeModified = true;
+			unreadable = false;
+		}
+		version++;
+	}
+	public static int getRgbDataSize(int cubeSide) {
+		return RGB_BYTES * cubeSide * cubeSide * cubeSide;
+	}
+	protected static void packRgb(int[] voxels, byte[] rgbData) {
+		for(int i = 0, j = 0; i < voxels.length; i++, j += RGB_BYTES) {
+			int rgb = voxels[i];
+			rgbData[j] = (byte) (rgb >> 16);
+			rgbData[j + 1] = (byte) (rgb >> 8);
+			rgbData[j + 2] = (byte) rgb;
+		}
+	}
+	protected static void unpackRgb(byte[] rgbData, int[] voxels) {
+		for(int i = 0, j = 0; i < voxels.length; i++, j += RGB_BYTES)
+			voxels[i] = ((rgbData[j] & 0xFF) << 16) | ((rgbData[j + 1] & 0xFF) << 8) | (rgbData[j + 2] & 0xFF);
+	}
+
+	// returns the voxel buffer, decoding it from the frame store first if it has been evicted
+	private int[] getVoxels() {
+		FrameStore store = frameStore;
+		if(store == null)
+			return voxels;
+		return store.load(this);
+	}
+
+	// changes after every change of the voxels, see VoxelDataCache
+	public int getVersion() {
+		return version;
+	}
+
+	// packed 0xRRGGBB colors of every voxel, fetched with a single frame store lookup for redraws of the whole frame
+	public int[] copyVoxels() {
+		return getVoxels().clone();
+	}
+
+	private void preserveSnapshot() {
+		if(snapshot == null)
+			return;
+		snapshot.preserve();
+		snapshot = null;
+	}
+	protected FrameSnapshot getSnapshot() {
+		return snapshot;
+	}
+	protected void setSnapshot(FrameSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	// used by FrameStore, which synchronizes on itself while calling these
+	protected FrameStore getFrameStore() {
+		return frameStore;
+	}
+	protected void setFrameStore(FrameStore frameStore) {
+		this.frameStore = frameStore;
+	}
+	protected int getStoreSlot() {
+		return storeSlot;
+	}
+	protected void setStoreSlot(int storeSlot) {
+		this.storeSlot = storeSlot;
+	}
+	protected int getSourceIndex() {
+		return sourceIndex;
+	}
+	protected void setSourceIndex(int sourceIndex) {
+		this.sourceIndex = sourceIndex;
+	}
+	protected int[] getResidentVoxels() {
+		return voxels;
+	}
+	protected void setResidentVoxels(int[] voxels) {
+		this.voxels = voxels;
+	}
+	// true if the frame could not be decoded and is shown empty, it must not be saved until it has been changed
+	public boolean isUnreadable() {
+		return unreadable;
+	}
+	protected void setUnreadable(boolean unreadable) {
+		this.unreadable = unreadable;
+	}
+	protected boolean isStoreModified() {
+		return storeModified;
+	}
+	protected void setStoreModified(boolean storeModified) {
+		this.storeModified = storeModified;
 	}
 
 	public String getDisplayName(int displayIndex) {
@@ -91,62 +238,19 @@ public class Frame {
 		// do not compare the frames' names
 		if(getSide() != frame.getSide() || getDurationInMillis() != frame.getDurationInMillis())
 			return false;
-		for(int x = 0; x < getSide(); x++)
-			for(int y = 0; y < getSide(); y++)
-				for(int z = 0; z < getSide(); z++)
-					if(!voxels[x][y][z].equals(frame.getVoxel(x, y, z)))
-						return false;
-		return true;
+		return Arrays.equals(getVoxels(), frame.getVoxels());
 	}
 
 	public void updateVoxelData(byte[] voxelData, int channelCount, int channelSize) {
-		int channelMaxValue = (int) Math.pow(2, channelSize) - 1;
-
-		Arrays.fill(voxelData, (byte) 0);
-
-		for(int z = 0; z < side; z++) {
-			for(int y = 0; y < side; y++) {
-				for(int x = 0; x < side; x++) {
-					if(channelCount == 1) {
-						int bitOffset = channelSize * (((int) Math.pow(side, 2) * z) + (side * y) + x);
-						int byteOffset = (int) Math.floor((float) (bitOffset) / (float) (GeneralMethods.BYTE_SIZE));
-						int inByteOffset = bitOffset % GeneralMethods.BYTE_SIZE;
-
-						float channelIntensity = (float) Math.max(getVoxel(x, y, side - 1 - z).getColor().getRed(), Math.max(getVoxel(x, y, side - 1 - z).getColor().getGreen(), getVoxel(x, y, side - 1 - z).getColor().getBlue()));
-						int channelValue = Math.round(channelIntensity * channelMaxValue);
-
-						int channelMask = channelValue << inByteOffset;
-						voxelData[byteOffset] |= (byte) channelMask;
-					}
-					else if(channelCount > 1) {
-						for(int i = 0; i < channelCount; i++) {
-							int bitOffset = (channelSize * i) + channelCount * channelSize * (((int) Math.pow(side, 2) * z) + (side * y) + x);
-							int byteOffset = (int) Math.floor((float) (bitOffset) / (float) (GeneralMethods.BYTE_SIZE));
-							int inByteOffset = bitOffset % GeneralMethods.BYTE_SIZE;
-
-							float channelIntensity = 0;
-
-							switch(i) {
-								case 0:
-									channelIntensity = (float) getVoxel(x, y, side - 1 - z).getColor().getRed();
-									break;
-								case 1:
-									channelIntensity = (float) getVoxel(x, y, side - 1 - z).getColor().getGreen();
-									break;
-								case 2:
-									channelIntensity = (float) getVoxel(x, y, side - 1 - z).getColor().getBlue();
-									break;
-							}
-
-							int channelValue = Math.round(channelIntensity * channelMaxValue);
-
-							int channelMask = channelValue << inByteOffset;
-							voxelData[byteOffset] |= (byte) channelMask;
-						}
-					}
-				}
-			}
+		updateVoxelData(voxelData, VoxelPacker.get(channelCount, channelSize));
+	}
+	// prefer this when packing many frames with the same format, the packer only has to be looked up once
+	public void updateVoxelData(byte[] voxelData, VoxelPacker packer) {
+		if(packer == null) {
+			Arrays.fill(voxelData, (byte) 0);	// unsupported format, nothing to pack
+			return;
 		}
+		packer.pack(getVoxels(), side, voxelData);
 	}
 	public static int getVoxelDataSize(int cubeSide, int channelCount, int channelSize) {
 		int voxelBitSize = ((int) Math.pow(cubeSide, 3)) * channelSize * channelCount;
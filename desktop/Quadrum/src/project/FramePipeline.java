@@ -0,0 +1,119 @@
+/*
+ * FramePipeline.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+	Runs the per frame work of saving and loading (packing, unpacking and compressing voxel data) on the
+	common fork join pool, while the calling thread alone does the ordered file io. At most
+	MAX_TASKS_IN_FLIGHT frames are being worked on at a time to keep memory use bounded.
+*/
+public class FramePipeline {
+	private static final int MAX_TASKS_IN_FLIGHT = Math.max(ForkJoinPool.getCommonPoolParallelism(), 1) + 1;
+
+	public interface Encoder<T> {
+		T encode(int index) throws IOException;
+	}
+	public interface Writer<T> {
+		void write(int index, T encoded) throws IOException;
+	}
+	public interface Reader<T> {
+		T read(int index, T recycled) throws IOException;	// recycled is a previously decoded item that may be reused, or null
+	}
+	public interface Decoder<T> {
+		void decode(int index, T data) throws IOException;
+	}
+
+	// encodes items 0 to count - 1 in parallel and hands them to writer in order on the calling thread
+	public static <T> void encodeOrdered(int count, Encoder<T> encoder, Writer<T> writer) throws IOException {
+		ArrayDeque<ForkJoinTask<T>> tasks = new ArrayDeque<>();
+		try {
+			int submitted = 0;
+			for(int i = 0; i < count; i++) {
+				while(submitted < count && tasks.size() < MAX_TASKS_IN_FLIGHT) {
+					int index = submitted++;
+					tasks.add(ForkJoinPool.commonPool().submit(() -> encoder.encode(index)));
+				}
+				writer.write(i, getResult(tasks.poll()));
+			}
+		}
+		finally {
+			cancel(tasks);
+		}
+	}
+	// reads items 0 to count - 1 in order on the calling thread and decodes them in parallel
+	public static <T> void decodeOrdered(int count, Reader<T> reader, Decoder<T> decoder) throws IOException {
+		ArrayDeque<ForkJoinTask<T>> tasks = new ArrayDeque<>();
+		try {
+			for(int i = 0; i < count; i++) {
+				T recycled = null;
+				if(tasks.size() >= MAX_TASKS_IN_FLIGHT)
+					recycled = getResult(tasks.poll());
+				int index = i;
+				T data = reader.read(index, recycled);
+				tasks.add(ForkJoinPool.commonPool().submit(() -> {
+					decoder.decode(index, data);
+					return data;
+				}));
+			}
+			while(!tasks.isEmpty())
+				getResult(tasks.poll());
+		}
+		finally {
+			cancel(tasks);
+		}
+	}
+
+	private static <T> T getResult(ForkJoinTask<T> task) throws IOException {
+		try {
+			return task.get();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch(ExecutionException e) {
+			// the pool wraps checked exceptions of submitted callables, and rethrows them wrapped once more
+			Throwable cause = e.getCause();
+			while(cause instanceof RuntimeException && cause.getCause() instanceof Exception)
+				cause = cause.getCause();
+			if(cause instanceof IOException)
+				throw (IOException) cause;
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+	private static <T> void cancel(ArrayDeque<ForkJoinTask<T>> tasks) {
+		for(ForkJoinTask<T> task : tasks)
+			task.cancel(false);
+	}
+}
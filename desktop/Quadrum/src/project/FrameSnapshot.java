@@ -0,0 +1,95 @@
+/*
+ * FrameSnapshot.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+/*
+	Name, duration and voxels of one frame as they were when a ProjectSnapshot was taken. The voxels are only
+	copied once the frame is about to change.
+*/
+class FrameSnapshot {
+	private final Frame frame;
+	private final String name;
+	private final float durationInMillis;
+	private final FrameSnapshot previous;	// snapshot of an earlier save of the same frame that may still be pending
+
+	private int[] voxels = null;	// copy of the frame's voxels taken before it was first changed
+	private boolean unreadable = false;	// true if the copy is only the empty stand-in of an unreadable frame
+	private volatile boolean changed = false;
+	private boolean released = false;
+
+	public FrameSnapshot(Frame frame, FrameSnapshot previous) {
+		this.frame = frame;
+		name = frame.getName();
+		durationInMillis = frame.getDurationInMillis();
+		this.previous = previous != null && !previous.isReleased() ? previous : null;	// keeps chains from growing across saves
+	}
+
+	public Frame getFrame() {
+		return frame;
+	}
+	public String getName() {
+		return name;
+	}
+	public float getDurationInMillis() {
+		return durationInMillis;
+	}
+	public boolean isChanged() {
+		return changed;
+	}
+	public synchronized boolean isReleased() {
+		return released;
+	}
+
+	// called by the frame right before its voxels change, copy is shared with pending earlier snapshots
+	public void preserve() {
+		preserve(null, false);
+	}
+	private synchronized void preserve(int[] copy, boolean copyUnreadable) {
+		if(!changed && !released) {
+			if(copy == null) {
+				copy = frame.copyVoxels();
+				copyUnreadable = frame.isUnreadable();
+			}
+			voxels = copy;
+			unreadable = copyUnreadable;
+		}
+		changed = true;
+		if(previous != null)
+			previous.preserve(copy, copyUnreadable);
+	}
+	// returns false if the frame could not be decoded, rgbData then only holds its empty stand-in
+	public synchronized boolean writeRgbData(byte[] rgbData) {
+		if(voxels != null) {
+			Frame.packRgb(voxels, rgbData);
+			return !unreadable;
+		}
+		frame.writeRgbData(rgbData);	// unchanged, the frame can not change while this lock is held
+		return !frame.isUnreadable();
+	}
+	public synchronized void release() {
+		released = true;
+		voxels = null;
+	}
+}
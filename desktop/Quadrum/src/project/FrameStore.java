@@ -0,0 +1,298 @@
+/*
+ * FrameStore.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+	Keeps only the most recently used frames of a project decoded on the heap. Every other frame is decoded
+	again when accessed, either from its chunk in the qu3d v2 file the project was opened from (source) or,
+	once it has been modified, from its slot in a memory mapped temporary file. Slots hold R G B bytes per
+	voxel (same layout as in the qu3d file) and the temporary file is only created once a modified frame
+	has to be evicted.
+*/
+public class FrameStore {
+	private static final long FRAME_STORE_THRESHOLD = 128L * 1024 * 1024;	// use a frame store once decoded frames would exceed this on the heap
+	private static final long MAX_RESIDENT_BYTES = 32L * 1024 * 1024;	// decoded voxel buffers kept on the heap
+	private static final long REGION_SIZE = 256L * 1024 * 1024;	// bytes per mapped region, a single mapping cannot exceed 2 GB
+	private static final String FILE_PREFIX = "quadrum", FILE_SUFFIX = ".frames";
+
+	private final int frameBytes, framesPerRegion, maxResidentFrames;
+	private File file = null;
+	private RandomAccessFile randomAccessFile = null;
+	private FileChannel fileChannel = null;
+	private final ArrayList<MappedByteBuffer> regions = new ArrayList<>();
+
+	private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+	private int slotCount = 0;
+
+	private Qu3dFile source;
+	private int unreadableLoads = 0;
+
+	private final LinkedHashMap<Frame, Boolean> residentFrames = new LinkedHashMap<>(16, 0.75f, true);	// access ordered, eldest is least recently used
+	private final byte[] rgbData;
+
+	public FrameStore(int side, Qu3dFile source) {
+		frameBytes = Frame.getRgbDataSize(side);
+		framesPerRegion = (int) Math.max(REGION_SIZE / frameBytes, 1);
+		maxResidentFrames = (int) Math.max(MAX_RESIDENT_BYTES / getDecodedFrameBytes(side), 2);
+		rgbData = new byte[frameBytes];
+		this.source = source;
+	}
+
+	public static boolean isNeeded(int side, int frameCount) {
+		return getDecodedFrameBytes(side) * frameCount > FRAME_STORE_THRESHOLD;
+	}
+	private static long getDecodedFrameBytes(int side) {
+		return (long) Integer.BYTES * side * side * side;
+	}
+
+	// attaches a decoded frame, it is written to a slot once it gets evicted
+	public synchronized void attach(Frame frame) {
+		if(frame.getFrameStore() == this)
+			return;
+		int[] voxels = frame.getResidentVoxels();
+		frame.setStoreSlot(-1);
+		frame.setSourceIndex(-1);
+		frame.setStoreModified(true);
+		frame.setFrameStore(this);
+		makeResident(frame, voxels);
+	}
+	// attaches a frame that has not been decoded yet from index sourceIndex of the source file
+	public synchronized void attachSource(Frame frame, int sourceIndex) {
+		frame.setResidentVoxels(null);
+		frame.setStoreSlot(-1);
+		frame.setSourceIndex(sourceIndex);
+		frame.setStoreModified(false);
+		frame.setFrameStore(this);
+	}
+	public synchronized void detach(Frame frame) {
+		if(frame.getFrameStore() != this)
+			return;
+		int[] voxels = load(frame);
+		residentFrames.remove(frame);
+		freeSlot(frame);
+		frame.setSourceIndex(-1);
+		frame.setResidentVoxels(voxels);
+		frame.setFrameStore(null);
+	}
+
+	// returns the decoded voxels of an attached frame, evicting the least recently used frames if needed
+	protected synchronized int[] load(Frame frame) {
+		int[] voxels = frame.getResidentVoxels();
+		if(voxels != null) {
+			residentFrames.get(frame);	// mark as recently used
+			return voxels;
+		}
+		voxels = new int[frameBytes / Frame.RGB_BYTES];
+		if(frame.getStoreSlot() >= 0) {
+			readSlot(frame.getStoreSlot(), voxels);
+		}
+		else if(frame.getSourceIndex() >= 0) {
+			try {
+				if(source == null)
+					throw new IOException("the project file is not open");
+				source.readFrame(frame.getSourceIndex(), rgbData);
+				Frame.unpackRgb(rgbData, voxels);
+			}
+			catch(IOException e) {
+				e.printStackTrace();	// the frame is shown empty rather than failing the caller, but may not be saved like that
+				if(!frame.isUnreadable())
+					unreadableLoads++;
+				frame.setUnreadable(true);
+			}
+		}
+		frame.setStoreModified(false);
+		makeResident(frame, voxels);
+		return voxels;
+	}
+
+	// returns the index of the source chunk that still holds exactly the frame's voxels, -1 if there is none
+	protected synchronized int getUnchangedSourceIndex(Frame frame) {
+		if(frame.getFrameStore() != this || frame.isStoreModified())
+			return -1;
+		return frame.getSourceIndex();
+	}
+	// increases every time a frame could not be decoded from the source
+	public synchronized int getUnreadableLoads() {
+		return unreadableLoads;
+	}
+	protected synchronized Qu3dFile getSource() {
+		return source;
+	}
+	// reads a compressed chunk of source, null if source is no longer the store's source or the chunk is unreadable
+	protected synchronized byte[] readSourceChunk(Qu3dFile source, int sourceIndex) {
+		if(source == null || source != this.source)
+			return null;
+		try {
+			return source.readChunkData(sourceIndex);
+		}
+		catch(IOException e) {
+			e.printStackTrace();	// the frame is compressed again from its voxels instead
+			return null;
+		}
+	}
+
+	/*
+		Points every frame at its chunk in a freshly written qu3d v2 file, which holds the frames of snapshot in
+		the same order. Frames changed since the snapshot was taken keep their decoded voxels or slot, every
+		other frame drops its slot and can be evicted without being written anywhere. The previous source is
+		closed before replace runs, replace is expected to move the new file into place. If the new file can not
+		be opened the previous source is opened again, frames left without a readable source become unreadable.
+	*/
+	public synchronized void setSource(ProjectSnapshot snapshot, String path, SourceReplacer replace) throws IOException {
+		String previousPath = null;
+		if(source != null) {
+			previousPath = source.getPath();
+			source.close();
+		}
+		source = null;
+		try {
+			replace.replace();
+		}
+		catch(IOException e) {
+			reopenSource(previousPath, e);	// frames still need their previous source
+			throw e;
+		}
+		try {
+			source = new Qu3dFile(path);
+		}
+		catch(IOException e) {
+			// frames still point at their chunks in the previous source, unless it has just been replaced
+			if(previousPath != null && !Paths.get(previousPath).toAbsolutePath().equals(Paths.get(path).toAbsolutePath()))
+				reopenSource(previousPath, e);
+			throw e;
+		}
+		for(int i = 0; i < snapshot.getFrameSize(); i++) {
+			Frame frame = snapshot.getFrame(i);
+			if(frame.getFrameStore() != this || snapshot.isFrameChanged(i))
+				continue;
+			freeSlot(frame);
+			frame.setSourceIndex(i);
+			frame.setStoreModified(false);
+		}
+	}
+	private void reopenSource(String path, IOException cause) {
+		if(path == null)
+			return;
+		try {
+			source = new Qu3dFile(path);
+		}
+		catch(IOException e) {
+			cause.addSuppressed(e);	// source stays null, frames that still need it are unreadable
+		}
+	}
+	public interface SourceReplacer {
+		void replace() throws IOException;
+	}
+
+	public synchronized void close() {
+		residentFrames.clear();	// mappings stay valid for frames still in use after the channel is closed
+		try {
+			if(source != null)
+				source.close();
+			if(fileChannel != null) {
+				fileChannel.close();
+				randomAccessFile.close();
+			}
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		if(file != null)
+			file.delete();	// may fail while the mapping is still alive, deleteOnExit takes care of it then
+	}
+
+	private void makeResident(Frame frame, int[] voxels) {
+		frame.setResidentVoxels(voxels);
+		residentFrames.put(frame, Boolean.TRUE);
+
+		Iterator<Map.Entry<Frame, Boolean>> iterator = residentFrames.entrySet().iterator();
+		while(residentFrames.size() > maxResidentFrames && iterator.hasNext()) {
+			Frame evictFrame = iterator.next().getKey();
+			if(evictFrame == frame)
+				continue;
+			if(evictFrame.isStoreModified()) {
+				try {
+					if(evictFrame.getStoreSlot() < 0)
+						evictFrame.setStoreSlot(allocateSlot());
+				}
+				catch(IOException e) {
+					e.printStackTrace();
+					continue;	// could not get a slot, keep the frame on the heap
+				}
+				writeSlot(evictFrame.getStoreSlot(), evictFrame.getResidentVoxels());
+				evictFrame.setSourceIndex(-1);
+			}
+			evictFrame.setStoreModified(false);
+			evictFrame.setResidentVoxels(null);	// threads still holding the old buffer can keep reading it
+			iterator.remove();
+		}
+	}
+
+	private int allocateSlot() throws IOException {
+		if(!freeSlots.isEmpty())
+			return freeSlots.pop();
+		if(fileChannel == null) {
+			file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX);
+			file.deleteOnExit();
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			fileChannel = randomAccessFile.getChannel();
+		}
+		int slot = slotCount;
+		if(slot % framesPerRegion == 0)
+			regions.add(fileChannel.map(FileChannel.MapMode.READ_WRITE, (long) slot * frameBytes, (long) framesPerRegion * frameBytes));
+		slotCount++;
+		return slot;
+	}
+	private void freeSlot(Frame frame) {
+		if(frame.getStoreSlot() >= 0)
+			freeSlots.push(frame.getStoreSlot());
+		frame.setStoreSlot(-1);
+	}
+	private MappedByteBuffer getSlotBuffer(int slot) {
+		MappedByteBuffer region = regions.get(slot / framesPerRegion);
+		region.position((slot % framesPerRegion) * frameBytes);
+		return region;
+	}
+	private void writeSlot(int slot, int[] voxels) {
+		Frame.packRgb(voxels, rgbData);
+		getSlotBuffer(slot).put(rgbData);
+	}
+	private void readSlot(int slot, int[] voxels) {
+		getSlotBuffer(slot).get(rgbData);
+		Frame.unpackRgb(rgbData, voxels);
+	}
+}
@@ -33,14 +33,23 @@ import project.userActions.ActionHandler;
 import project.userActions.StackAction;
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 public class Project {
 	public static final String DEFAULT_PROJECT_NAME = "Untitled Project";
-	private static final int MAX_FRAME_COUNT = 65535,
+	protected static final int MAX_FRAME_COUNT = 65535,
 			MAX_SIDE = 32;
 	private static final float START_HORIZONTAL_ROTATION = -0.392699082f,
 			START_VERTICAL_ROTATION = 2.74889357159f;
@@ -52,10 +61,15 @@ public class Project {
 			currentFrame = 0;
 	private Mat3 transform;
 	private ArrayList<Frame> frames = new ArrayList<>();
+	private FrameStore frameStore = null;	// only used once the frames get too large to keep decoded on the heap
+	private int reportedUnreadableLoads = 0;
+	private volatile String saveError = null;	// why the last save or export failed, null if it did not
+	private final ProjectJournal journal;
 
 	private boolean loop = true;
 	private static boolean grid = true;
 	private Color paintColor = START_PAINT_COLOR;
+	private int paintArgb = VoxelColor.toArgb(START_PAINT_COLOR);
 
 	private Animation animation;
 
@@ -71,6 +85,7 @@ public class Project {
 		transform = Mat3.rotateVertical(START_VERTICAL_ROTATION).mult(Mat3.rotateHorizontal(START_HORIZONTAL_ROTATION));
 
 		actionHandler = new ActionHandler(this, editor);
+		journal = new ProjectJournal(side);
 		setName(name); }
 
 	public void setName(String name) {
@@ -119,6 +134,7 @@ public class Project {
 		if(frame == null)
 			frame = new Frame(getSide());
 		frames.add(index, frame);
+		attachFrameStore(frame);
 		return true;
 	}
 	public Frame replaceFrame(Frame frame, int index) {
@@ -128,6 +144,8 @@ public class Project {
 			return null;
 		Frame ret = getFrame(index);
 		frames.set(index, frame);
+		detachFrameStore(ret);
+		attachFrameStore(frame);
 		return ret;
 	}
 	public Frame removeFrame(int index) {
@@ -135,9 +153,39 @@ public class Project {
 			return null;
 		Frame ret = getFrame(index);
 		frames.remove(index);
+		detachFrameStore(ret);
 		return ret;
 	}
 
+	private void attachFrameStore(Frame frame) {
+		if(frameStore == null)
+			prepareFrameStore(frames.size());
+		else
+			frameStore.attach(frame);
+	}
+	// moves the project into a frame store if frameCount frames would need one
+	private void prepareFrameStore(int frameCount) {
+		if(frameStore != null || !FrameStore.isNeeded(getSide(), frameCount))
+			return;
+		frameStore = new FrameStore(getSide(), null);
+		for(Frame projectFrame : frames)
+			frameStore.attach(projectFrame);
+	}
+	private void detachFrameStore(Frame frame) {
+		// frames leaving the project (kept by undo actions or the clipboard) go back to the heap
+		if(frameStore != null)
+			frameStore.detach(frame);
+	}
+	public void close() {
+		animation.terminateAnimation();
+		waitForSave();	// a pending save may still read frames from the store
+		journal.close(false);	// closed on purpose, unsaved edits are dropped
+		VoxelDataCache.removeFrames(frames);
+		if(frameStore != null)
+			frameStore.close();
+		frameStore = null;
+	}
+
 	public boolean canAddFrame() {
 		return frames.size() < MAX_FRAME_COUNT;
 	}
@@ -182,13 +230,17 @@ public class Project {
 
 	public void setPaintColor(Color paintColor) {
 		this.paintColor = paintColor;
+		paintArgb = VoxelColor.toArgb(paintColor);
 	}
 	public Color getPaintColor() {
 		return paintColor;
 	}
+	public int getPaintArgb() {
+		return paintArgb;
+	}
 
 	/*
-		============================ qu3d file structure ==============================
+		========================== qu3d v1 file structure =============================
 			        BYTE               |         DESCRIPTION          |     DATA
 	file                               |                              |
 		0 - 7                          |  qu3d file signature         |  71 75 3D 37...     }
@@ -210,7 +262,8 @@ public class Project {
 		(AN + K - 16) - (BN + K - 1)   |  frame name                  |  STRING             }
 		(AN + K) - (BN + K)            |  cube voxel color (frame c)  |  R G ... G B        }
 		===============================================================================
-	NOTE: N is cubeSideLength^3
+	NOTE: N is cubeSideLength^3, the whole v1 file is stored in a single zip entry. Projects are saved in the
+	indexed v2 layout described in Qu3dFile, v1 files can still be opened.
 	*/
 
 	public static final String FILE_EXTENSION = "qu3d";
@@ -218,19 +271,31 @@ public class Project {
 
 	private static final int BYTES_IN_FRAME_DURATION = 4;
 	public static final int FRAME_NAME_LENGTH = 32;
-	private static final byte[] QU3D_SIGNATURE = {0x71, 0x75, 0x3D, 0x37, 0x4C, 0x45, 0x4F, 0x3E};
+	protected static final byte[] QU3D_SIGNATURE = {0x71, 0x75, 0x3D, 0x37, 0x4C, 0x45, 0x4F, 0x3E};
+
+	protected static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Quadrum save");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	private boolean modified = false;
-	private String filePath = null;
+	private long modificationCount = 0;	// increased on every modification, tells if a project changed while it was being saved
+	private volatile String filePath = null;
+	private Future<Boolean> pendingSave = null;
 
 	public String getFilePath() {
 		return filePath;
 	}
 
-	public void setModified(boolean modified) {
+	public synchronized void setModified(boolean modified) {
 		this.modified = modified;
+		if(modified)
+			modificationCount++;
 	}
-	public boolean isModified() {
+	public synchronized boolean isModified() {
 		return modified;
 	}
 
@@ -241,10 +306,175 @@ public class Project {
 		this.filePath = filePath;
 	}
 
+	public interface SaveListener {
+		void progress(double fraction);	// called on the save thread
+		void finished(boolean saved);	// called on the save thread
+	}
+
+	// the reason the last save or export failed, null if it succeeded or the reason is unknown
+	public String getSaveError() {
+		return saveError;
+	}
+	protected static String getUnreadableFrameMessage(int index) {
+		return "Frame " + (index + 1) + " could not be read from the project file, change or remove it before saving.";
+	}
+	// true once after frames turned out to be unreadable, they are shown empty and block saving until changed
+	public synchronized boolean hasNewUnreadableFrames() {
+		if(frameStore == null)
+			return false;
+		int unreadableLoads = frameStore.getUnreadableLoads();
+		boolean newFrames = unreadableLoads != reportedUnreadableLoads;
+		reportedUnreadableLoads = unreadableLoads;
+		return newFrames;
+	}
+
 	public boolean save() {
 		return save(filePath);
 	}
+	// saves and waits for the save to finish
 	public boolean save(String path) {
+		try {
+			return saveInBackground(path, null).get();
+		}
+		catch(InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+	/*
+		Takes a snapshot of the project and writes it on the save thread, returns right away. The project can be
+		edited while it is being saved, saves are written one at a time in the order they were requested. Must
+		be called from the thread that edits the project, listener may be null.
+	*/
+	public Future<Boolean> saveInBackground(String path, SaveListener listener) {
+		ProjectSnapshot snapshot;
+		long journalPosition = journal.getPosition();
+		synchronized(this) {
+			snapshot = new ProjectSnapshot(this, modificationCount, frameStore);
+		}
+		pendingSave = SAVE_EXECUTOR.submit(() -> {
+			boolean saved = false;
+			try {
+				saved = writeSnapshot(snapshot, journalPosition, path, listener);
+			}
+			finally {
+				if(listener != null)
+					listener.finished(saved);
+			}
+			return saved;
+		});
+		return pendingSave;
+	}
+	private void waitForSave() {
+		if(pendingSave == null)
+			return;
+		try {
+			pendingSave.get();
+		}
+		catch(InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+	private boolean writeSnapshot(ProjectSnapshot snapshot, long journalPosition, String path, SaveListener listener) {
+		// write next to the destination first so that a failed save never destroys the previous file
+		Path destination = Paths.get(path);
+		Path temporary = Paths.get(path + TEMPORARY_FILE_SUFFIX);
+		saveError = null;
+		try {
+			Qu3dFile.write(snapshot, temporary.toString(), listener);
+
+			if(snapshot.getFrameStore() != null)	// frames not yet decoded are read from the previous file, so point them to the new one
+				snapshot.getFrameStore().setSource(snapshot, path, () -> replaceFile(temporary, destination));
+			else
+				replaceFile(temporary, destination);
+
+			synchronized(this) {
+				this.filePath = path;
+				if(modificationCount == snapshot.getModificationCount())	// edits made during the save are not in the file
+					modified = false;
+			}
+			rebaseJournal(journalPosition, path, false);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			saveError = e.getMessage();
+			try {
+				Files.deleteIfExists(temporary);
+			}
+			catch(IOException deleteException) {}
+			return false;
+		}
+		finally {
+			snapshot.release();
+		}
+		return true;
+	}
+
+	protected ProjectJournal getJournal() {
+		return journal;
+	}
+	// records the effect of a stack action that has just been executed or undone
+	public void journal(StackAction action, boolean undone) {
+		action.journal(this, journal, undone);
+		if(journal.needsCompaction())
+			compactJournal();
+	}
+	// writes the project to its recovery file in the background so the journal can drop its records
+	private void compactJournal() {
+		String path = filePath;
+		ProjectSnapshot snapshot;
+		long journalPosition = journal.getPosition();
+		synchronized(this) {
+			snapshot = new ProjectSnapshot(this, modificationCount, frameStore);
+		}
+		journal.setCompacting(true);
+		pendingSave = SAVE_EXECUTOR.submit(() -> {
+			Path recovery = Paths.get(ProjectJournal.getRecoveryPath(path));
+			Path temporary = Paths.get(ProjectJournal.getRecoveryPath(path) + TEMPORARY_FILE_SUFFIX);
+			try {
+				Qu3dFile.write(snapshot, temporary.toString(), null);
+				replaceFile(temporary, recovery);
+				rebaseJournal(journalPosition, path, true);
+				return true;
+			}
+			catch(IOException e) {
+				e.printStackTrace();
+				try {
+					Files.deleteIfExists(temporary);
+				}
+				catch(IOException deleteException) {}
+				return false;
+			}
+			finally {
+				snapshot.release();
+				journal.setCompacting(false);
+			}
+		});
+	}
+	private void rebaseJournal(long journalPosition, String path, boolean recovery) {
+		try {
+			journal.rebase(journalPosition, path, recovery);
+		}
+		catch(IOException e) {
+			e.printStackTrace();	// the file itself is fine, only crash recovery is lost until the next save
+		}
+	}
+
+	private static void replaceFile(Path source, Path destination) throws IOException {
+		try {
+			Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch(AtomicMoveNotSupportedException e) {
+			Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	// exports the original zip based qu3d layout, readable by older versions of Quadrum, the project keeps its own file
+	public boolean saveVersion1(String path) {
+		if(hasFilePath() && Paths.get(path).toAbsolutePath().equals(Paths.get(getFilePath()).toAbsolutePath())) {
+			saveError = "A project can not be exported to its own file, choose another file.";	// it may still hold frames that have not been decoded yet
+			return false;
+		}
+		saveError = null;
 		try {
 			FileOutputStream fos = new FileOutputStream(path);
 			ZipOutputStream outputStream = new ZipOutputStream(fos);
@@ -257,45 +487,99 @@ public class Project {
 			// write options
 			outputStream.write(new byte[]{(byte) (isLoop() ? 0xff : 0x0)}, 0, 1);
 			byte[] paintColor = new byte[4];
-			paintColor[0] = Integer.valueOf((int) (Math.round(getPaintColor().getRed() * 255))).byteValue();
-			paintColor[1] = Integer.valueOf((int) (Math.round(getPaintColor().getGreen() * 255))).byteValue();
-			paintColor[2] = Integer.valueOf((int) (Math.round(getPaintColor().getBlue() * 255))).byteValue();
-			paintColor[3] = Integer.valueOf((int) (Math.round(getPaintColor().getOpacity() * 255))).byteValue();
+			paintColor[0] = (byte) VoxelColor.getRed(getPaintArgb());
+			paintColor[1] = (byte) VoxelColor.getGreen(getPaintArgb());
+			paintColor[2] = (byte) VoxelColor.getBlue(getPaintArgb());
+			paintColor[3] = (byte) VoxelColor.getAlpha(getPaintArgb());
 			outputStream.write(paintColor, 0, paintColor.length);
 			outputStream.write(ByteBuffer.allocate(4).putInt(getFrameIndex()).array(), 0, 4);
 			// write cube frame data
-			byte[] frameData = new byte[(int) (3 * Math.pow(getSide(), 3))];
-			for(int i = 0; i < frames.size(); i++) {	// loop through every frame
-				outputStream.write(ByteBuffer.allocate(4).putFloat(getFrame(i).getDurationInMillis()).array(), 0, 4);
-
-				int frameNameLength = Math.min(getFrame(i).getName().length(), 255);
+			int rgbDataSize = Frame.getRgbDataSize(getSide());
+			ByteBuffer durationBuffer = ByteBuffer.allocate(BYTES_IN_FRAME_DURATION);
+			FramePipeline.encodeOrdered(frames.size(), (i) -> {	// pack voxel colors in parallel
+				byte[] frameData = new byte[rgbDataSize];
+				frames.get(i).writeRgbData(frameData);
+				if(frames.get(i).isUnreadable())
+					throw new IOException(getUnreadableFrameMessage(i));
+				return frameData;
+			}, (i, frameData) -> {	// write frames in order
+				Frame frame = frames.get(i);
+				outputStream.write(durationBuffer.putFloat(0, frame.getDurationInMillis()).array(), 0, BYTES_IN_FRAME_DURATION);
+
+				int frameNameLength = Math.min(frame.getName().length(), 255);
 				outputStream.write(new byte[]{Integer.valueOf(frameNameLength).byteValue()}, 0, 1);
-				outputStream.write(GeneralMethods.stringToByteArray(getFrame(i).getName(), frameNameLength), 0, frameNameLength);
-				for (int x = 0; x < getSide(); x++) {
-					for (int y = 0; y < getSide(); y++) {
-						for (int z = 0; z < getSide(); z++) {
-							frameData[(int) ((z * Math.pow(getSide(), 2) * 3) + (y * getSide() * 3) + (x * 3) + 0)] = Integer.valueOf((int) (Math.round(getFrame(i).getVoxel(x, y, z).getColor().getRed() * 255))).byteValue();
-							frameData[(int) ((z * Math.pow(getSide(), 2) * 3) + (y * getSide() * 3) + (x * 3) + 1)] = Integer.valueOf((int) (Math.round(getFrame(i).getVoxel(x, y, z).getColor().getGreen() * 255))).byteValue();
-							frameData[(int) ((z * Math.pow(getSide(), 2) * 3) + (y * getSide() * 3) + (x * 3) + 2)] = Integer.valueOf((int) (Math.round(getFrame(i).getVoxel(x, y, z).getColor().getBlue() * 255))).byteValue();
-						}
-					}
-				}
+				outputStream.write(GeneralMethods.stringToByteArray(frame.getName(), frameNameLength), 0, frameNameLength);
 				outputStream.write(frameData, 0, frameData.length);
-			}
+			});
 
 			outputStream.closeEntry();
 			outputStream.close();
-
-			this.filePath = path;
-			modified = false;
 		}
 		catch(IOException e) {
 			e.printStackTrace();
+			saveError = e.getMessage();
 			return false;
 		}
 		return true;
 	}
+	// opens the project at path, replaying edits journaled for it if Quadrum did not close it properly
 	public static Project loadProject(Editor editor, String path) {
+		Project project = ProjectJournal.recover(basePath -> loadProjectFile(editor, basePath), path);
+		if(project != null) {
+			project.setFilePath(path);
+			// recovered edits, and a recovery base, are not in the project file yet
+			project.setModified(project.getJournal().getPosition() > 0 || project.getJournal().isRecoveryBased());
+			return project;
+		}
+
+		project = loadProjectFile(editor, path);
+		if(project != null)
+			project.rebaseJournal(0, path, false);
+		return project;
+	}
+	private static Project loadProjectFile(Editor editor, String path) {
+		if(Qu3dFile.isQu3dFile(path))
+			return loadProjectVersion2(editor, path);
+		return loadProjectVersion1(editor, path);
+	}
+	private static Project loadProjectVersion2(Editor editor, String path) {
+		Qu3dFile file = null;
+		try {
+			// only the header and frame index are read here, frame voxels are decoded by the frame store when first used
+			file = new Qu3dFile(path);
+			Project retProject = new Project(editor, new File(path).getName().split("\\.")[0], file.getSide());
+			retProject.setLoop(file.isLoop());
+			int paintArgb = file.getPaintArgb();
+			retProject.setPaintColor(new Color(VoxelColor.toDouble(VoxelColor.getRed(paintArgb)), VoxelColor.toDouble(VoxelColor.getGreen(paintArgb)),
+					VoxelColor.toDouble(VoxelColor.getBlue(paintArgb)), VoxelColor.toDouble(VoxelColor.getAlpha(paintArgb))));
+
+			retProject.frameStore = new FrameStore(file.getSide(), file);
+			retProject.frames.clear();
+			for(int i = 0; i < file.getFrameCount(); i++) {
+				Frame frame = new Frame(file.getSide(), null);
+				frame.setDurationInMillis(file.getFrameDuration(i));
+				frame.setName(file.getFrameName(i));
+				retProject.frames.add(frame);
+				retProject.frameStore.attachSource(frame, i);
+			}
+
+			retProject.setCurrentFrame(file.getLastlyEditedFrame());
+			retProject.setFilePath(path);
+			retProject.setModified(false);
+
+			return retProject;
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			try {
+				if(file != null)
+					file.close();
+			}
+			catch(IOException closeException) {}
+			return null;
+		}
+	}
+	private static Project loadProjectVersion1(Editor editor, String path) {
 		try {
 			// load file and check signature
 			FileInputStream fis = new FileInputStream(path);
@@ -303,19 +587,19 @@ public class Project {
 			inputStream.getNextEntry();
 
 			byte[] fileSignature = new byte[QU3D_SIGNATURE.length];
-			if(inputStream.read(fileSignature) < 0)
+			if(inputStream.readNBytes(fileSignature, 0, fileSignature.length) < fileSignature.length)
 				return null;
 			for (int i = 0; i < fileSignature.length; i++)
 				if (fileSignature[i] != QU3D_SIGNATURE[i])
 					return null;
 			// load remaining part of file data
 			byte[] fileCubeData = new byte[1];
-			if(inputStream.read(fileCubeData) < 0)
+			if(inputStream.readNBytes(fileCubeData, 0, fileCubeData.length) < fileCubeData.length)
 				return null;
 			int fileCubeSide = fileCubeData[0] & 0xFF;
 
 			byte[] fileFrameData = new byte[4];
-			if(inputStream.read(fileFrameData) < 0)
+			if(inputStream.readNBytes(fileFrameData, 0, fileFrameData.length) < fileFrameData.length)
 				return null;
 			int fileFrameSize = ByteBuffer.wrap(fileFrameData).getInt();
 			// run file data validation
@@ -323,7 +607,7 @@ public class Project {
 				return null;
 			// load option data
 			byte[] optionData = new byte[5];
-			if(inputStream.read(optionData) < 0)
+			if(inputStream.readNBytes(optionData, 0, optionData.length) < optionData.length)
 				return null;
 			boolean fileLoop = (optionData[0] & 0xFF) == 255;
 			int filePaintColorRed = optionData[1] & 0xFF;
@@ -332,48 +616,41 @@ public class Project {
 			int filePaintColorOpacity = optionData[4] & 0xFF;
 
 			byte[] lastlyEditedFrameData = new byte[4];
-			if(inputStream.read(lastlyEditedFrameData) < 0)
+			if(inputStream.readNBytes(lastlyEditedFrameData, 0, lastlyEditedFrameData.length) < lastlyEditedFrameData.length)
 				return null;
 			int lastlyEditedFrame = ByteBuffer.wrap(lastlyEditedFrameData).getInt();
 
 			// set up project
 			Project retProject = new Project(editor, new File(path).getName().split("\\.")[0], fileCubeSide);
 			retProject.setLoop(fileLoop);
-			retProject.setPaintColor(new Color((double) filePaintColorRed / 255, (double) filePaintColorGreen / 255, (double) filePaintColorBlue / 255, (double) filePaintColorOpacity / 255));
+			retProject.setPaintColor(new Color(VoxelColor.toDouble(filePaintColorRed), VoxelColor.toDouble(filePaintColorGreen), VoxelColor.toDouble(filePaintColorBlue), VoxelColor.toDouble(filePaintColorOpacity)));
 
-			// load all frames
+			// load all frames, file reads stay in order while voxel colors are unpacked in parallel
+			retProject.prepareFrameStore(fileFrameSize);	// frames must not move into a store while being unpacked
 			byte[] frameDurationData = new byte[BYTES_IN_FRAME_DURATION];
 			byte[] frameNameLengthByte = new byte[1];
-			byte[] frameVoxelData = new byte[(int) (3 * Math.pow(fileCubeSide, 3))];
-			for (int i = 0; i < fileFrameSize; i++) {
+			FramePipeline.<FrameData>decodeOrdered(fileFrameSize, (i, recycled) -> {
 				if (i > 0)	// add new frames as they are iterated through
 					retProject.addFrame(null, i);
+				FrameData frameData = recycled != null ? recycled : new FrameData(fileCubeSide);
+				frameData.frame = retProject.getFrame(i);
 				// load duration
-				if(inputStream.read(frameDurationData) < 0)
-					return null;
-				retProject.getFrame(i).setDurationInMillis(ByteBuffer.wrap(frameDurationData).getFloat());
+				if(inputStream.readNBytes(frameDurationData, 0, frameDurationData.length) < frameDurationData.length)
+					throw new EOFException();
+				frameData.frame.setDurationInMillis(ByteBuffer.wrap(frameDurationData).getFloat());
 				// load frame name
-				if(inputStream.read(frameNameLengthByte) < 0)
-					return null;
+				if(inputStream.readNBytes(frameNameLengthByte, 0, frameNameLengthByte.length) < frameNameLengthByte.length)
+					throw new EOFException();
 				int frameNameLength = frameNameLengthByte[0] & 0xFF;
 				byte[] frameNameArray= new byte[frameNameLength];
-				if(inputStream.read(frameNameArray) < 0)
-					return null;
-				retProject.getFrame(i).setName(GeneralMethods.byteArrayToString(frameNameArray));
+				if(inputStream.readNBytes(frameNameArray, 0, frameNameArray.length) < frameNameArray.length)
+					throw new EOFException();
+				frameData.frame.setName(GeneralMethods.byteArrayToString(frameNameArray));
 				// load frame voxel colors
-				if(inputStream.read(frameVoxelData) < 0)
-					return null;
-				for (int x = 0; x < fileCubeSide; x++) {
-					for (int y = 0; y < fileCubeSide; y++) {
-						for (int z = 0; z < fileCubeSide; z++) {
-							int voxelColorRed = frameVoxelData[(int) ((z * Math.pow(fileCubeSide, 2) * 3) + (y * fileCubeSide * 3) + (x * 3) + 0)] & 0xFF;
-							int voxelColorGreen = frameVoxelData[(int) ((z * Math.pow(fileCubeSide, 2) * 3) + (y * fileCubeSide * 3) + (x * 3) + 1)] & 0xFF;
-							int voxelColorBlue = frameVoxelData[(int) ((z * Math.pow(fileCubeSide, 2) * 3) + (y * fileCubeSide * 3) + (x * 3) + 2)] & 0xFF;
-							retProject.getFrame(i).getVoxel(x, y, z).setColor(new Color((double) voxelColorRed / 255, (double) voxelColorGreen / 255, (double) voxelColorBlue / 255, 1.0d));
-						}
-					}
-				}
-			}
+				if(inputStream.readNBytes(frameData.rgbData, 0, frameData.rgbData.length) < frameData.rgbData.length)
+					throw new EOFException();
+				return frameData;
+			}, (i, frameData) -> frameData.frame.readRgbData(frameData.rgbData));
 
 			inputStream.closeEntry();
 			inputStream.close();
@@ -390,3 +667,13 @@ public class Project {
 		}
 	}
 }
+
+// one frame read from a qu3d v1 file, waiting for its voxel colors to be unpacked
+class FrameData {
+	Frame frame;
+	final byte[] rgbData;
+
+	FrameData(int side) {
+		rgbData = new byte[Frame.getRgbDataSize(side)];
+	}
+}
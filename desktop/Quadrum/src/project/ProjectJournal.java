@@ -0,0 +1,503 @@
+/*
+ * ProjectJournal.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import main.GeneralMethods;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+	Append only journal of the edits made to a project since its base file was written, kept next to the
+	project file so that unsaved edits survive a crash. Stack actions record their effect here once executed
+	or undone, records are collected in memory and appended to the journal file in checksummed batches.
+	The base is either the project file itself or, once the journal has grown large, a recovery file holding
+	the compacted project. Saving makes the project file the base again and drops every record it contains.
+	Nothing is recorded before the project has been saved once, there is no base to recover against yet.
+
+	journal file structure:
+
+	(8 bytes) signature
+	(1 byte) version
+	(1 byte) base, BASE_PROJECT_FILE or BASE_RECOVERY_FILE
+	(8 bytes) size of the base file
+	(8 bytes) last modified time of the base file in milliseconds
+
+	batches until end of file:
+		(4 bytes) length of records
+		(4 bytes) crc32 of records
+		(length bytes) records
+
+	records, each starting with a 1 byte type followed by:
+		RECORD_VOXEL (4 bytes) frame index, (4 bytes) voxel index, (3 bytes) R G B
+		RECORD_ADD_FRAME, RECORD_REPLACE_FRAME (4 bytes) frame index, (4 bytes) duration, (1 byte) name length,
+			(name length bytes) name, (4 bytes) deflated length, (deflated length bytes) deflated R G B voxel data
+		RECORD_REMOVE_FRAME (4 bytes) frame index
+		RECORD_DURATION (4 bytes) frame index, (4 bytes) duration
+		RECORD_NAME (4 bytes) frame index, (1 byte) name length, (name length bytes) name
+
+	A torn batch at the end of the file (crash while appending) is ignored.
+*/
+public class ProjectJournal {
+	private static final byte[] SIGNATURE = {0x71, 0x75, 0x33, 0x64, 0x4A, 0x52, 0x4E, 0x4C};
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 26, BATCH_HEADER_SIZE = 8;
+	private static final String JOURNAL_SUFFIX = ".journal", RECOVERY_SUFFIX = ".recovery";
+	private static final byte BASE_PROJECT_FILE = 0, BASE_RECOVERY_FILE = 1;
+
+	private static final byte RECORD_VOXEL = 1, RECORD_ADD_FRAME = 2, RECORD_REPLACE_FRAME = 3, RECORD_REMOVE_FRAME = 4,
+			RECORD_DURATION = 5, RECORD_NAME = 6;
+
+	private static final long FLUSH_INTERVAL_MILLIS = 1000;
+	private static final int MAX_BATCH_SIZE = 64 * 1024;	// flushes right away once this many records are waiting
+	private static final int COMPACT_SIZE = 4 * 1024 * 1024;	// records kept since the base before compacting into a recovery file
+
+	private static final ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Quadrum journal");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final int side;
+	private final RecordBuffer records = new RecordBuffer();	// every record since the base
+	private final DataOutputStream recordStream = new DataOutputStream(records);
+	private long baseOffset = 0;	// journal position of the first record in records
+	private int flushedSize = 0;	// bytes of records already appended to the file
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+	private String projectPath = null;	// null until the project has a file to journal against
+	private FileChannel channel = null;
+	private ScheduledFuture<?> flushTask = null;
+	private boolean compacting = false;
+	private boolean recoveryBase = false;	// true while the base is a recovery file and not the project file
+
+	public ProjectJournal(int side) {
+		this.side = side;
+	}
+
+	public static String getJournalPath(String projectPath) {
+		return projectPath + JOURNAL_SUFFIX;
+	}
+	public static String getRecoveryPath(String projectPath) {
+		return projectPath + RECOVERY_SUFFIX;
+	}
+
+	// records, called on the thread that edits the project once an edit has been applied
+	public void voxelChanged(int frameIndex, Voxel voxel) {
+		if(!hasFile())
+			return;
+		synchronized(this) {
+			try {
+				recordStream.writeByte(RECORD_VOXEL);
+				recordStream.writeInt(frameIndex);
+				recordStream.writeInt(voxel.getIndex());
+				int rgb = voxel.getRgb();
+				recordStream.writeByte(rgb >> 16);
+				recordStream.writeByte(rgb >> 8);
+				recordStream.writeByte(rgb);
+			}
+			catch(IOException e) {
+				e.printStackTrace();	// never thrown by a ByteArrayOutputStream
+			}
+		}
+		recorded();
+	}
+	public void frameAdded(int frameIndex, Frame frame) {
+		writeFrameRecord(RECORD_ADD_FRAME, frameIndex, frame);
+	}
+	public void frameReplaced(int frameIndex, Frame frame) {
+		writeFrameRecord(RECORD_REPLACE_FRAME, frameIndex, frame);
+	}
+	public void frameRemoved(int frameIndex) {
+		if(!hasFile())
+			return;
+		synchronized(this) {
+			try {
+				recordStream.writeByte(RECORD_REMOVE_FRAME);
+				recordStream.writeInt(frameIndex);
+			}
+			catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+		recorded();
+	}
+	public void durationChanged(int frameIndex, float durationInMillis) {
+		if(!hasFile())
+			return;
+		synchronized(this) {
+			try {
+				recordStream.writeByte(RECORD_DURATION);
+				recordStream.writeInt(frameIndex);
+				recordStream.writeFloat(durationInMillis);
+			}
+			catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+		recorded();
+	}
+	public void nameChanged(int frameIndex, String name) {
+		if(!hasFile())
+			return;
+		synchronized(this) {
+			try {
+				recordStream.writeByte(RECORD_NAME);
+				recordStream.writeInt(frameIndex);
+				writeName(name);
+			}
+			catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+		recorded();
+	}
+	private void writeFrameRecord(byte type, int frameIndex, Frame frame) {
+		if(!hasFile())
+			return;
+		byte[] rgbData = new byte[Frame.getRgbDataSize(side)];
+		frame.writeRgbData(rgbData);
+		deflater.reset();
+		deflater.setInput(rgbData);
+		deflater.finish();
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		while(!deflater.finished())
+			deflated.write(buffer, 0, deflater.deflate(buffer));
+
+		synchronized(this) {
+			try {
+				recordStream.writeByte(type);
+				recordStream.writeInt(frameIndex);
+				recordStream.writeFloat(frame.getDurationInMillis());
+				writeName(frame.getName());
+				recordStream.writeInt(deflated.size());
+				deflated.writeTo(recordStream);
+			}
+			catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+		recorded();
+	}
+	private void writeName(String name) throws IOException {
+		int nameLength = Math.min(name.length(), Project.FRAME_NAME_LENGTH);
+		recordStream.writeByte(nameLength);
+		recordStream.write(GeneralMethods.stringToByteArray(name, nameLength), 0, nameLength);
+	}
+	private synchronized boolean hasFile() {
+		return channel != null;
+	}
+	private synchronized void recorded() {
+		if(records.size() - flushedSize > MAX_BATCH_SIZE)
+			FLUSH_EXECUTOR.execute(this::flush);
+	}
+
+	// journal position after the last record, a snapshot taken now contains every record before it
+	public synchronized long getPosition() {
+		return baseOffset + records.size();
+	}
+	// true once enough has been recorded that the project should be compacted into a recovery file
+	public synchronized boolean needsCompaction() {
+		return channel != null && !compacting && records.size() > COMPACT_SIZE;
+	}
+	public synchronized void setCompacting(boolean compacting) {
+		this.compacting = compacting;
+	}
+	// true if the journal's base is a recovery file, whose content the project file does not hold
+	public synchronized boolean isRecoveryBased() {
+		return recoveryBase;
+	}
+
+	/*
+		Makes a freshly written file the base of the journal, dropping the records before position which are
+		contained in it. The base is the project file at projectPath, or its recovery file if recovery is true.
+		Called on the save thread once the file has been moved into place.
+	*/
+	public synchronized void rebase(long position, String projectPath, boolean recovery) throws IOException {
+		if(position < baseOffset)
+			return;	// a later file has already become the base
+		String previousPath = this.projectPath;
+		int dropped = (int) (position - baseOffset);
+
+		Path journalPath = Paths.get(getJournalPath(projectPath));
+		Path temporary = Paths.get(getJournalPath(projectPath) + Project.TEMPORARY_FILE_SUFFIX);
+		Path basePath = Paths.get(recovery ? getRecoveryPath(projectPath) : projectPath);
+		try(FileChannel newChannel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			newChannel.write(createHeader(recovery ? BASE_RECOVERY_FILE : BASE_PROJECT_FILE, basePath));
+			if(records.size() > dropped)
+				newChannel.write(createBatch(records.getBuffer(), dropped, records.size() - dropped));
+			newChannel.force(false);
+		}
+
+		closeChannel();
+		Files.move(temporary, journalPath, StandardCopyOption.REPLACE_EXISTING);
+		channel = FileChannel.open(journalPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.projectPath = projectPath;
+
+		records.discard(dropped);
+		baseOffset = position;
+		flushedSize = records.size();
+		recoveryBase = recovery;
+
+		if(!recovery)	// the project file now holds everything the recovery file did
+			Files.deleteIfExists(Paths.get(getRecoveryPath(projectPath)));
+		if(previousPath != null && !previousPath.equals(projectPath))	// saved under a new path
+			deleteFiles(previousPath);
+		if(flushTask == null)
+			flushTask = FLUSH_EXECUTOR.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	// appends every record not yet in the file as one batch
+	public synchronized void flush() {
+		if(channel == null || records.size() == flushedSize)
+			return;
+		try {
+			channel.write(createBatch(records.getBuffer(), flushedSize, records.size() - flushedSize));
+			channel.force(false);
+			flushedSize = records.size();
+		}
+		catch(IOException e) {
+			e.printStackTrace();	// retried with the next flush
+		}
+	}
+
+	// stops journaling, the journal and recovery file are deleted unless keepFiles is true
+	public synchronized void close(boolean keepFiles) {
+		if(flushTask != null)
+			flushTask.cancel(false);
+		flushTask = null;
+		if(keepFiles)
+			flush();
+		closeChannel();
+		if(!keepFiles && projectPath != null)
+			deleteFiles(projectPath);
+		projectPath = null;
+		deflater.end();
+	}
+	private void closeChannel() {
+		if(channel == null)
+			return;
+		try {
+			channel.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		channel = null;
+	}
+	private static void deleteFiles(String projectPath) {
+		try {
+			Files.deleteIfExists(Paths.get(getJournalPath(projectPath)));
+			Files.deleteIfExists(Paths.get(getRecoveryPath(projectPath)));
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static ByteBuffer createHeader(byte base, Path basePath) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put(SIGNATURE);
+		header.put((byte) VERSION);
+		header.put(base);
+		header.putLong(Files.size(basePath));
+		header.putLong(Files.getLastModifiedTime(basePath).toMillis());
+		header.flip();
+		return header;
+	}
+	private static ByteBuffer createBatch(byte[] data, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(data, offset, length);
+		ByteBuffer batch = ByteBuffer.allocate(BATCH_HEADER_SIZE + length);
+		batch.putInt(length);
+		batch.putInt((int) crc.getValue());
+		batch.put(data, offset, length);
+		batch.flip();
+		return batch;
+	}
+
+	/*
+		Opens the project at path together with the edits journaled for it, returns null if there is no valid
+		journal for the file as it is on disk. The returned project keeps journaling against path.
+	*/
+	protected static Project recover(ProjectLoader loader, String path) {
+		Path journalPath = Paths.get(getJournalPath(path));
+		if(!Files.exists(journalPath))
+			return null;
+		try {
+			byte[] journal = Files.readAllBytes(journalPath);
+			ByteBuffer header = ByteBuffer.wrap(journal);
+			if(journal.length < HEADER_SIZE)
+				throw new IOException("journal header is incomplete");
+			for(byte signatureByte : SIGNATURE)
+				if(header.get() != signatureByte)
+					throw new IOException("not a journal file");
+			if(header.get() != VERSION)
+				throw new IOException("unsupported journal version");
+			boolean recovery = header.get() == BASE_RECOVERY_FILE;
+			Path basePath = Paths.get(recovery ? getRecoveryPath(path) : path);
+			if(!Files.exists(basePath) || header.getLong() != Files.size(basePath) || header.getLong() != Files.getLastModifiedTime(basePath).toMillis())
+				throw new IOException("journal does not belong to the file on disk");
+
+			// collect the records of every intact batch
+			ByteArrayOutputStream records = new ByteArrayOutputStream();
+			int validSize = HEADER_SIZE;
+			while(header.remaining() >= BATCH_HEADER_SIZE) {
+				int length = header.getInt();
+				int checksum = header.getInt();
+				if(length < 0 || length > header.remaining())
+					break;
+				CRC32 crc = new CRC32();
+				crc.update(journal, header.position(), length);
+				if((int) crc.getValue() != checksum)
+					break;
+				records.write(journal, header.position(), length);
+				header.position(header.position() + length);
+				validSize = header.position();
+			}
+
+			Project project = loader.load(basePath.toString());
+			if(project == null)
+				throw new IOException("journal base could not be opened");
+			project.getJournal().replay(project, records.toByteArray());
+
+			// keep appending to the journal after its last intact batch
+			ProjectJournal projectJournal = project.getJournal();
+			synchronized(projectJournal) {
+				projectJournal.records.reset();
+				records.writeTo(projectJournal.records);
+				projectJournal.flushedSize = projectJournal.records.size();
+				projectJournal.projectPath = path;
+				projectJournal.recoveryBase = recovery;
+				projectJournal.channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+				projectJournal.channel.truncate(validSize);
+				projectJournal.channel.position(validSize);
+				projectJournal.flushTask = FLUSH_EXECUTOR.scheduleWithFixedDelay(projectJournal::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			return project;
+		}
+		catch(IOException e) {
+			e.printStackTrace();	// not recoverable, the project is opened without the journal
+			deleteFiles(path);
+			return null;
+		}
+	}
+	protected interface ProjectLoader {
+		Project load(String path);
+	}
+
+	private void replay(Project project, byte[] records) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(records));
+		Inflater inflater = new Inflater();
+		byte[] rgbData = new byte[Frame.getRgbDataSize(side)];
+		try {
+			while(input.available() > 0) {
+				byte type = input.readByte();
+				int frameIndex = input.readInt();
+				if(type != RECORD_ADD_FRAME && project.getFrame(frameIndex) == null)
+					throw new IOException("journal refers to a missing frame");
+				switch(type) {
+					case RECORD_VOXEL:
+						int voxelIndex = input.readInt();
+						int rgb = (input.readUnsignedByte() << 16) | (input.readUnsignedByte() << 8) | input.readUnsignedByte();
+						project.getFrame(frameIndex).setRgb(voxelIndex, rgb);
+						break;
+					case RECORD_ADD_FRAME:
+					case RECORD_REPLACE_FRAME:
+						float durationInMillis = input.readFloat();
+						String name = readName(input);
+						byte[] deflated = new byte[input.readInt()];
+						input.readFully(deflated);
+						inflater.reset();
+						inflater.setInput(deflated);
+						if(inflater.inflate(rgbData) != rgbData.length)
+							throw new IOException("journal frame data is incomplete");
+
+						Frame frame = new Frame(side);
+						frame.readRgbData(rgbData);
+						if(type == RECORD_ADD_FRAME) {
+							if(!project.addFrame(frame, frameIndex))
+								throw new IOException("journal adds a frame out of range");
+						}
+						else {
+							project.replaceFrame(frame, frameIndex);
+						}
+						project.getFrame(frameIndex).setDurationInMillis(durationInMillis);	// replaceFrame keeps an equal frame
+						project.getFrame(frameIndex).setName(name);
+						break;
+					case RECORD_REMOVE_FRAME:
+						project.removeFrame(frameIndex);
+						break;
+					case RECORD_DURATION:
+						project.getFrame(frameIndex).setDurationInMillis(input.readFloat());
+						break;
+					case RECORD_NAME:
+						project.getFrame(frameIndex).setName(readName(input));
+						break;
+					default:
+						throw new IOException("unknown journal record");
+				}
+			}
+		}
+		catch(DataFormatException e) {
+			throw new IOException(e);
+		}
+		finally {
+			inflater.end();
+		}
+	}
+	private static String readName(DataInputStream input) throws IOException {
+		byte[] name = new byte[input.readUnsignedByte()];
+		input.readFully(name);
+		return GeneralMethods.byteArrayToString(name);
+	}
+}
+
+// keeps the journal records, written to the file straight from its buffer instead of a copy of every record
+class RecordBuffer extends ByteArrayOutputStream {
+	// valid up to size(), until the next write
+	protected byte[] getBuffer() {
+		return buf;
+	}
+	// drops the first length bytes
+	protected void discard(int length) {
+		System.arraycopy(buf, length, buf, 0, count - length);
+		count -= length;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * ProjectSnapshot.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import java.io.IOException;
+
+/*
+	A consistent view of a project at the moment a save was requested, so that it can be written on another
+	thread while the user keeps editing. Nothing is copied up front, every frame instead copies its voxels into
+	its snapshot right before it is changed for the first time (copy on write). Must be created on the thread
+	that edits the project.
+*/
+public class ProjectSnapshot {
+	private final int side;
+	private final boolean loop;
+	private final int paintArgb;
+	private final int frameIndex;
+	private final long modificationCount;
+	private final FrameStore frameStore;
+	private final FrameSnapshot[] frames;
+	private final Qu3dFile source;	// file the frame store decoded frames from, null if none
+	private final int[] sourceIndices;	// chunk of source still holding each frame unchanged, -1 if none
+
+	protected ProjectSnapshot(Project project, long modificationCount, FrameStore frameStore) {
+		side = project.getSide();
+		loop = project.isLoop();
+		paintArgb = project.getPaintArgb();
+		frameIndex = project.getFrameIndex();
+		this.modificationCount = modificationCount;
+		this.frameStore = frameStore;
+
+		source = frameStore != null ? frameStore.getSource() : null;
+
+		frames = new FrameSnapshot[project.getFrameSize()];
+		sourceIndices = new int[frames.length];
+		for(int i = 0; i < frames.length; i++) {
+			Frame frame = project.getFrame(i);
+			frames[i] = new FrameSnapshot(frame, frame.getSnapshot());
+			frame.setSnapshot(frames[i]);
+			sourceIndices[i] = source != null ? frameStore.getUnchangedSourceIndex(frame) : -1;
+		}
+	}
+
+	public int getSide() {
+		return side;
+	}
+	public boolean isLoop() {
+		return loop;
+	}
+	public int getPaintArgb() {
+		return paintArgb;
+	}
+	public int getFrameIndex() {
+		return frameIndex;
+	}
+	protected long getModificationCount() {
+		return modificationCount;
+	}
+	protected FrameStore getFrameStore() {
+		return frameStore;	// the store the project used when the snapshot was taken, null if none
+	}
+
+	public int getFrameSize() {
+		return frames.length;
+	}
+	public String getFrameName(int index) {
+		return frames[index].getName();
+	}
+	public float getFrameDuration(int index) {
+		return frames[index].getDurationInMillis();
+	}
+	// fails instead of writing the empty stand-in of a frame that could not be decoded
+	public void writeRgbData(int index, byte[] rgbData) throws IOException {
+		if(!frames[index].writeRgbData(rgbData))
+			throw new IOException(Project.getUnreadableFrameMessage(index));
+	}
+	protected Frame getFrame(int index) {
+		return frames[index].getFrame();
+	}
+	protected Qu3dFile getSource() {
+		return source;
+	}
+	protected int getSourceIndex(int index) {
+		return sourceIndices[index];
+	}
+	// compressed chunk of source still holding the frame as it was when the snapshot was taken, null if there is none
+	protected byte[] readSourceChunk(int index) {
+		if(sourceIndices[index] < 0)
+			return null;
+		return frameStore.readSourceChunk(source, sourceIndices[index]);
+	}
+	// true if the frame has been changed since the snapshot was taken
+	protected boolean isFrameChanged(int index) {
+		return frames[index].isChanged();
+	}
+
+	// drops all copied voxels once the snapshot has been written
+	protected void release() {
+		for(FrameSnapshot frame : frames)
+			frame.release();
+	}
+}
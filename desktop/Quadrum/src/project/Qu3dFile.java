@@ -0,0 +1,404 @@
+/*
+ * Qu3dFile.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import main.GeneralMethods;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class Qu3dFile implements Closeable {
+	/*
+		========================== qu3d v2 file structure =============================
+			        BYTE               |         DESCRIPTION          |     DATA
+	header                             |                              |
+		0 - 7                          |  qu3d file signature         |  71 75 3D 37...     }
+		8 - 8                          |  file format version         |  02                 }
+		9 - 9                          |  cubeSideLength              |  BYTE               }
+		10 - 13                        |  number of frames            |  INT                }  HEADER_SIZE
+		14 - 14                        |  loop option                 |  ff or 00           }
+		15 - 18                        |  paint color                 |  R G B A            }
+		19 - 22                        |  lastly edited frame         |  INT                }
+		23 - 30                        |  frame index offset          |  LONG               }
+		31 - 34                        |  frame index crc32           |  INT                }
+		35 - 38                        |  header crc32 (bytes 0 - 34) |  INT                }
+	frame chunks                       |                              |
+		39 - ...                       |  deflated frame chunks       |  BYTES              }  at offsets in frame index
+	frame index                        |                              |
+		(I + 0) - (I + 7)              |  chunk offset (frame 0)      |  LONG               }
+		(I + 8) - (I + 11)             |  chunk length                |  INT                }
+		(I + 12) - (I + 15)            |  chunk crc32                 |  INT                }
+		(I + 16) - (I + 16)            |  chunk encoding              |  BYTE               }  INDEX_ENTRY_SIZE
+		(I + 17) - (I + 20)            |  delta reference frame       |  INT                }
+		(I + 21) - (I + 24)            |  frame duration time         |  FLOAT              }
+		(I + 25) - (I + 25)            |  frame name length           |  BYTE               }
+		(I + 26) - (I + 57)            |  frame name                  |  STRING             }
+		(I + 58) - ...                 |  index entry (frame 1)       |  ...                }
+		===============================================================================
+	NOTE: I is the frame index offset, every frame chunk inflates to the 3N R G B bytes of one frame,
+	laid out as in the qu3d v1 file (N is cubeSideLength^3). Delta encoded chunks inflate to the XOR of
+	the frame with its reference frame, which is always a raw encoded keyframe, so any frame can be
+	decoded by reading at most two chunks.
+	*/
+
+	public static final int FORMAT_VERSION = 2;
+	private static final int HEADER_SIZE = 39, INDEX_ENTRY_SIZE = 26 + Project.FRAME_NAME_LENGTH;
+	private static final int KEYFRAME_INTERVAL = 32;
+	private static final byte ENCODING_RAW = 0, ENCODING_XOR_DELTA = 1;
+
+	private final String path;
+	private final RandomAccessFile file;
+	private final int side, frameCount, lastlyEditedFrame, paintArgb;
+	private final boolean loop;
+
+	private final long[] chunkOffsets;
+	private final int[] chunkLengths, chunkChecksums, deltaReferences;
+	private final byte[] chunkEncodings;
+	private final float[] frameDurations;
+	private final String[] frameNames;
+
+	private final Inflater inflater = new Inflater();
+	private byte[] chunkData = new byte[0];
+	private final byte[] referenceData;
+
+	public static boolean isQu3dFile(String path) {
+		byte[] signature = new byte[Project.QU3D_SIGNATURE.length + 1];
+		try(FileInputStream inputStream = new FileInputStream(path)) {
+			if(inputStream.readNBytes(signature, 0, signature.length) < signature.length)
+				return false;
+		}
+		catch(IOException e) {
+			return false;
+		}
+		return Arrays.equals(Arrays.copyOf(signature, Project.QU3D_SIGNATURE.length), Project.QU3D_SIGNATURE) &&
+				(signature[Project.QU3D_SIGNATURE.length] & 0xFF) == FORMAT_VERSION;
+	}
+
+	// opens the file and reads its header and frame index, frame chunks are only read by readFrame
+	public Qu3dFile(String path) throws IOException {
+		this.path = path;
+		file = new RandomAccessFile(path, "r");
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(0, header.array());
+			byte[] signature = new byte[Project.QU3D_SIGNATURE.length];
+			header.get(signature);
+			if(!Arrays.equals(signature, Project.QU3D_SIGNATURE) || (header.get() & 0xFF) != FORMAT_VERSION)
+				throw new IOException("not a qu3d v2 file");
+			if(getChecksum(header.array(), HEADER_SIZE - 4) != header.getInt(HEADER_SIZE - 4))
+				throw new IOException("corrupted qu3d header");
+			side = header.get() & 0xFF;
+			frameCount = header.getInt();
+			loop = (header.get() & 0xFF) == 0xFF;
+			int paintRed = header.get() & 0xFF, paintGreen = header.get() & 0xFF, paintBlue = header.get() & 0xFF, paintAlpha = header.get() & 0xFF;
+			paintArgb = VoxelColor.toArgb(paintAlpha, paintRed, paintGreen, paintBlue);
+			lastlyEditedFrame = header.getInt();
+			long indexOffset = header.getLong();
+			int indexChecksum = header.getInt();
+			if(side <= 0 || side > Project.MAX_SIDE || frameCount <= 0 || frameCount > Project.MAX_FRAME_COUNT)
+				throw new IOException("invalid qu3d header");
+
+			ByteBuffer index = ByteBuffer.allocate(frameCount * INDEX_ENTRY_SIZE);
+			readFully(indexOffset, index.array());
+			if(getChecksum(index.array(), index.capacity()) != indexChecksum)
+				throw new IOException("corrupted qu3d frame index");
+
+			chunkOffsets = new long[frameCount];
+			chunkLengths = new int[frameCount];
+			chunkChecksums = new int[frameCount];
+			chunkEncodings = new byte[frameCount];
+			deltaReferences = new int[frameCount];
+			frameDurations = new float[frameCount];
+			frameNames = new String[frameCount];
+			byte[] frameName = new byte[Project.FRAME_NAME_LENGTH];
+			for(int i = 0; i < frameCount; i++) {
+				chunkOffsets[i] = index.getLong();
+				chunkLengths[i] = index.getInt();
+				chunkChecksums[i] = index.getInt();
+				chunkEncodings[i] = index.get();
+				deltaReferences[i] = index.getInt();
+				frameDurations[i] = index.getFloat();
+				int frameNameLength = Math.min(index.get() & 0xFF, Project.FRAME_NAME_LENGTH);
+				index.get(frameName);
+				frameNames[i] = GeneralMethods.byteArrayToString(Arrays.copyOf(frameName, frameNameLength));
+
+				if(chunkEncodings[i] == ENCODING_XOR_DELTA && (deltaReferences[i] < 0 || deltaReferences[i] >= frameCount || chunkEncodings[deltaReferences[i]] != ENCODING_RAW))
+					throw new IOException("invalid delta reference in qu3d frame index");
+			}
+			referenceData = new byte[Frame.getRgbDataSize(side)];
+		}
+		catch(IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+	public int getSide() {
+		return side;
+	}
+	public int getFrameCount() {
+		return frameCount;
+	}
+	public boolean isLoop() {
+		return loop;
+	}
+	public int getPaintArgb() {
+		return paintArgb;
+	}
+	public int getLastlyEditedFrame() {
+		return lastlyEditedFrame;
+	}
+	public String getFrameName(int index) {
+		return frameNames[index];
+	}
+	public float getFrameDuration(int index) {
+		return frameDurations[index];
+	}
+
+	// reads the R G B bytes of one frame into rgbData, which must be Frame.getRgbDataSize(getSide()) long
+	public synchronized void readFrame(int index, byte[] rgbData) throws IOException {
+		if(chunkEncodings[index] == ENCODING_XOR_DELTA) {
+			readChunk(deltaReferences[index], referenceData);
+			readChunk(index, rgbData);
+			for(int i = 0; i < rgbData.length; i++)
+				rgbData[i] ^= referenceData[i];
+		}
+		else {
+			readChunk(index, rgbData);
+		}
+	}
+	// reads the compressed chunk of one frame as it is stored, so that it can be copied into another file
+	protected synchronized byte[] readChunkData(int index) throws IOException {
+		byte[] chunk = new byte[chunkLengths[index]];
+		readFully(chunkOffsets[index], chunk);
+		if(getChecksum(chunk, chunk.length) != chunkChecksums[index])
+			throw new IOException("corrupted qu3d frame chunk " + index);
+		return chunk;
+	}
+	private void readChunk(int index, byte[] rgbData) throws IOException {
+		if(chunkData.length < chunkLengths[index])
+			chunkData = new byte[chunkLengths[index]];
+		readFully(chunkOffsets[index], chunkData, chunkLengths[index]);
+		if(getChecksum(chunkData, chunkLengths[index]) != chunkChecksums[index])
+			throw new IOException("corrupted qu3d frame chunk " + index);
+
+		inflater.reset();
+		inflater.setInput(chunkData, 0, chunkLengths[index]);
+		try {
+			if(inflater.inflate(rgbData) != rgbData.length || !inflater.finished())
+				throw new IOException("invalid qu3d frame chunk size " + index);
+		}
+		catch(DataFormatException e) {
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		inflater.end();
+		file.close();
+	}
+
+	private void readFully(long offset, byte[] data) throws IOException {
+		readFully(offset, data, data.length);
+	}
+	private void readFully(long offset, byte[] data, int length) throws IOException {
+		file.seek(offset);
+		file.readFully(data, 0, length);
+	}
+	private static int getChecksum(byte[] data, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		return (int) crc.getValue();
+	}
+
+	// progress is reported to listener after every keyframe group, listener may be null
+	public static void write(ProjectSnapshot snapshot, String path, Project.SaveListener listener) throws IOException {
+		int side = snapshot.getSide();
+		int frameCount = snapshot.getFrameSize();
+		int rgbDataSize = Frame.getRgbDataSize(side);
+
+		try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer index = ByteBuffer.allocate(frameCount * INDEX_ENTRY_SIZE);
+			long[] offset = {HEADER_SIZE};
+			channel.position(offset[0]);
+
+			// every keyframe group is packed and compressed on its own, chunks are written in frame order
+			int groupCount = (frameCount + KEYFRAME_INTERVAL - 1) / KEYFRAME_INTERVAL;
+			FramePipeline.encodeOrdered(groupCount, group -> encodeGroup(snapshot, group, rgbDataSize), (group, encodedGroup) -> {
+				for(int j = 0; j < encodedGroup.getSize(); j++) {
+					int frame = (group * KEYFRAME_INTERVAL) + j;
+					byte[] chunk = encodedGroup.getChunk(j);
+					byte encoding = encodedGroup.getEncoding(j);
+					int chunkLength = chunk.length;
+					channel.write(ByteBuffer.wrap(chunk));
+
+					String frameName = snapshot.getFrameName(frame);
+					int frameNameLength = Math.min(frameName.length(), Project.FRAME_NAME_LENGTH);
+					index.putLong(offset[0]);
+					index.putInt(chunkLength);
+					index.putInt(getChecksum(chunk, chunkLength));
+					index.put(encoding);
+					index.putInt(encoding == ENCODING_XOR_DELTA ? group * KEYFRAME_INTERVAL : -1);
+					index.putFloat(snapshot.getFrameDuration(frame));
+					index.put((byte) frameNameLength);
+					index.put(GeneralMethods.stringToByteArray(frameName, frameNameLength));
+					index.position(index.position() + Project.FRAME_NAME_LENGTH - frameNameLength);
+					offset[0] += chunkLength;
+				}
+				if(listener != null)
+					listener.progress((double) (group + 1) / groupCount);
+			});
+			index.flip();
+			channel.write(index);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.put(Project.QU3D_SIGNATURE);
+			header.put((byte) FORMAT_VERSION);
+			header.put((byte) side);
+			header.putInt(frameCount);
+			header.put((byte) (snapshot.isLoop() ? 0xFF : 0x00));
+			header.put((byte) VoxelColor.getRed(snapshot.getPaintArgb()));
+			header.put((byte) VoxelColor.getGreen(snapshot.getPaintArgb()));
+			header.put((byte) VoxelColor.getBlue(snapshot.getPaintArgb()));
+			header.put((byte) VoxelColor.getAlpha(snapshot.getPaintArgb()));
+			header.putInt(snapshot.getFrameIndex());
+			header.putLong(channel.size() - index.capacity());
+			header.putInt(getChecksum(index.array(), index.capacity()));
+			header.putInt(getChecksum(header.array(), header.position()));
+			header.flip();
+			channel.write(header, 0);
+		}
+	}
+	/*
+		Compresses the frames of one keyframe group, the keyframe is raw and every following frame raw or delta
+		encoded, whichever is smaller. Frames still unchanged from the file the project was opened from keep
+		their compressed chunk as it is, a delta chunk only if its keyframe was kept as well.
+	*/
+	private static EncodedGroup encodeGroup(ProjectSnapshot snapshot, int group, int rgbDataSize) throws IOException {
+		int firstFrame = group * KEYFRAME_INTERVAL;
+		int groupSize = Math.min(KEYFRAME_INTERVAL, snapshot.getFrameSize() - firstFrame);
+		EncodedGroup encodedGroup = new EncodedGroup(groupSize);
+		Qu3dFile source = snapshot.getSource();
+		int keyframeSourceIndex = -1;	// source chunk copied as this group's keyframe
+
+		byte[] rgbData = new byte[rgbDataSize];
+		byte[] keyframeData = null;	// only unpacked once a frame of the group has to be compressed
+		byte[] deltaData = new byte[rgbDataSize];
+		byte[] rawChunk = new byte[getMaxChunkSize(rgbDataSize)];
+		byte[] deltaChunk = new byte[rawChunk.length];
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			for(int j = 0; j < groupSize; j++) {
+				int sourceIndex = snapshot.getSourceIndex(firstFrame + j);
+				byte[] sourceChunk = snapshot.readSourceChunk(firstFrame + j);
+				if(sourceChunk != null) {
+					if(source.chunkEncodings[sourceIndex] == ENCODING_RAW) {
+						encodedGroup.set(j, sourceChunk, ENCODING_RAW);
+						if(j == 0)
+							keyframeSourceIndex = sourceIndex;
+						continue;
+					}
+					if(j > 0 && source.deltaReferences[sourceIndex] == keyframeSourceIndex) {
+						encodedGroup.set(j, sourceChunk, ENCODING_XOR_DELTA);
+						continue;
+					}
+				}
+
+				if(keyframeData == null) {
+					keyframeData = new byte[rgbDataSize];
+					snapshot.writeRgbData(firstFrame, keyframeData);
+				}
+				if(j == 0) {
+					encodedGroup.set(j, Arrays.copyOf(rawChunk, deflate(deflater, keyframeData, rawChunk)), ENCODING_RAW);
+					continue;
+				}
+
+				snapshot.writeRgbData(firstFrame + j, rgbData);
+				int rawLength = deflate(deflater, rgbData, rawChunk);
+				for(int k = 0; k < rgbDataSize; k++)
+					deltaData[k] = (byte) (rgbData[k] ^ keyframeData[k]);
+				int deltaLength = deflate(deflater, deltaData, deltaChunk);
+
+				if(deltaLength < rawLength)
+					encodedGroup.set(j, Arrays.copyOf(deltaChunk, deltaLength), ENCODING_XOR_DELTA);
+				else
+					encodedGroup.set(j, Arrays.copyOf(rawChunk, rawLength), ENCODING_RAW);
+			}
+		}
+		finally {
+			deflater.end();
+		}
+		return encodedGroup;
+	}
+	private static int getMaxChunkSize(int dataSize) {
+		return dataSize + (dataSize / 1000) + 64;	// deflate never grows data by more than this
+	}
+	private static int deflate(Deflater deflater, byte[] data, byte[] chunk) throws IOException {
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		int chunkLength = deflater.deflate(chunk);
+		if(!deflater.finished())
+			throw new IOException("frame chunk exceeded its maximum size");
+		return chunkLength;
+	}
+}
+
+class EncodedGroup {
+	private final byte[][] chunks;
+	private final byte[] encodings;
+
+	public EncodedGroup(int size) {
+		chunks = new byte[size][];
+		encodings = new byte[size];
+	}
+	public void set(int index, byte[] chunk, byte encoding) {
+		chunks[index] = chunk;
+		encodings[index] = encoding;
+	}
+	public int getSize() {
+		return chunks.length;
+	}
+	public byte[] getChunk(int index) {
+		return chunks[index];
+	}
+	public byte getEncoding(int index) {
+		return encodings[index];
+	}
+}
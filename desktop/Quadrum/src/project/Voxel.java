@@ -24,80 +24,52 @@
 
 package project;
 
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import matrixAlgebra.Vec3;
-import ui.ButtonState;
 
 public class Voxel {
-	public static final int MIN_VOXEL_SIZE = 8;
-	private static final Color INVISIBLE_COLOR = Color.BLACK, STARTUP_VOXEL_COLOR = INVISIBLE_COLOR;
+	public static final int INVISIBLE_RGB = 0x000000;
+	public static final int STARTUP_VOXEL_RGB = INVISIBLE_RGB;
 
-	private Color color = STARTUP_VOXEL_COLOR;
-	private static float voxelSize = MIN_VOXEL_SIZE;
+	// a voxel is either a view of one voxel in a frame or a standalone voxel holding its own color
+	private Frame frame = null;
+	private int index;
+	private int rgb = STARTUP_VOXEL_RGB;
 
 	public Voxel() {}
 	public Voxel(Voxel copyVoxel) {
-		this.color = copyVoxel.getColor();
+		this.rgb = copyVoxel.getRgb();
 	}
-
-	public Color getColor() {
-		return color;
-	}
-	public void setColor(Color newColor) {
-		// ensure the voxel opacity never actually becomes transparent
-		float red = (float) ((newColor.getRed() * newColor.getOpacity()) + (color.getRed() * (1 - newColor.getOpacity())));
-		float green = (float) ((newColor.getGreen() * newColor.getOpacity()) + (color.getGreen() * (1 - newColor.getOpacity())));
-		float blue = (float) ((newColor.getBlue() * newColor.getOpacity()) + (color.getBlue() * (1 - newColor.getOpacity())));
-		color = new Color(red, green, blue, 1.0f);
+	protected Voxel(Frame frame, int index) {
+		this.frame = frame;
+		this.index = index;
 	}
 
-	public static void setVoxelSize(float s) {
-		voxelSize = s;
+	protected int getIndex() {
+		return index;
 	}
 
-	public boolean equals(Voxel compareVoxel) { return color.equals(compareVoxel.getColor()); }
-
-	public void draw(GraphicsContext gc, float centerX, float centerY, Vec3 position) {
-		if(color.equals(INVISIBLE_COLOR))
-			return;
-		gc.setFill(color);
-		gc.fillOval(centerX + position.get(0) - (voxelSize / 2), centerY - position.get(1) - (voxelSize / 2), voxelSize, voxelSize);
+	public int getRgb() {
+		if(frame != null)
+			return frame.getRgb(index);
+		return rgb;
+	}
+	public void setRgb(int rgb) {
+		if(frame != null)
+			frame.setRgb(index, rgb);
+		else
+			this.rgb = rgb & 0xFFFFFF;
 	}
 
-	// voxel's corresponding button
-	public static final int MIN_VOXEL_BUTTON_SIZE = 15;
-
-	private static final Color HOVERED_COLOR = new Color(1, 1, 1, 0.3),
-			PRESSED_COLOR = new Color(0, 0, 0, 0.3);
-
-	private float buttonX = 0, buttonY = 0, buttonSize = 0;
-
-	public boolean intersects(float mouseX, float mouseY) {
-		return mouseX >= buttonX && mouseX < buttonX + buttonSize && mouseY >= buttonY && mouseY < buttonY + buttonSize;
+	public Color getColor() {
+		return VoxelColor.toColor(getRgb());
 	}
-	public boolean intersectsWithBorder(float mouseX, float mouseY, int border) {
-		return mouseX >= buttonX && mouseX < buttonX + buttonSize + border && mouseY >= buttonY && mouseY < buttonY + buttonSize + border;
+	public void setColor(int argb) {
+		// ensure the voxel opacity never actually becomes transparent
+		setRgb(VoxelColor.blend(getRgb(), argb));
 	}
-
-	public void setButtonPosSize(float buttonX, float buttonY, float buttonSize) {
-		this.buttonX = buttonX;
-		this.buttonY = buttonY;
-		this.buttonSize = buttonSize;
+	public void setColor(Color newColor) {
+		setColor(VoxelColor.toArgb(newColor));
 	}
 
-	public void drawButton(GraphicsContext gc, ButtonState buttonState) {
-		gc.setFill(color);
-		gc.fillRect(buttonX, buttonY, buttonSize, buttonSize);
-		switch(buttonState) {
-			case HOVERED:
-				gc.setFill(HOVERED_COLOR);
-				gc.fillRect(buttonX, buttonY, buttonSize, buttonSize);
-				break;
-			case PRESSED:
-				gc.setFill(PRESSED_COLOR);
-				gc.fillRect(buttonX, buttonY, buttonSize, buttonSize);
-				break;
-		}
-	}
+	public boolean equals(Voxel compareVoxel) { return getRgb() == compareVoxel.getRgb(); }
 }
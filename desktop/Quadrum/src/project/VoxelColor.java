@@ -0,0 +1,102 @@
+/*
+ * VoxelColor.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import javafx.scene.paint.Color;
+
+public class VoxelColor {
+	// colors are packed as 0xAARRGGBB, voxels themselves only store the 0xRRGGBB part and are always opaque
+	public static final int CHANNEL_MAX_VALUE = 255;
+	private static final int COLOR_CACHE_BITS = 12;	// direct mapped cache of 2^COLOR_CACHE_BITS colors
+
+	private static final double[] CHANNEL_TO_DOUBLE = new double[CHANNEL_MAX_VALUE + 1];
+	private static final float[] CHANNEL_TO_FLOAT = new float[CHANNEL_MAX_VALUE + 1];
+	private static final Color[] colorCache = new Color[1 << COLOR_CACHE_BITS];
+
+	static {
+		for(int i = 0; i <= CHANNEL_MAX_VALUE; i++) {
+			CHANNEL_TO_DOUBLE[i] = (double) i / CHANNEL_MAX_VALUE;
+			CHANNEL_TO_FLOAT[i] = (float) i / CHANNEL_MAX_VALUE;
+		}
+	}
+
+	public static int getAlpha(int argb) {
+		return (argb >>> 24) & 0xFF;
+	}
+	public static int getRed(int argb) {
+		return (argb >> 16) & 0xFF;
+	}
+	public static int getGreen(int argb) {
+		return (argb >> 8) & 0xFF;
+	}
+	public static int getBlue(int argb) {
+		return argb & 0xFF;
+	}
+	public static int toArgb(int alpha, int red, int green, int blue) {
+		return (alpha << 24) | (red << 16) | (green << 8) | blue;
+	}
+
+	public static double toDouble(int channel) {
+		return CHANNEL_TO_DOUBLE[channel];
+	}
+	public static float toFloat(int channel) {
+		return CHANNEL_TO_FLOAT[channel];
+	}
+	public static int toChannel(double value) {
+		return (int) Math.round(Math.max(Math.min(value, 1.0), 0.0) * CHANNEL_MAX_VALUE);
+	}
+
+	// blends argb on top of the opaque rgb color without leaving integer arithmetic
+	public static int blend(int rgb, int argb) {
+		int alpha = getAlpha(argb);
+		if(alpha == CHANNEL_MAX_VALUE)
+			return argb & 0xFFFFFF;
+		if(alpha == 0)
+			return rgb & 0xFFFFFF;
+		int inverseAlpha = CHANNEL_MAX_VALUE - alpha;
+		int red = ((getRed(argb) * alpha) + (getRed(rgb) * inverseAlpha) + (CHANNEL_MAX_VALUE / 2)) / CHANNEL_MAX_VALUE;
+		int green = ((getGreen(argb) * alpha) + (getGreen(rgb) * inverseAlpha) + (CHANNEL_MAX_VALUE / 2)) / CHANNEL_MAX_VALUE;
+		int blue = ((getBlue(argb) * alpha) + (getBlue(rgb) * inverseAlpha) + (CHANNEL_MAX_VALUE / 2)) / CHANNEL_MAX_VALUE;
+		return (red << 16) | (green << 8) | blue;
+	}
+
+	// conversions to and from javafx colors, should only be needed at the ui boundary
+	public static int toArgb(Color color) {
+		return toArgb(toChannel(color.getOpacity()), toChannel(color.getRed()), toChannel(color.getGreen()), toChannel(color.getBlue()));
+	}
+	public static int toRgb(Color color) {
+		return toArgb(color) & 0xFFFFFF;
+	}
+	public static Color toColor(int rgb) {
+		rgb &= 0xFFFFFF;
+		int cacheIndex = (rgb * 0x9E3779B1) >>> (32 - COLOR_CACHE_BITS);
+		Color color = colorCache[cacheIndex];
+		if(color == null || toRgb(color) != rgb) {
+			color = new Color(toDouble(getRed(rgb)), toDouble(getGreen(rgb)), toDouble(getBlue(rgb)), 1.0);
+			colorCache[cacheIndex] = color;
+		}
+		return color;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * VoxelDataCache.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package project;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+	Keeps the voxel data of recently packed frames, so looped playback and repeated exports only pack frames
+	that changed. Entries are keyed by frame and channel format and remember the frame's version when they were
+	packed, a frame that has been modified since is packed again on its next lookup. Frames are only weakly
+	referenced, entries of frames that were deleted or closed are dropped once the frame has been collected.
+
+	The returned arrays are shared and must never be modified.
+*/
+public class VoxelDataCache {
+	private static final long MAX_CACHED_BYTES = 32L * 1024 * 1024;
+
+	private static final LinkedHashMap<CacheKey, CachedVoxelData> entries = new LinkedHashMap<>(16, 0.75f, true);	// access ordered, eldest is least recently used
+	private static final ReferenceQueue<Frame> collectedFrames = new ReferenceQueue<>();
+	private static long cachedBytes = 0;
+
+	public static byte[] getVoxelData(Frame frame, int channelCount, int channelSize) {
+		CacheKey key = new CacheKey(frame, channelCount, channelSize, null);
+		int version = frame.getVersion();
+		synchronized(VoxelDataCache.class) {
+			removeCollectedFrames();
+			CachedVoxelData cached = entries.get(key);
+			if(cached != null && cached.getVersion() == version)
+				return cached.getData();
+		}
+
+		// packed outside the lock, version was read before packing so a concurrent change causes a repack later
+		byte[] data = new byte[Frame.getVoxelDataSize(frame.getSide(), channelCount, channelSize)];
+		frame.updateVoxelData(data, VoxelPacker.get(channelCount, channelSize));
+		if(data.length > MAX_CACHED_BYTES)
+			return data;
+
+		synchronized(VoxelDataCache.class) {
+			CachedVoxelData previous = entries.put(new CacheKey(frame, channelCount, channelSize, collectedFrames), new CachedVoxelData(version, data));
+			if(previous != null)
+				cachedBytes -= previous.getData().length;
+			cachedBytes += data.length;
+
+			Iterator<CachedVoxelData> iterator = entries.values().iterator();
+			while(cachedBytes > MAX_CACHED_BYTES && iterator.hasNext()) {
+				cachedBytes -= iterator.next().getData().length;
+				iterator.remove();
+			}
+		}
+		return data;
+	}
+	// drops the entries of frames that will not be packed again, such as those of a closed project
+	public static synchronized void removeFrames(List<Frame> frames) {
+		Set<Frame> removedFrames = Collections.newSetFromMap(new IdentityHashMap<>());
+		removedFrames.addAll(frames);
+		Iterator<Map.Entry<CacheKey, CachedVoxelData>> iterator = entries.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Map.Entry<CacheKey, CachedVoxelData> entry = iterator.next();
+			if(removedFrames.contains(entry.getKey().get())) {
+				cachedBytes -= entry.getValue().getData().length;
+				iterator.remove();
+			}
+		}
+	}
+	private static void removeCollectedFrames() {
+		Reference<? extends Frame> reference;
+		while((reference = collectedFrames.poll()) != null) {
+			CachedVoxelData removed = entries.remove((CacheKey) reference);
+			if(removed != null)
+				cachedBytes -= removed.getData().length;
+		}
+	}
+}
+
+// frames are compared by identity, Frame.equals compares voxels. A collected frame's key only equals itself
+class CacheKey extends WeakReference<Frame> {
+	private final int hash;
+	private final int channelCount, channelSize;
+
+	public CacheKey(Frame frame, int channelCount, int channelSize, ReferenceQueue<Frame> queue) {
+		super(frame, queue);
+		this.channelCount = channelCount;
+		this.channelSize = channelSize;
+		hash = (System.identityHashCode(frame) * 31 + channelCount) * 31 + channelSize;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	@Override
+	public boolean equals(Object object) {
+		if(object == this)
+			return true;
+		if(!(object instanceof CacheKey))
+			return false;
+		CacheKey key = (CacheKey) object;
+		Frame frame = get();
+		return frame != null && frame == key.get() && channelCount == key.channelCount && channelSize == key.channelSize;
+	}
+}
+
+class CachedVoxelData {
+	private final int version;
+	private final byte[] data;
+
+	public CachedVoxelData(int version, byte[] data) {
+		this.version = version;
+		this.data = data;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+	public byte[] getData() {
+		return data;
+	}
+}
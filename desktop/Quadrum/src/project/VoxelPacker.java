@@ -0,0 +1,167 @@
+/*
+ * VoxelPacker.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package project;
+
+import main.GeneralMethods;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/*
+	Packs frames into the voxel data sent to cubes and written by the code generator. There is one packer per
+	supported channel count and channel size, get one before packing many frames with the same format.
+
+	voxel data layout:
+	voxels ordered with z flipped (z major, x minor), for every voxel channelCount channels of channelSize bits,
+	red first, packed from the least significant bit of every byte. A single channel holds the brightest of the
+	voxel's red, green and blue.
+
+	Every channel value is looked up in a quantization table which already holds it shifted to its place in the
+	voxel, so a voxel's bits are the OR of at most three lookups. These are collected in a 64 bit accumulator
+	and written out an int at a time.
+*/
+public class VoxelPacker {
+	private static final int[] CHANNEL_SIZES = {1, 2, 4, 8};
+	private static final int MAX_CHANNEL_COUNT = 3;
+	private static final VarHandle INT_WRITER = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final int WORD_BITS = Integer.SIZE;
+
+	private static final VoxelPacker[][] PACKERS = createPackers();
+
+	private final int channelCount, channelSize;
+	private final int voxelBits;
+	// quantized channel values, shifted to the channel's bit offset within a voxel
+	private final int[] redTable, greenTable, blueTable;
+
+	private VoxelPacker(int channelCount, int channelSize) {
+		this.channelCount = channelCount;
+		this.channelSize = channelSize;
+		voxelBits = channelCount * channelSize;
+
+		// computed exactly as packing used to, so the output stays bit for bit the same
+		int channelMaxValue = (int) Math.pow(2, channelSize) - 1;
+		int[] quantized = new int[VoxelColor.CHANNEL_MAX_VALUE + 1];
+		for(int i = 0; i < quantized.length; i++)
+			quantized[i] = Math.round(VoxelColor.toFloat(i) * channelMaxValue);
+
+		redTable = quantized;
+		greenTable = new int[quantized.length];
+		blueTable = new int[quantized.length];
+		for(int i = 0; i < quantized.length; i++) {
+			if(channelCount > 1)
+				greenTable[i] = quantized[i] << channelSize;
+			if(channelCount > 2)
+				blueTable[i] = quantized[i] << (2 * channelSize);
+		}
+	}
+
+	private static VoxelPacker[][] createPackers() {
+		VoxelPacker[][] packers = new VoxelPacker[MAX_CHANNEL_COUNT][CHANNEL_SIZES.length];
+		for(int i = 0; i < MAX_CHANNEL_COUNT; i++) {
+			for(int j = 0; j < CHANNEL_SIZES.length; j++)
+				packers[i][j] = new VoxelPacker(i + 1, CHANNEL_SIZES[j]);
+		}
+		return packers;
+	}
+	// returns null if the format is not supported
+	public static VoxelPacker get(int channelCount, int channelSize) {
+		if(channelCount < 1 || channelCount > MAX_CHANNEL_COUNT)
+			return null;
+		for(int i = 0; i < CHANNEL_SIZES.length; i++) {
+			if(CHANNEL_SIZES[i] == channelSize)
+				return PACKERS[channelCount - 1][i];
+		}
+		return null;
+	}
+
+	public int getChannelCount() {
+		return channelCount;
+	}
+	public int getChannelSize() {
+		return channelSize;
+	}
+	public int getVoxelDataSize(int cubeSide) {
+		return Frame.getVoxelDataSize(cubeSide, channelCount, channelSize);
+	}
+
+	// voxelData must hold at least getVoxelDataSize bytes, any bytes after those are cleared
+	protected void pack(int[] voxels, int side, byte[] voxelData) {
+		int length;
+		if(channelCount == 1)
+			length = packSingle(voxels, side, voxelData);
+		else
+			length = packColor(voxels, side, voxelData);
+		Arrays.fill(voxelData, length, voxelData.length, (byte) 0);
+	}
+	private int packSingle(int[] voxels, int side, byte[] voxelData) {
+		int[] table = redTable;
+		int planeSize = side * side;
+		long bits = 0;
+		int bitCount = 0;
+		int position = 0;
+		for(int z = 0; z < side; z++) {
+			for(int i = (side - 1 - z) * planeSize, end = i + planeSize; i < end; i++) {
+				int rgb = voxels[i];
+				int brightest = Math.max((rgb >> 16) & 0xFF, Math.max((rgb >> 8) & 0xFF, rgb & 0xFF));
+				bits |= (long) table[brightest] << bitCount;
+				bitCount += voxelBits;
+				if(bitCount >= WORD_BITS) {
+					INT_WRITER.set(voxelData, position, (int) bits);
+					position += Integer.BYTES;
+					bits >>>= WORD_BITS;
+					bitCount -= WORD_BITS;
+				}
+			}
+		}
+		return writeRemainingBits(voxelData, position, bits, bitCount);
+	}
+	private int packColor(int[] voxels, int side, byte[] voxelData) {
+		int[] red = redTable, green = greenTable, blue = blueTable;
+		int planeSize = side * side;
+		long bits = 0;
+		int bitCount = 0;
+		int position = 0;
+		for(int z = 0; z < side; z++) {
+			for(int i = (side - 1 - z) * planeSize, end = i + planeSize; i < end; i++) {
+				int rgb = voxels[i];
+				bits |= (long) (red[(rgb >> 16) & 0xFF] | green[(rgb >> 8) & 0xFF] | blue[rgb & 0xFF]) << bitCount;
+				bitCount += voxelBits;
+				if(bitCount >= WORD_BITS) {
+					INT_WRITER.set(voxelData, position, (int) bits);
+					position += Integer.BYTES;
+					bits >>>= WORD_BITS;
+					bitCount -= WORD_BITS;
+				}
+			}
+		}
+		return writeRemainingBits(voxelData, position, bits, bitCount);
+	}
+	private static int writeRemainingBits(byte[] voxelData, int position, long bits, int bitCount) {
+		for(; bitCount > 0; bitCount -= GeneralMethods.BYTE_SIZE, bits >>>= GeneralMethods.BYTE_SIZE)
+			voxelData[position++] = (byte) bits;
+		return position;
+	}
+}
@@ -59,6 +59,7 @@ public class ActionHandler {
 		if(actionStack.size() > MAX_STACK_SIZE)
 			actionStack.remove(0);	// remove first oldest action on stack
 		actionStack.push(action);
+		project.journal(action, false);
 		editor.updateLayout();
 	}
 
@@ -67,6 +68,7 @@ public class ActionHandler {
 			return;
 		redoStack.push(actionStack.peek());
 		actionStack.pop().undo(project);
+		project.journal(redoStack.peek(), true);
 		editor.updateLayout();
 	}
 	public void redo() {
@@ -74,6 +76,7 @@ public class ActionHandler {
 			return;
 		actionStack.push(redoStack.peek());
 		redoStack.pop().execute(project);
+		project.journal(actionStack.peek(), false);
 		editor.updateLayout();
 	}
 
@@ -25,8 +25,10 @@
 package project.userActions;
 
 import project.Project;
+import project.ProjectJournal;
 
 public interface StackAction {
 	boolean execute(Project project);	// returns true if execution was performed
 	void undo(Project project);
+	void journal(Project project, ProjectJournal journal, boolean undone);	// records the effect of the last execute or undo
 }
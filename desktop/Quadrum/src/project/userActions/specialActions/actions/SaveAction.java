@@ -31,13 +31,15 @@ import ui.editor.FileUserInterface;
 
 public class SaveAction implements Action {
 	Stage stage;
+	Runnable onFinished;
 
-	public SaveAction(Stage stage) {
+	public SaveAction(Stage stage, Runnable onFinished) {
 		this.stage = stage;
+		this.onFinished = onFinished;
 	}
 
 	@Override
 	public void execute(Project project) {
-		FileUserInterface.saveProjectFileChooser(project, stage);
+		FileUserInterface.saveProjectInBackground(project, stage, onFinished);
 	}
 }
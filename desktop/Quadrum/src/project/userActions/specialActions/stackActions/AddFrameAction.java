@@ -26,6 +26,7 @@ package project.userActions.specialActions.stackActions;
 
 import project.Frame;
 import project.Project;
+import project.ProjectJournal;
 import project.userActions.StackAction;
 
 public class AddFrameAction implements StackAction {
@@ -47,4 +48,11 @@ public class AddFrameAction implements StackAction {
 		frame = project.removeFrame(addedIndex);
 		project.setCurrentFrame(addedIndex - 1);
 	}
+	@Override
+	public void journal(Project project, ProjectJournal journal, boolean undone) {
+		if(undone)
+			journal.frameRemoved(addedIndex);
+		else
+			journal.frameAdded(addedIndex, project.getFrame(addedIndex));
+	}
 }
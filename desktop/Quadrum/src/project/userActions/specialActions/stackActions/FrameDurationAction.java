@@ -25,6 +25,7 @@
 package project.userActions.specialActions.stackActions;
 
 import project.Project;
+import project.ProjectJournal;
 import project.userActions.StackAction;
 
 public class FrameDurationAction implements StackAction {
@@ -50,4 +51,8 @@ public class FrameDurationAction implements StackAction {
 		project.getFrame(frameIndex).setDurationInMillis(oldValue);
 		project.setCurrentFrame(frameIndex);
 	}
+	@Override
+	public void journal(Project project, ProjectJournal journal, boolean undone) {
+		journal.durationChanged(frameIndex, project.getFrame(frameIndex).getDurationInMillis());
+	}
 }
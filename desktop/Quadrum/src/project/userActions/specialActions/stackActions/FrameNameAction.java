@@ -25,6 +25,7 @@
 package project.userActions.specialActions.stackActions;
 
 import project.Project;
+import project.ProjectJournal;
 import project.userActions.StackAction;
 
 public class FrameNameAction implements StackAction {
@@ -50,4 +51,8 @@ public class FrameNameAction implements StackAction {
 		project.getFrame(frameIndex).setName(oldName);
 		project.setCurrentFrame(frameIndex);
 	}
+	@Override
+	public void journal(Project project, ProjectJournal journal, boolean undone) {
+		journal.nameChanged(frameIndex, project.getFrame(frameIndex).getName());
+	}
 }
@@ -26,6 +26,7 @@ package project.userActions.specialActions.stackActions;
 
 import project.Frame;
 import project.Project;
+import project.ProjectJournal;
 import project.userActions.StackAction;
 import ui.editor.Clipboard;
 
@@ -51,4 +52,8 @@ public class PasteFrameAction implements StackAction {
 		project.replaceFrame(oldFrame, frameIndex);
 		project.setCurrentFrame(frameIndex);
 	}
+	@Override
+	public void journal(Project project, ProjectJournal journal, boolean undone) {
+		journal.frameReplaced(frameIndex, project.getFrame(frameIndex));
+	}
 }
@@ -26,6 +26,7 @@ package project.userActions.specialActions.stackActions;
 
 import project.Frame;
 import project.Project;
+import project.ProjectJournal;
 import project.userActions.StackAction;
 
 public class RemoveFrameAction implements StackAction {
@@ -47,4 +48,11 @@ public class RemoveFrameAction implements StackAction {
 		project.addFrame(frame, removedIndex);
 		project.setCurrentFrame(removedIndex);
 	}
+	@Override
+	public void journal(Project project, ProjectJournal journal, boolean undone) {
+		if(undone)
+			journal.frameAdded(removedIndex, project.getFrame(removedIndex));
+		else
+			journal.frameRemoved(removedIndex);
+	}
 }
@@ -24,9 +24,10 @@
 
 package project.userActions.specialActions.stackActions;
 
-import javafx.scene.paint.Color;
 import project.Project;
+import project.ProjectJournal;
 import project.Voxel;
+import project.VoxelColor;
 import project.userActions.StackAction;
 import ui.editor.controls.paint.PaintControls;
 
@@ -34,34 +35,36 @@ public class VoxelColorAction implements StackAction {
 	private PaintControls paintControls;
 	private int frameIndex, plane;
 	private Voxel voxel;
-	private Color newColor,
-			oldColor = null;
+	private int newArgb,
+			oldRgb;
 
-	public VoxelColorAction(PaintControls paintControls, int frameIndex, int plane, Voxel voxel, Color newColor) {
+	public VoxelColorAction(PaintControls paintControls, int frameIndex, int plane, Voxel voxel, int newArgb) {
 		this.paintControls = paintControls;
 		this.frameIndex = frameIndex;
 		this.plane = plane;
 
 		this.voxel = voxel;
-		this.newColor = newColor;
+		this.newArgb = newArgb;
 	}
 
 	@Override
 	public boolean execute(Project project) {
 		if(voxel == null)
 			return false;
-		if(voxel.getColor().getRed() == newColor.getRed() &&
-				voxel.getColor().getGreen() == newColor.getGreen() &&
-				voxel.getColor().getBlue() == newColor.getBlue())
+		if(voxel.getRgb() == (newArgb & 0xFFFFFF))
 			return false;
-		oldColor = voxel.getColor();
-		voxel.setColor(newColor);
+		oldRgb = voxel.getRgb();
+		voxel.setColor(newArgb);
 		paintControls.displayFramePlane(frameIndex, plane);
 		return true;
 	}
 	@Override
 	public void undo(Project project) {
-		voxel.setColor(oldColor);
+		voxel.setRgb(oldRgb);
 		paintControls.displayFramePlane(frameIndex, plane);
 	}
+	@Override
+	public void journal(Project project, ProjectJournal journal, boolean undone) {
+		journal.voxelChanged(frameIndex, voxel);
+	}
 }
@@ -0,0 +1,54 @@
+/*
+ * Crc16.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+/*
+	CRC-16/CCITT (polynomial 0x1021, initial value 0xFFFF, not reflected) used to check stream packets. The
+	firmware computes the same checksum with a 16 entry table to save ram.
+*/
+public class Crc16 {
+	public static final int SIZE = 2;	// bytes, sent little endian
+
+	private static final int POLYNOMIAL = 0x1021, INITIAL_VALUE = 0xFFFF;
+	private static final int[] TABLE = createTable();
+
+	private static int[] createTable() {
+		int[] table = new int[256];
+		for(int i = 0; i < table.length; i++) {
+			int crc = i << 8;
+			for(int j = 0; j < 8; j++)
+				crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : crc << 1;
+			table[i] = crc & 0xFFFF;
+		}
+		return table;
+	}
+
+	public static int compute(byte[] data, int offset, int length) {
+		int crc = INITIAL_VALUE;
+		for(int i = offset; i < offset + length; i++)
+			crc = ((crc << 8) ^ TABLE[((crc >> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+		return crc;
+	}
+}
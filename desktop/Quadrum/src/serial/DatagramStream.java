@@ -0,0 +1,115 @@
+/*
+ * DatagramStream.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+	UDP fast path for network cubes that advertise the datagram feature. Every frame is sent once when it is due,
+	in datagrams to the same host and port as the tcp connection, and never sent again. A cube displays a frame
+	once all of its datagrams arrived and skips it when a datagram of a newer frame comes first, so a lost
+	datagram only costs its own frame. The cube answers displayed and failed frames over the tcp connection.
+
+	datagram layout:
+	packet, stream format, frame sequence (LE16), part, part count, voxel data offset (LE16), stream, crc-16 (LE16)
+	Frames larger than MAX_STREAM_SIZE are cut into parts like window chunks, every part starts a stream of its
+	own at offset. A stream is cut after its last byte that is not 0, cubes read the missing bytes as 0.
+*/
+public class DatagramStream {
+	static final int HEADER_SIZE = 8;
+	static final int MAX_STREAM_SIZE = 1024;	// a part with header and checksum fits into one ethernet frame
+	static final int MAX_PARTS = 0xFF;
+
+	private final InetSocketAddress address;
+	private DatagramSocket socket = null;
+	private int sequence = 0;
+
+	public DatagramStream(InetSocketAddress address) {
+		this.address = address;
+	}
+
+	public boolean open() {
+		try {
+			socket = new DatagramSocket();
+			socket.connect(address);
+			return true;
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			close();
+			return false;
+		}
+	}
+	public void close() {
+		if(socket != null)
+			socket.close();
+	}
+
+	// format is the raw or coded stream start packet, returns false if the frame could not be sent
+	public boolean send(byte[] voxelData, int format) {
+		List<byte[]> parts = new ArrayList<>();
+		int offset = 0;
+		do {
+			byte[] part = new byte[HEADER_SIZE + MAX_STREAM_SIZE + Crc16.SIZE];
+			part[0] = (byte) ProtocolSerial.DATAGRAM_FRAME_PACKET;
+			part[1] = (byte) format;
+			part[2] = (byte) sequence;
+			part[3] = (byte) (sequence >> 8);
+			part[6] = (byte) offset;
+			part[7] = (byte) (offset >> 8);
+			offset = StreamCodec.writeStream(format, voxelData, offset, part, HEADER_SIZE, MAX_STREAM_SIZE);
+			parts.add(part);
+		} while(offset < voxelData.length && parts.size() < MAX_PARTS);
+		if(offset < voxelData.length)
+			return false;	// too large for a datagram stream
+
+		try {
+			for(int i = 0; i < parts.size(); i++) {
+				byte[] part = parts.get(i);
+				part[4] = (byte) i;
+				part[5] = (byte) parts.size();
+
+				int length = HEADER_SIZE + MAX_STREAM_SIZE;
+				while(length > HEADER_SIZE && part[length - 1] == 0)
+					length--;
+				ProtocolSerial.writeChecksum(part, 0, length, Crc16.SIZE);
+				socket.send(new DatagramPacket(part, length + Crc16.SIZE));
+			}
+			return true;
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		finally {
+			sequence = (sequence + 1) & 0xFFFF;
+		}
+	}
+}
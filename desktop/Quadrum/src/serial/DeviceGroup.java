@@ -0,0 +1,156 @@
+/*
+ * DeviceGroup.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import project.Frame;
+import project.VoxelDataCache;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+	Streams the same frames to several devices at once, every device has a ProtocolSerial and serial thread of
+	its own. A frame is packed once per channel format and the voxel data shared by every device of that format,
+	devices of another cube side than the frame's skip it.
+
+	Display packets of a frame are held back until every connected device it was queued on has it streamed, so
+	the cubes flip together. A device can only be told to display in answer to a request, which it sends again
+	right away while it waits, so the cubes flip within about one request of each other.
+*/
+public class DeviceGroup {
+	private volatile ProtocolSerial[] devices = new ProtocolSerial[0];
+	private volatile String[] ports = new String[0];
+	private volatile DisplayGate displayGate = new DisplayGate();
+	private FrameQueuePolicy frameQueuePolicy = FrameQueuePolicy.DROP;
+
+	// connects to every port at the same time, returns the status of each port in order
+	public synchronized SerialStatus[] connect(String[] ports) {
+		disconnect();
+
+		ProtocolSerial[] newDevices = new ProtocolSerial[ports.length];
+		DisplayGate displayGate = new DisplayGate();
+		SerialStatus[] statuses = new SerialStatus[ports.length];
+		Thread[] connectThreads = new Thread[ports.length];
+		for(int i = 0; i < ports.length; i++) {
+			final int device = i;
+			newDevices[i] = new ProtocolSerial();
+			newDevices[i].setFrameQueuePolicy(frameQueuePolicy);
+			newDevices[i].setDisplayGate(displayGate);
+			connectThreads[i] = new Thread(() -> statuses[device] = newDevices[device].initSerial(ports[device]));
+			connectThreads[i].start();
+		}
+		for(Thread thread : connectThreads) {
+			try {
+				thread.join();
+			}
+			catch(InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+
+		for(int i = 0; i < statuses.length; i++) {
+			if(statuses[i] == null)	// the connect thread did not finish
+				statuses[i] = SerialStatus.CONNECTION_FAILED;
+		}
+
+		this.ports = ports.clone();
+		this.displayGate = displayGate;
+		devices = newDevices;
+		return statuses;
+	}
+	public synchronized void disconnect() {
+		for(ProtocolSerial device : devices)
+			device.terminateConnection();
+		devices = new ProtocolSerial[0];
+		ports = new String[0];
+	}
+
+	// displayTime is in System.currentTimeMillis() time, returns false if no device took the frame
+	public boolean queueFrame(Frame frame, long displayTime) {
+		ProtocolSerial[] currentDevices = devices;
+		DisplayGate gate = displayGate;
+		Set<ProtocolSerial> frameDevices = new HashSet<>();
+		for(ProtocolSerial device : currentDevices) {
+			if(frame != null && device.isConnected() && device.getCubeSide() == frame.getSide())
+				frameDevices.add(device);
+		}
+		gate.expect(displayTime, frameDevices);	// before queueing, a device may be ready to display right away
+
+		byte[][] frameData = new byte[currentDevices.length][];
+		boolean queued = false;
+		for(int i = 0; i < currentDevices.length; i++) {
+			ProtocolSerial device = currentDevices[i];
+			if(!frameDevices.contains(device))
+				continue;
+
+			for(int j = 0; j < i && frameData[i] == null; j++) {
+				if(frameData[j] != null && currentDevices[j].getChannelCount() == device.getChannelCount() &&
+						currentDevices[j].getChannelSize() == device.getChannelSize())
+					frameData[i] = frameData[j];
+			}
+			if(frameData[i] == null)
+				frameData[i] = VoxelDataCache.getVoxelData(frame, device.getChannelCount(), device.getChannelSize());
+			if(device.queueVoxelData(frameData[i], displayTime))
+				queued = true;
+			else
+				gate.cancel(device, displayTime);
+		}
+		return queued;
+	}
+	// drops the frames that were queued but not displayed yet
+	public void clearQueuedFrames() {
+		for(ProtocolSerial device : devices)
+			device.clearQueuedFrames();
+		displayGate.clear();
+	}
+	public synchronized void setFrameQueuePolicy(FrameQueuePolicy frameQueuePolicy) {
+		this.frameQueuePolicy = frameQueuePolicy;
+		for(ProtocolSerial device : devices)
+			device.setFrameQueuePolicy(frameQueuePolicy);
+	}
+
+	// true while any device is connected
+	public boolean isConnected() {
+		for(ProtocolSerial device : devices) {
+			if(device.isConnected())
+				return true;
+		}
+		return false;
+	}
+	public int getDeviceCount() {
+		return devices.length;
+	}
+	protected ProtocolSerial getDevice(int device) {
+		return devices[device];
+	}
+	public String getPort(int device) {
+		return ports[device];
+	}
+	// counters are kept until disconnect, also for devices that ended their connection
+	public DeviceHealth getHealth(int device) {
+		ProtocolSerial protocolSerial = devices[device];
+		return new DeviceHealth(ports[device], protocolSerial.isConnected(), protocolSerial.getDisplayedFrames(),
+				protocolSerial.getFailedFrames(), protocolSerial.getDroppedFrames(), protocolSerial.getCorruptedPackets());
+	}
+}
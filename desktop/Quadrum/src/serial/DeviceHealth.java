@@ -0,0 +1,61 @@
+/*
+ * DeviceHealth.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+// counters of one device of a DeviceGroup at the time they were taken
+public class DeviceHealth {
+	private final String port;
+	private final boolean connected;
+	private final int displayedFrames, failedFrames, droppedFrames, corruptedPackets;
+
+	public DeviceHealth(String port, boolean connected, int displayedFrames, int failedFrames, int droppedFrames, int corruptedPackets) {
+		this.port = port;
+		this.connected = connected;
+		this.displayedFrames = displayedFrames;
+		this.failedFrames = failedFrames;
+		this.droppedFrames = droppedFrames;
+		this.corruptedPackets = corruptedPackets;
+	}
+
+	public String getPort() {
+		return port;
+	}
+	public boolean isConnected() {
+		return connected;
+	}
+	public int getDisplayedFrames() {
+		return displayedFrames;
+	}
+	public int getFailedFrames() {
+		return failedFrames;
+	}
+	// dropped by a full queue or because they were late
+	public int getDroppedFrames() {
+		return droppedFrames;
+	}
+	public int getCorruptedPackets() {
+		return corruptedPackets;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * DisplayGate.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+	Holds back the display packets of a DeviceGroup's devices until every connected device the frame was queued
+	on has it streamed. Devices the frame was not queued on, for example because their cube side differs, are
+	not waited for, neither are datagram streamed devices, they send frames when due without asking.
+*/
+class DisplayGate {
+	private static final long MAX_WAIT = 20;	// milliseconds a due frame waits for the slower devices at most
+
+	private final TreeMap<Long, Set<ProtocolSerial>> queuedDevices = new TreeMap<>();	// the frames of a group are told apart by their display time
+	private long frameDisplayTime = Long.MIN_VALUE;
+	private final Set<ProtocolSerial> readyDevices = new HashSet<>();
+
+	// called before a frame is queued on devices
+	public synchronized void expect(long displayTime, Set<ProtocolSerial> devices) {
+		queuedDevices.headMap(System.currentTimeMillis() - MAX_WAIT).clear();	// overdue frames pass without waiting anyway
+
+		Set<ProtocolSerial> gatedDevices = new HashSet<>();
+		for(ProtocolSerial device : devices) {
+			if(!device.isDatagramStreamed())
+				gatedDevices.add(device);
+		}
+		if(!gatedDevices.isEmpty())
+			queuedDevices.put(displayTime, gatedDevices);
+	}
+	// called if a device did not take a frame it was expected to
+	public synchronized void cancel(ProtocolSerial device, long displayTime) {
+		Set<ProtocolSerial> devices = queuedDevices.get(displayTime);
+		if(devices != null)
+			devices.remove(device);
+	}
+	public synchronized void clear() {
+		queuedDevices.clear();
+	}
+
+	// called by a device once its frame is due and streamed, returns true if it may display the frame
+	public synchronized boolean pass(ProtocolSerial device, long displayTime) {
+		if(displayTime < frameDisplayTime)
+			return true;	// the other devices have moved on already
+		if(displayTime > frameDisplayTime) {
+			frameDisplayTime = displayTime;
+			readyDevices.clear();
+			queuedDevices.headMap(displayTime).clear();	// earlier frames were displayed or dropped
+		}
+		readyDevices.add(device);
+
+		Set<ProtocolSerial> devices = queuedDevices.get(displayTime);
+		if(devices == null)
+			return true;
+		for(ProtocolSerial frameDevice : devices) {
+			if(frameDevice.isConnected() && !readyDevices.contains(frameDevice))
+				return System.currentTimeMillis() >= displayTime + MAX_WAIT;
+		}
+		return true;
+	}
+}
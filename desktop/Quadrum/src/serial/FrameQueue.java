@@ -0,0 +1,130 @@
+/*
+ * FrameQueue.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+	Bounded ring of packed frames between playback and the serial thread. Every frame carries the time it is to
+	be displayed at, so playback can queue several frames ahead of the device.
+
+	Only the serial thread takes frames out, it never locks. Playback threads are serialized among each other
+	but only wait for the serial thread when their policy is BLOCK. A full queue drops the offered frame
+	otherwise, and the serial thread drops a frame when the one after it is already due.
+*/
+public class FrameQueue {
+	private static final long BLOCK_PARK_TIME = 10_000_000;	// nanoseconds, a blocked producer checks again after this
+
+	private final byte[][] voxelData;
+	private final long[] displayTimes;
+	private final int mask;
+
+	private volatile long head = 0, tail = 0;	// head is only written by the consumer, tail by producers
+	private volatile long clearedTail = 0;	// frames below this were cleared by a producer
+	private volatile boolean closed = false;
+	private volatile Thread blockedProducer = null;
+
+	private volatile int offerDroppedFrames = 0, lateDroppedFrames = 0;
+
+	// capacity is rounded up to a power of two
+	public FrameQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		voxelData = new byte[size][];
+		displayTimes = new long[size];
+		mask = size - 1;
+	}
+
+	// producer side
+
+	// returns false if the frame was dropped
+	protected synchronized boolean offer(byte[] frameData, long displayTime, FrameQueuePolicy policy) {
+		while(tail - head > mask) {
+			if(closed || policy != FrameQueuePolicy.BLOCK || Thread.currentThread().isInterrupted()) {
+				offerDroppedFrames++;
+				return false;
+			}
+			blockedProducer = Thread.currentThread();
+			if(tail - head > mask)	// the consumer might have removed a frame before it could see the blocked producer
+				LockSupport.parkNanos(this, BLOCK_PARK_TIME);
+			blockedProducer = null;
+		}
+
+		int index = (int) tail & mask;
+		voxelData[index] = frameData;
+		displayTimes[index] = displayTime;
+		tail = tail + 1;	// publishes the frame
+		return true;
+	}
+	// drops every queued frame without counting it
+	protected synchronized void clear() {
+		clearedTail = tail;
+	}
+	// wakes a blocked producer, nothing can be queued afterwards
+	protected void close() {
+		closed = true;
+		Thread producer = blockedProducer;
+		if(producer != null)
+			LockSupport.unpark(producer);
+	}
+
+	// consumer side
+
+	// skips cleared and late frames, returns false if no frame is queued
+	protected boolean next(long currentTime) {
+		long currentHead = head;
+		long currentTail = tail;
+		if(currentHead < clearedTail) {
+			for(; currentHead < clearedTail; currentHead++)
+				voxelData[(int) currentHead & mask] = null;
+			remove(currentHead);
+		}
+		while(currentTail - currentHead >= 2 && displayTimes[(int) (currentHead + 1) & mask] <= currentTime) {
+			voxelData[(int) currentHead & mask] = null;
+			remove(++currentHead);
+			lateDroppedFrames++;
+		}
+		return currentTail > currentHead;
+	}
+	protected byte[] getVoxelData() {
+		return voxelData[(int) head & mask];
+	}
+	protected long getDisplayTime() {
+		return displayTimes[(int) head & mask];
+	}
+	protected void remove() {
+		voxelData[(int) head & mask] = null;
+		remove(head + 1);
+	}
+	private void remove(long newHead) {
+		head = newHead;
+		Thread producer = blockedProducer;
+		if(producer != null)
+			LockSupport.unpark(producer);
+	}
+
+	protected int getDroppedFrames() {
+		return offerDroppedFrames + lateDroppedFrames;
+	}
+}
@@ -24,55 +24,106 @@
 
 package serial;
 
-import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortDataListener;
-import com.fazecast.jSerialComm.SerialPortEvent;
 import project.Frame;
+import project.VoxelDataCache;
 import java.util.Arrays;
 
-public class ProtocolSerial {
-	private static final int SERIAL_SPEED = 115200,
-			STREAM_SIZE = 8;
+/*
+	Once connected all reads and writes happen on the serial thread, which blocks on the port for at most
+	SERIAL_READ_TIMEOUT and answers the device as its bytes come in. Frames are handed over through a
+	FrameQueue together with the time they are to be displayed at, so playback never waits for the serial
+	thread and may run several frames ahead of the device.
+*/
+public class ProtocolSerial implements Runnable {
+	private static final int SERIAL_SPEED = 115200;	// used on init and whenever a faster speed fails
+	private static final int[] PROPOSED_SERIAL_SPEEDS = {2000000, 1000000, 500000, 250000};	// fastest first, the device picks the first one it supports
+	private static final int SERIAL_SPEED_RESPONSE_WAIT = 150,
+			SERIAL_SPEED_SWITCH_WAIT = 20,	// time for both sides to reconfigure their uart
+			SERIAL_SPEED_FALLBACK_WAIT = 600;	// the device falls back after 500 ms without a valid probe
+	private static final byte[] SERIAL_SPEED_PROBE_DATA = {(byte) 0x55, (byte) 0xAA, (byte) 0x0F, (byte) 0xF0};
+	private static final int NO_SERIAL_SPEED = 0xFF;
+	// devices that do not advertise a packet size in their init data use LEGACY_STREAM_SIZE
+	private static final int LEGACY_STREAM_SIZE = 8, MIN_STREAM_SIZE = 2, MAX_STREAM_SIZE = 1024;
 	private static final int INIT_RESPONSE_WAIT = 150,	// wait 150 ms for mcu to respond on init packet request
 			INIT_RETRIES = 8,	// retry times until giving up
-			INIT_DATA_SIZE = 4;
+			INIT_DATA_SIZE = 4,
+			INIT_EXTENDED_DATA_SIZE = 6,	// init data followed by the device's maximum stream size (little endian)
+			INIT_FEATURE_DATA_SIZE = 8;	// extended init data followed by feature flags and the device's stream window
+	private static final int STREAM_WINDOW_FEATURE = 0x01, CHECKSUM_FEATURE = 0x02, DELTA_STREAM_FEATURE = 0x04,	// delta streams need window streams
+			CODED_STREAM_FEATURE = 0x08,
+			DATAGRAM_FEATURE = 0x10;	// network cubes only, frames are sent as udp datagrams instead of streamed on request
+	private static final int PLACEHOLDER_CHECKSUM_SIZE = 1;	// devices without CHECKSUM_FEATURE ignore the checksum byte
+	private static final int STREAM_OFFSET_SIZE = 2;	// stop and wait packets carry their offset (little endian) with CHECKSUM_FEATURE
+	private static final int MAX_STREAM_WINDOW = 32;	// chunks sent in one burst at most
+	private static final int BITS_PER_SERIAL_BYTE = 10;	// start and stop bit
 	private static final int ACKNOWLEDGE_PACKET_WAIT = 10,
 			DISPLAY_RESEND_TIME = 50;
+	private static final int SERIAL_READ_TIMEOUT = ACKNOWLEDGE_PACKET_WAIT,	// longest time a read blocks the serial thread
+			SERIAL_READ_BUFFER_SIZE = 256;
+	private static final int FRAME_QUEUE_SIZE = 8;
+	private static final int MAX_NETWORK_PORT = 0xFFFF;
 
-	private SerialPort serialPort = null;
+	private volatile Transport transport = null;
+	private boolean speedAdjustable;	// links without a speed skip speed negotiation
+	private volatile Thread serialThread = null;	// only runs after a successful init
 
 	private int cubeSide, channelCount, channelSize;
+	private int streamSize = LEGACY_STREAM_SIZE;	// bytes of voxel data per stream packet, negotiated on init
+	private int serialSpeed = SERIAL_SPEED;
+	private int checksumSize = PLACEHOLDER_CHECKSUM_SIZE;
+	private boolean codedStream = false;	// coded streams instead of compressed byte pairs
+
+	private volatile int failedFrames, displayedFrames, corruptedPackets;	// only written by the serial thread
 
-	private int failedFrames, corruptedPackets;
-	private boolean failedFramesIncreased = false;
+	private volatile FrameQueue frameQueue = null;	// created on init
+	private volatile FrameQueuePolicy frameQueuePolicy = FrameQueuePolicy.DROP;
 
+	// frame taken out of the queue, null until the next one is. Shared with VoxelDataCache, never modified
 	private byte[] voxelData = null;
+	private long displayTime;
 	private int voxelDataStride;
 
-	private boolean displayFrame = false;
-	private long displayResendStartTime = 0;
+	private StreamState streamState = StreamState.IDLE;	// stop and wait streams only
+	private long streamStateDeadline;
+	private int sentStrideIncrease;
+
+	private StreamWindow streamWindow = null;	// only used if the device supports window streams
+	private byte[] windowInput = new byte[0];	// start of a window request that has not fully arrived yet
+	private boolean displaySent = false;	// display answers are only expected after a display packet
+
+	private DatagramStream datagramStream = null;	// only used if a network device supports datagrams
+	private volatile DisplayGate displayGate = null;	// set for the devices of a DeviceGroup
 
 	// protocol packet constants
-	private static final int INIT_REQUEST_PACKET = 127,
+	static final int INIT_REQUEST_PACKET = 127,
 			INIT_START_PACKET = 120,
 			INIT_ACKNOWLEDGE_PACKET = 113;
-	private static final int STREAM_REQUEST_PACKET = 63, TERMINATE_COMMUNICATION_PACKET = 0,
-			STREAM_START_COMPRESSED_PACKET = 32, STREAM_START_RAW_PACKET = 31, DISPLAY_PACKET = 24,
+	static final int SERIAL_SPEED_REQUEST_PACKET = 106,
+			SERIAL_SPEED_CONFIRM_PACKET = 99,
+			SERIAL_SPEED_PROBE_PACKET = 92,
+			SERIAL_SPEED_PROBE_ACKNOWLEDGE_PACKET = 85;
+	static final int STREAM_REQUEST_PACKET = 63, TERMINATE_COMMUNICATION_PACKET = 0,
+			STREAM_START_CODED_PACKET = 34, STREAM_START_DELTA_PACKET = 33, STREAM_START_COMPRESSED_PACKET = 32, STREAM_START_RAW_PACKET = 31, DISPLAY_PACKET = 24,
 			STREAM_END_PACKET = 248,
 			STREAM_ACKNOWLEDGE_PACKET = 240, STREAM_CORRUPTED_PACKET = 224,
 			FRAME_DISPLAYED_PACKET = 217, FRAME_FAILED_PACKET = 210;
+	static final int STREAM_WINDOW_REQUEST_PACKET = 56, STREAM_WINDOW_PACKET = 49,
+			WINDOW_REQUEST_SIZE = 5;	// request packet, transfer id, first missing chunk (little endian), selective acknowledge, crc-16 with CHECKSUM_FEATURE
+	static final int DATAGRAM_FRAME_PACKET = 42;
 
-	public synchronized SerialStatus initSerial(String port) {
+	// host:port connects to a network device, anything else is a serial port
+	public SerialStatus initSerial(String port) {
+		return initSerial(createTransport(port));
+	}
+	public synchronized SerialStatus initSerial(Transport transport) {
 		terminateConnection();
 
-		serialPort = SerialPort.getCommPort(port);
-		serialPort.setComPortParameters(SERIAL_SPEED, 8, 1, 0);
-		serialPort.setComPortTimeouts(SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
-
-		if (!serialPort.openPort()) {
+		this.transport = transport;
+		if (!transport.open()) {
 			terminateConnection();
 			return SerialStatus.CONNECTION_FAILED;
 		}
+		speedAdjustable = transport.setSpeed(SERIAL_SPEED);
 
 		SerialStatus currentSerialStatus = SerialStatus.CONNECTION_TIMEOUT;
 		for(int i = 0; i < INIT_RETRIES; i++) {	// retry connection a few times before giving up
@@ -82,13 +133,44 @@ public class ProtocolSerial {
 			sleep(INIT_RESPONSE_WAIT);
 
 			byte[] initData = readSerialBytes();
-			if(initData.length == INIT_DATA_SIZE) {
+			if(initData.length == INIT_DATA_SIZE || initData.length == INIT_EXTENDED_DATA_SIZE || initData.length == INIT_FEATURE_DATA_SIZE) {
 				if(initData[0] == (byte) INIT_START_PACKET) {
 					if(!setCubeParams(initData[1], initData[2], initData[3])) {
 						currentSerialStatus = SerialStatus.NOT_RESPONDING_PROPERLY;
 						break;
 					}
-					sendSerialBytes((byte) INIT_ACKNOWLEDGE_PACKET);
+
+					if(initData.length >= INIT_EXTENDED_DATA_SIZE) {
+						int deviceStreamSize = (initData[4] & 0xFF) | ((initData[5] & 0xFF) << 8);
+						if(!setStreamSize(deviceStreamSize)) {
+							currentSerialStatus = SerialStatus.NOT_RESPONDING_PROPERLY;
+							break;
+						}
+						// the device waits for the chosen stream size after the acknowledge
+						sendSerialBytes((byte) INIT_ACKNOWLEDGE_PACKET, (byte) streamSize, (byte) (streamSize >> 8));
+						if(initData.length == INIT_FEATURE_DATA_SIZE) {
+							// and for the features that will be used when it advertised any
+							int features = initData[6] & (STREAM_WINDOW_FEATURE | CHECKSUM_FEATURE | DELTA_STREAM_FEATURE | CODED_STREAM_FEATURE | DATAGRAM_FEATURE);
+							int windowSize = Math.min(initData[7] & 0xFF, MAX_STREAM_WINDOW);
+							if((features & DATAGRAM_FEATURE) != 0 && !openDatagramStream())
+								features &= ~DATAGRAM_FEATURE;
+							if(windowSize == 0 || (features & DATAGRAM_FEATURE) != 0)
+								features &= ~STREAM_WINDOW_FEATURE;
+							if((features & STREAM_WINDOW_FEATURE) == 0)
+								features &= ~DELTA_STREAM_FEATURE;
+							if((features & CHECKSUM_FEATURE) != 0)
+								checksumSize = Crc16.SIZE;
+							codedStream = (features & CODED_STREAM_FEATURE) != 0;
+							if((features & STREAM_WINDOW_FEATURE) != 0)
+								streamWindow = new StreamWindow(streamSize, windowSize, checksumSize, (features & DELTA_STREAM_FEATURE) != 0, codedStream);
+							sendSerialBytes((byte) features);
+						}
+						negotiateSerialSpeed();
+					}
+					else {
+						streamSize = LEGACY_STREAM_SIZE;
+						sendSerialBytes((byte) INIT_ACKNOWLEDGE_PACKET);
+					}
 					currentSerialStatus = SerialStatus.CONNECTION_SUCCEEDED;
 					break;
 				}
@@ -102,10 +184,9 @@ public class ProtocolSerial {
 		}
 
 		if(currentSerialStatus == SerialStatus.CONNECTION_SUCCEEDED) {
-			serialPort.addDataListener(new SerialPortDataListener() {	// set up serial listener to process frame streaming
-				public int getListeningEvents() { return SerialPort.LISTENING_EVENT_DATA_AVAILABLE; }
-				public void serialEvent(SerialPortEvent event) { serialDataAvailable(); }
-			});
+			frameQueue = new FrameQueue(FRAME_QUEUE_SIZE);
+			serialThread = new Thread(this);	// start the serial thread to process frame streaming
+			serialThread.start();
 		}
 		else {
 			terminateConnection();
@@ -114,149 +195,359 @@ public class ProtocolSerial {
 		return currentSerialStatus;
 	}
 	public synchronized void terminateConnection() {
-		if(serialPort == null)
+		stopSerialThread();
+		if(transport == null)
 			return;
 
-		serialPort.removeDataListener();
-		serialPort.closePort();
-		serialPort = null;
+		transport.close();
+		transport = null;
 
 		cubeSide = -1;
 		channelCount = -1;
 		channelSize = -1;
+		streamSize = LEGACY_STREAM_SIZE;
+		serialSpeed = SERIAL_SPEED;
+		checksumSize = PLACEHOLDER_CHECKSUM_SIZE;
+		codedStream = false;
 
 		corruptedPackets = 0;
 		failedFrames = 0;
+		displayedFrames = 0;
+
+		FrameQueue queue = frameQueue;
+		if(queue != null)	// not created yet if the init failed
+			queue.close();
+		frameQueue = null;
 
-		if(voxelData != null)
-			Arrays.fill(voxelData, (byte) 0);
 		voxelData = null;
 		voxelDataStride = 0;
+		streamState = StreamState.IDLE;
+		displaySent = false;
+
+		streamWindow = null;
+		windowInput = new byte[0];
+
+		if(datagramStream != null)
+			datagramStream.close();
+		datagramStream = null;
 	}
-	public synchronized void streamFrame(Frame frame) {
-		if(frame == null || serialPort == null || cubeSide != frame.getSide())
-			return;
+	// displayTime is in System.currentTimeMillis() time, returns false if the frame was dropped
+	public boolean queueFrame(Frame frame, long displayTime) {
+		if(frame == null || frameQueue == null || cubeSide != frame.getSide())
+			return false;
 
-		frame.updateVoxelData(voxelData, channelCount, channelSize);
-		failedFramesIncreased = false;
+		byte[] frameData = VoxelDataCache.getVoxelData(frame, channelCount, channelSize);	// unchanged frames are not packed again
+		return queueVoxelData(frameData, displayTime);
+	}
+	// frameData is packed for this device's channel format and never modified afterwards
+	protected boolean queueVoxelData(byte[] frameData, long displayTime) {
+		FrameQueue queue = frameQueue;
+		if(queue == null)
+			return false;
+		return queue.offer(frameData, displayTime, frameQueuePolicy);
 	}
-	public synchronized void displayFrame() {
-		displayFrame = true;
-		displayResendStartTime = System.currentTimeMillis();
+	// drops the frames that were queued but not displayed yet
+	public void clearQueuedFrames() {
+		FrameQueue queue = frameQueue;
+		if(queue != null)
+			queue.clear();
 	}
-	public synchronized boolean isConnected() {
-		return serialPort != null;
+	public void setFrameQueuePolicy(FrameQueuePolicy frameQueuePolicy) {
+		this.frameQueuePolicy = frameQueuePolicy;
 	}
+	public boolean isConnected() {
+		Thread thread = serialThread;
+		return thread != null && thread.isAlive();
+	}
+
+	@Override
+	public void run() {
+		Transport link = transport;
+		byte[] buffer = new byte[SERIAL_READ_BUFFER_SIZE];
+
+		while(serialThread == Thread.currentThread()) {
+			int count = link.read(buffer, 0, buffer.length, getReadTimeout());	// returns as soon as anything arrived
+			if(count < 0)
+				break;	// the link is gone
+
+			byte[] availableBytes = Arrays.copyOf(buffer, count);
+			boolean connected;
+			if(datagramStream != null)
+				connected = receiveDatagramBytes(availableBytes);
+			else if(streamWindow != null)
+				connected = receiveWindowBytes(availableBytes);
+			else
+				connected = receiveStreamBytes(availableBytes);
+			if(!connected)
+				break;
+		}
+
+		if(serialThread == Thread.currentThread()) {
+			// the device ended the connection, the rest is cleaned up by terminateConnection
+			link.close();
+			FrameQueue queue = frameQueue;
+			if(queue != null)
+				queue.close();	// a blocked producer would wait for this thread forever
+		}
+	}
+	private void stopSerialThread() {
+		Thread thread = serialThread;
+		if(thread == null)
+			return;
 
-	private synchronized void serialDataAvailable() {
-		if(serialPort == null)
+		serialThread = null;
+		if(thread == Thread.currentThread())
 			return;
+		try {
+			thread.join();	// the serial thread never waits for this lock
+		}
+		catch(InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// returns false when the device ended the connection
+	private boolean receiveStreamBytes(byte[] availableBytes) {
+		if(streamState != StreamState.IDLE && availableBytes.length == 0 && System.currentTimeMillis() > streamStateDeadline) {
+			// the answer did not arrive in time, one read late by a busy thread is still taken as the answer
+			if(streamState == StreamState.DISPLAY_SENT) {
+				failedFrames++;	// whether it was displayed is unknown, the device has moved on either way
+				voxelData = null;
+			}
+			streamState = StreamState.IDLE;
+		}
+		if(availableBytes.length == 0)
+			return true;
 
-		byte[] availableBytes = readSerialBytes();
-		if(availableBytes.length > 0) {
+		if(streamState == StreamState.DISPLAY_SENT) {
+			byte displayStatus = availableBytes[0];
+
+			if(displayStatus == (byte) FRAME_DISPLAYED_PACKET) {
+				// frame successfully displayed
+				displayedFrames++;
+			}
+			else {
+				failedFrames++;	// failed, or the answer got garbled
+			}
+			voxelData = null;
+		}
+		else if(streamState == StreamState.PACKET_SENT) {
+			byte streamStatus = availableBytes[0];
+
+			if(streamStatus == (byte) STREAM_ACKNOWLEDGE_PACKET) {
+				voxelDataStride += sentStrideIncrease;
+			}
+			else if(streamStatus == (byte) STREAM_CORRUPTED_PACKET) {
+				corruptedPackets++;
+			}
+		}
+		int statusSize = streamState != StreamState.IDLE ? 1 : 0;
+		streamState = StreamState.IDLE;
+
+		if(availableBytes.length > statusSize) {
 			byte latestByte = availableBytes[availableBytes.length - 1];
 
 			if(latestByte == (byte) STREAM_REQUEST_PACKET) {
 				stream();
 			}
 			else if(latestByte == (byte) TERMINATE_COMMUNICATION_PACKET) {
-				terminateConnection();
+				return false;
 			}
 		}
+		return true;
 	}
+	/*
+		Sends the next stop and wait packet, its answer is handled by receiveStreamBytes. Once the frame is due
+		and streamed it is displayed. A frame that is not streamed in time is displayed anyway, the device
+		refuses it but starts over.
+	*/
 	private void stream() {
-		if(displayFrame) {
-			if(System.currentTimeMillis() > displayResendStartTime + DISPLAY_RESEND_TIME)
-				displayFrame = false;
+		takeQueuedFrame();
+		if(voxelData == null)
+			return;	// the device asks again after a while
 
+		long currentTime = System.currentTimeMillis();
+		boolean streamed = voxelDataStride >= voxelData.length;
+		if(currentTime >= displayTime && ((streamed && isDisplayGateOpen()) || currentTime > displayTime + DISPLAY_RESEND_TIME)) {
 			sendSerialBytes((byte) DISPLAY_PACKET);
 			voxelDataStride = 0;
 
-			long startTime = System.currentTimeMillis();
-			while(System.currentTimeMillis() < startTime + ACKNOWLEDGE_PACKET_WAIT) {
-				if(serialPort.bytesAvailable() > 0) {
-					byte displayStatus = readSerialBytes()[0];
-
-					if(displayStatus == (byte) FRAME_DISPLAYED_PACKET) {
-						// frame successfully displayed
-						displayFrame = false;
-					}
-					else if(displayStatus == (byte) FRAME_FAILED_PACKET && !failedFramesIncreased) {
-						failedFrames++;	// increment this when frame displayed is never received!
-						failedFramesIncreased = true;
-					}
-
-					break;
-				}
-			}
-
+			streamState = StreamState.DISPLAY_SENT;
+			streamStateDeadline = currentTime + ACKNOWLEDGE_PACKET_WAIT;
 			return;
 		}
+		if(streamed)
+			return;
 
-		StreamData compressedStreamData = getCompressedStream();
-		StreamData rawStreamData = getRawStream();
-		int strideIncrease = 0;
-
-		if(compressedStreamData.getTotalChannelStride() > rawStreamData.getTotalChannelStride()) {	// compressed stream
-			sendSerialBytes((byte) STREAM_START_COMPRESSED_PACKET);
-			sendSerialBytes(compressedStreamData.getData());
-			strideIncrease = compressedStreamData.getTotalChannelStride();
+		// with checksums the packet carries its offset, so a packet sent again because its acknowledge got lost
+		// is acknowledged by the device without being written after the data it already holds
+		byte[] frameData = voxelData;
+		int offsetSize = isChecksumChecked() ? STREAM_OFFSET_SIZE : 0;
+		int streamStart = 1 + offsetSize;
+		byte[] packet = new byte[streamStart + streamSize + 1 + checksumSize];
+		int compressedFormat = codedStream ? STREAM_START_CODED_PACKET : STREAM_START_COMPRESSED_PACKET;
+		int compressedEnd = StreamCodec.writeStream(compressedFormat, frameData, voxelDataStride, packet, streamStart, streamSize);
+		int rawEnd = Math.min(voxelDataStride + streamSize, frameData.length);
+
+		if(compressedEnd > rawEnd) {	// compressed stream
+			packet[0] = (byte) compressedFormat;
+			sentStrideIncrease = compressedEnd - voxelDataStride;
 		}
 		else {	// raw stream
-			sendSerialBytes((byte) STREAM_START_RAW_PACKET);
-			sendSerialBytes(rawStreamData.getData());
-			strideIncrease = rawStreamData.getTotalChannelStride();
+			packet[0] = (byte) STREAM_START_RAW_PACKET;
+			sentStrideIncrease = StreamCodec.writeRawStream(frameData, voxelDataStride, packet, streamStart, streamSize) - voxelDataStride;
+		}
+		if(offsetSize > 0) {
+			packet[1] = (byte) voxelDataStride;
+			packet[2] = (byte) (voxelDataStride >> 8);
 		}
 
-		sendSerialBytes((byte) STREAM_END_PACKET);
-		sendSerialBytes((byte) 1);	// (future) checksum
-
-		// wait for stream acknowledge before increasing totalChannelStride
-		long startTime = System.currentTimeMillis();
-		while(System.currentTimeMillis() < startTime + ACKNOWLEDGE_PACKET_WAIT) {
-			if(serialPort.bytesAvailable() > 0) {
-				byte streamStatus = readSerialBytes()[0];
+		packet[streamStart + streamSize] = (byte) STREAM_END_PACKET;
+		writeChecksum(packet, 0, streamStart + streamSize + 1, checksumSize);
+		sendSerialBytes(packet);
 
-				if(streamStatus == (byte) STREAM_ACKNOWLEDGE_PACKET) {
-					voxelDataStride += strideIncrease;
-				}
-				else if(streamStatus == (byte) STREAM_CORRUPTED_PACKET) {
-					corruptedPackets++;
+		// the stride is increased once the packet is acknowledged, larger packets take longer to arrive
+		streamState = StreamState.PACKET_SENT;
+		streamStateDeadline = System.currentTimeMillis() + ACKNOWLEDGE_PACKET_WAIT + getTransferTime(packet.length);
+	}
+	/*
+		Handles everything a device sends in window stream mode. Acknowledges carried by window requests are
+		applied in order, only the last request of a batch is answered since the device has given up on the
+		earlier ones already. Returns false when the device ended the connection, a 0 byte following the remains
+		of a corrupted request does not count.
+	*/
+	private boolean receiveWindowBytes(byte[] availableBytes) {
+		if(availableBytes.length == 0)
+			return true;
+
+		byte[] input = new byte[windowInput.length + availableBytes.length];
+		System.arraycopy(windowInput, 0, input, 0, windowInput.length);
+		System.arraycopy(availableBytes, 0, input, windowInput.length, availableBytes.length);
+
+		int requestSize = WINDOW_REQUEST_SIZE + (isChecksumChecked() ? Crc16.SIZE : 0);
+		boolean requested = false;
+		boolean unknownBytes = false;	// the rest of a corrupted request, its 0 bytes do not end the connection
+		int i = 0;
+		while(i < input.length) {
+			int packet = input[i] & 0xFF;
+			if(packet == STREAM_WINDOW_REQUEST_PACKET) {
+				if(input.length - i < requestSize)
+					break;	// the rest arrives with the next event
+				if(isChecksumChecked() && !isChecksumValid(input, i, WINDOW_REQUEST_SIZE)) {
+					unknownBytes = true;	// the device asks again once it is not answered
+					i++;
+					continue;
 				}
+				streamWindow.acknowledge(input[i + 1] & 0xFF, (input[i + 2] & 0xFF) | ((input[i + 3] & 0xFF) << 8), input[i + 4] & 0xFF);
+				requested = true;
+				unknownBytes = false;
+				i += requestSize;
+				continue;
+			}
 
-				break;
+			if((packet == FRAME_DISPLAYED_PACKET || packet == FRAME_FAILED_PACKET) && displaySent) {	// later answers belong to repeated display packets
+				if(packet == FRAME_FAILED_PACKET)
+					failedFrames++;
+				if(packet == FRAME_DISPLAYED_PACKET) {
+					displayedFrames++;
+					streamWindow.setDisplayed();
+				}
+				displaySent = false;
+				voxelData = null;	// the device starts over after every display packet
+				unknownBytes = false;
 			}
+			else if(packet == TERMINATE_COMMUNICATION_PACKET && i == input.length - 1 && !unknownBytes) {
+				return false;
+			}
+			else if(packet != FRAME_DISPLAYED_PACKET && packet != FRAME_FAILED_PACKET) {
+				unknownBytes = true;
+			}
+			i++;
 		}
+		windowInput = Arrays.copyOfRange(input, i, input.length);
+
+		if(requested)
+			streamWindow();
+		return true;
 	}
-	private StreamData getCompressedStream() {
-		byte[] stream = new byte[STREAM_SIZE];
-
-		int strideIncrease = 0;
-		for(int i = 0; i + 1 < STREAM_SIZE && voxelDataStride + strideIncrease < voxelData.length; i += 2) {
-			stream[i + 1] = 1;
-			for(int j = 0; voxelDataStride + strideIncrease + j < voxelData.length; j++) {
-				if(j == 0)
-					stream[i] = voxelData[voxelDataStride + strideIncrease];
-				else if(voxelData[voxelDataStride + strideIncrease + j] == stream[i])
-					stream[i + 1]++;
-				else
-					break;
-			}
-			strideIncrease += stream[i + 1];
+	private void streamWindow() {
+		if(voxelData != null && System.currentTimeMillis() > displayTime + DISPLAY_RESEND_TIME) {
+			// the frame did not make it in time, the next one is streamed instead
+			failedFrames++;
+			displaySent = false;
+			voxelData = null;
+			streamWindow.clearDisplayed();	// a display answer might have been lost
 		}
+		takeQueuedFrame();
+		if(voxelData == null)
+			return;	// the device asks again after a while
 
-		return new StreamData(stream, strideIncrease);
+		if(System.currentTimeMillis() >= displayTime && streamWindow.isComplete() && isDisplayGateOpen()) {
+			sendSerialBytes((byte) DISPLAY_PACKET, (byte) streamWindow.getTransferId());
+			displaySent = true;
+			return;
+		}
+		sendSerialBytes(streamWindow.getBurst());
+	}
+	// the devices of a group display a frame together, the device asks again while the gate is closed
+	private boolean isDisplayGateOpen() {
+		DisplayGate gate = displayGate;
+		return gate == null || gate.pass(this, displayTime);
 	}
-	private StreamData getRawStream() {
-		byte[] stream = new byte[STREAM_SIZE];
+	// returns false when the device ended the connection
+	private boolean receiveDatagramBytes(byte[] availableBytes) {
+		for(int i = 0; i < availableBytes.length; i++) {
+			int packet = availableBytes[i] & 0xFF;
+			if(packet == FRAME_DISPLAYED_PACKET)
+				displayedFrames++;
+			else if(packet == FRAME_FAILED_PACKET)
+				failedFrames++;	// a datagram of the frame got lost
+			else if(packet == TERMINATE_COMMUNICATION_PACKET && i == availableBytes.length - 1)
+				return false;
+		}
 
-		int strideIncrease = 0;
-		for(int i = 0; i < STREAM_SIZE && voxelDataStride + strideIncrease < voxelData.length; i++) {
-			stream[i] = voxelData[voxelDataStride + strideIncrease];
-			strideIncrease++;
+		takeQueuedFrame();
+		if(voxelData != null && System.currentTimeMillis() >= displayTime) {
+			if(!datagramStream.send(voxelData, codedStream ? STREAM_START_CODED_PACKET : STREAM_START_RAW_PACKET))
+				failedFrames++;
+			voxelData = null;
+			takeQueuedFrame();	// so the read before the next one does not block past its display time
 		}
+		return true;
+	}
+	// datagram streams send frames when they are due, not when the device asks for them
+	private int getReadTimeout() {
+		if(datagramStream == null || voxelData == null)
+			return SERIAL_READ_TIMEOUT;
+		return (int) Math.min(Math.max(displayTime - System.currentTimeMillis(), 1), SERIAL_READ_TIMEOUT);
+	}
+	// takes the next frame out of the queue once the previous one is done with, late frames are skipped
+	private void takeQueuedFrame() {
+		if(voxelData != null || !frameQueue.next(System.currentTimeMillis()))
+			return;
 
-		return new StreamData(stream, strideIncrease);
+		voxelData = frameQueue.getVoxelData();
+		displayTime = frameQueue.getDisplayTime();
+		frameQueue.remove();
+		if(streamWindow != null)
+			streamWindow.start(voxelData);	// identical frames share their voxel data, every one is a transfer of its own
+	}
+
+	// checks the checksum following length bytes of packet from offset
+	private static boolean isChecksumValid(byte[] packet, int offset, int length) {
+		int checksum = (packet[offset + length] & 0xFF) | ((packet[offset + length + 1] & 0xFF) << 8);
+		return Crc16.compute(packet, offset, length) == checksum;
+	}
+	// writes the checksum of length bytes of packet from offset right after them
+	protected static void writeChecksum(byte[] packet, int offset, int length, int checksumSize) {
+		if(checksumSize == Crc16.SIZE) {
+			int checksum = Crc16.compute(packet, offset, length);
+			packet[offset + length] = (byte) checksum;
+			packet[offset + length + 1] = (byte) (checksum >> 8);
+		}
+		else {
+			packet[offset + length] = (byte) 1;	// placeholder
+		}
 	}
 
 	protected int getCubeSide() {
@@ -269,9 +560,45 @@ public class ProtocolSerial {
 		return channelSize;
 	}
 
+	protected int getSerialSpeed() {
+		return serialSpeed;
+	}
+	protected int getStreamSize() {
+		return streamSize;
+	}
+	protected boolean isChecksumChecked() {
+		return checksumSize == Crc16.SIZE;
+	}
+	protected void setDisplayGate(DisplayGate displayGate) {
+		this.displayGate = displayGate;
+	}
+	protected boolean isDatagramStreamed() {
+		return datagramStream != null;
+	}
+	// false for network links, they have no serial speed
+	protected boolean hasSerialSpeed() {
+		return speedAdjustable;
+	}
+	// chunks per burst, 0 without window streams
+	protected int getStreamWindowSize() {
+		return streamWindow != null ? streamWindow.getWindowSize() : 0;
+	}
+
 	protected int getFailedFrames() {
 		return failedFrames;
 	}
+	protected int getDisplayedFrames() {
+		return displayedFrames;
+	}
+	// stream packets the device reported as corrupted, stop and wait streams only
+	protected int getCorruptedPackets() {
+		return corruptedPackets;
+	}
+	// dropped by a full queue or because they were late
+	protected int getDroppedFrames() {
+		FrameQueue queue = frameQueue;
+		return queue != null ? queue.getDroppedFrames() : 0;
+	}
 
 	private boolean setCubeParams(int cubeSide, int channelCount, int channelSize) {
 		if(cubeSide < 0 || (channelCount < 0 || channelCount > 3) || (channelSize != 1 && channelSize != 2 && channelSize != 4 && channelSize != 8)) {
@@ -282,28 +609,129 @@ public class ProtocolSerial {
 		this.channelCount = channelCount;
 		this.channelSize = channelSize;
 
-		voxelData = new byte[Frame.getVoxelDataSize(cubeSide, channelCount, channelSize)];
 		return true;
 	}
+	/*
+		Proposes PROPOSED_SERIAL_SPEEDS to a device that advertised its stream size. The device answers with the
+		index of the speed it picked, then both sides switch and the editor sends a probe which the device echoes.
+		If the probe does not come back intact the editor waits until the device has fallen back to SERIAL_SPEED
+		on its own and stays there too.
+	*/
+	private void negotiateSerialSpeed() {
+		int proposedSpeedCount = speedAdjustable ? PROPOSED_SERIAL_SPEEDS.length : 0;	// the device still waits for a request
+		byte[] request = new byte[2 + (proposedSpeedCount * Integer.BYTES)];
+		request[0] = (byte) SERIAL_SPEED_REQUEST_PACKET;
+		request[1] = (byte) proposedSpeedCount;
+		for(int i = 0; i < proposedSpeedCount; i++) {
+			for(int j = 0; j < Integer.BYTES; j++)
+				request[2 + (i * Integer.BYTES) + j] = (byte) (PROPOSED_SERIAL_SPEEDS[i] >> (8 * j));
+		}
+		sendSerialBytes(request);
+
+		byte[] confirm = waitForSerialBytes(2, SERIAL_SPEED_RESPONSE_WAIT);
+		if(confirm == null || confirm[0] != (byte) SERIAL_SPEED_CONFIRM_PACKET)
+			return;
+		int speedIndex = confirm[1] & 0xFF;
+		if(speedIndex == NO_SERIAL_SPEED || speedIndex >= proposedSpeedCount)
+			return;
+
+		sleep(SERIAL_SPEED_SWITCH_WAIT);	// let the device finish sending the confirmation and switch
+		if(!transport.setSpeed(PROPOSED_SERIAL_SPEEDS[speedIndex])) {
+			sleep(SERIAL_SPEED_FALLBACK_WAIT);
+			return;
+		}
+		long switchTime = System.currentTimeMillis();
+		sleep(SERIAL_SPEED_SWITCH_WAIT);
+		clearSerialBytes();
+
+		byte[] probe = new byte[1 + SERIAL_SPEED_PROBE_DATA.length];
+		probe[0] = (byte) SERIAL_SPEED_PROBE_PACKET;
+		System.arraycopy(SERIAL_SPEED_PROBE_DATA, 0, probe, 1, SERIAL_SPEED_PROBE_DATA.length);
+		sendSerialBytes(probe);
+
+		byte[] probeAcknowledge = waitForSerialBytes(probe.length, SERIAL_SPEED_RESPONSE_WAIT);
+		probe[0] = (byte) SERIAL_SPEED_PROBE_ACKNOWLEDGE_PACKET;
+		if(Arrays.equals(probe, probeAcknowledge)) {
+			serialSpeed = PROPOSED_SERIAL_SPEEDS[speedIndex];
+			return;
+		}
+
+		// probe failed, the device goes back to SERIAL_SPEED once its probe wait is over
+		transport.setSpeed(SERIAL_SPEED);
+		sleep(Math.max(SERIAL_SPEED_FALLBACK_WAIT - (System.currentTimeMillis() - switchTime), 0));
+		clearSerialBytes();
+	}
+	private boolean openDatagramStream() {
+		if(!(transport instanceof SocketTransport))
+			return false;
+
+		datagramStream = new DatagramStream(((SocketTransport) transport).getRemoteAddress());
+		if(!datagramStream.open()) {
+			datagramStream = null;
+			return false;
+		}
+		return true;
+	}
+	// picks the largest stream size both sides support, there is no use in packets larger than a frame
+	private boolean setStreamSize(int deviceStreamSize) {
+		if(deviceStreamSize < MIN_STREAM_SIZE)
+			return false;
+
+		int voxelDataSize = Frame.getVoxelDataSize(cubeSide, channelCount, channelSize);
+		int frameStreamSize = Math.max(voxelDataSize + (voxelDataSize % 2), MIN_STREAM_SIZE);
+		streamSize = Math.min(Math.min(deviceStreamSize, MAX_STREAM_SIZE), frameStreamSize);
+		streamSize -= streamSize % 2;	// compressed streams are made of byte pairs
+		return true;
+	}
+	private static Transport createTransport(String port) {
+		int separator = port.lastIndexOf(':');
+		if(separator > 0) {
+			String host = port.substring(0, separator);
+			if(host.startsWith("[") && host.endsWith("]"))
+				host = host.substring(1, host.length() - 1);	// ipv6 address
+			try {
+				int networkPort = Integer.parseInt(port.substring(separator + 1));
+				if(networkPort > 0 && networkPort <= MAX_NETWORK_PORT)
+					return new SocketTransport(host, networkPort);
+			}
+			catch(NumberFormatException e) {}
+		}
+		return new SerialPortTransport(port, SERIAL_SPEED);
+	}
+	private long getTransferTime(int byteCount) {
+		return (long) Math.ceil((double) byteCount * BITS_PER_SERIAL_BYTE * 1000 / serialSpeed);
+	}
 	private void sendSerialBytes(byte ... bytes) {
-		if(serialPort == null)
+		if(transport == null)
 			return;
-		serialPort.writeBytes(bytes, bytes.length);
+		transport.write(bytes, 0, bytes.length);
 	}
 	private byte[] readSerialBytes() {
-		if(serialPort == null)
+		if(transport == null)
 			return new byte[0];
 
-		byte[] bytes = new byte[serialPort.bytesAvailable()];
-		serialPort.readBytes(bytes, bytes.length);
+		byte[] bytes = new byte[Math.max(transport.available(), 0)];
+		int count = transport.read(bytes, 0, bytes.length, 0);
+		return Arrays.copyOf(bytes, Math.max(count, 0));
+	}
+	// returns null if count bytes did not arrive within timeout milliseconds
+	private byte[] waitForSerialBytes(int count, long timeout) {
+		long endTime = System.currentTimeMillis() + timeout;
+		byte[] bytes = new byte[count];
+		int received = 0;
+		while(received < count) {
+			long timeLeft = endTime - System.currentTimeMillis();
+			if(timeLeft <= 0)
+				return null;
+			int readCount = transport.read(bytes, received, count - received, (int) timeLeft);
+			if(readCount < 0)
+				return null;
+			received += readCount;
+		}
 		return bytes;
 	}
 	private void clearSerialBytes() {
-		if(serialPort == null)
-			return;
-
-		byte[] trashBin = new byte[serialPort.bytesAvailable()];
-		serialPort.readBytes(trashBin, trashBin.length);
+		readSerialBytes();
 	}
 	private void sleep(long sleepTime) {
 		try {
@@ -313,18 +741,8 @@ public class ProtocolSerial {
 	}
 }
 
-class StreamData {
-	private final byte[] data;
-	private final int totalChannelStride;
-
-	public StreamData(byte[] data, int totalChannelStride) {
-		this.data = data;
-		this.totalChannelStride = totalChannelStride;
-	}
-	public byte[] getData() {
-		return data;
-	}
-	public int getTotalChannelStride() {
-		return totalChannelStride;
-	}
+enum StreamState {
+	IDLE,
+	DISPLAY_SENT,	// waiting for the display status
+	PACKET_SENT	// waiting for the stream acknowledge
 }
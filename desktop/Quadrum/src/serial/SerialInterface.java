@@ -27,12 +27,15 @@ package serial;
 import project.Frame;
 import project.Project;
 import ui.editor.controls.SerialControls;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SerialInterface implements Runnable {
 
 	private static final long ZERO_FRAME_DELAY = 100;
+	private static final String PORT_SEPARATOR = ",";	// several ports stream to a group of cubes
 
-	private ProtocolSerial protocolSerial = new ProtocolSerial();
+	private DeviceGroup deviceGroup = new DeviceGroup();
 
 	private SerialControls serialControls = null;
 	private Thread serialThread = null;
@@ -41,7 +44,7 @@ public class SerialInterface implements Runnable {
 	private boolean toggleZeroFrame = false;
 
 	public void connect(SerialControls serialControls) {
-		if(protocolSerial.isConnected() || serialThread != null)
+		if(deviceGroup.isConnected() || serialThread != null)
 			return;
 
 		this.serialControls = serialControls;
@@ -56,11 +59,12 @@ public class SerialInterface implements Runnable {
 		serialThread = null;
 		serialControls.connectedMode(false);
 	}
-	public void sendFrame(Frame frame) {
-		if(!protocolSerial.isConnected() || serialThread == null)
+	// queues frame to be displayed at displayTime (System.currentTimeMillis() time)
+	public void queueFrame(Frame frame, long displayTime) {
+		if(!deviceGroup.isConnected() || serialThread == null)
 			return;
 
-		protocolSerial.streamFrame(frame);
+		deviceGroup.queueFrame(frame, displayTime);
 	}
 	public void setToggleZeroFrame(boolean toggle) {
 		toggleZeroFrame = toggle;
@@ -69,37 +73,44 @@ public class SerialInterface implements Runnable {
 		if(!toggleZeroFrame)
 			return;
 
-		displayStreamedFrame();
-		sendFrame(new Frame(frameSide));
-		try { Thread.sleep(ZERO_FRAME_DELAY); }
-		catch (InterruptedException e) {}
-		displayStreamedFrame();
+		if(deviceGroup.isConnected() && serialThread != null) {
+			deviceGroup.clearQueuedFrames();	// frames of the stopped animation
+			deviceGroup.queueFrame(new Frame(frameSide), System.currentTimeMillis() + ZERO_FRAME_DELAY);
+		}
 		toggleZeroFrame = false;
 	}
-	public void displayStreamedFrame() {
-		if(!protocolSerial.isConnected() || serialThread == null)
-			return;
-		protocolSerial.displayFrame();
-	}
 
 	public void startStreamingProject(Project project) {
-		if(serialControls == null || !protocolSerial.isConnected())
+		if(serialControls == null || !deviceGroup.isConnected())
 			return;
 
-		if(protocolSerial.getCubeSide() == project.getSide()) {
-			serialControls.printlnConsole("streaming project " + project.getName());
-		}
-		else {
-			serialControls.printlnConsole("warning, current project " + project.getName() + " with cube side of " + project.getSide() +
-					" does not match connected device's cube side of " + protocolSerial.getCubeSide());
+		boolean streamed = false;
+		for(int i = 0; i < deviceGroup.getDeviceCount(); i++) {
+			ProtocolSerial device = deviceGroup.getDevice(i);
+			if(!device.isConnected())
+				continue;
+
+			if(device.getCubeSide() == project.getSide()) {
+				streamed = true;
+			}
+			else {
+				serialControls.printlnConsole("warning, current project " + project.getName() + " with cube side of " + project.getSide() +
+						" does not match connected device's cube side of " + device.getCubeSide() + getPortSuffix(i));
+			}
 		}
+		if(streamed)
+			serialControls.printlnConsole("streaming project " + project.getName());
 	}
 	public void endStreamingProject(Project project) {
-		if(serialControls == null || !protocolSerial.isConnected())
+		if(serialControls == null || !deviceGroup.isConnected())
 			return;
 
-		if(protocolSerial.getCubeSide() == project.getSide()) {
-			serialControls.printlnConsole("project stream ended");
+		for(int i = 0; i < deviceGroup.getDeviceCount(); i++) {
+			ProtocolSerial device = deviceGroup.getDevice(i);
+			if(device.isConnected() && device.getCubeSide() == project.getSide()) {
+				serialControls.printlnConsole("project stream ended");
+				return;
+			}
 		}
 	}
 
@@ -111,7 +122,7 @@ public class SerialInterface implements Runnable {
 	}
 
 	public boolean isConnected() {
-		return protocolSerial.isConnected();
+		return deviceGroup.isConnected();
 	}
 
 	@Override
@@ -121,30 +132,18 @@ public class SerialInterface implements Runnable {
 
 		serialControls.clearConsole();
 
-		if(serialPort != null) {
+		String[] ports = serialPort != null ? splitPorts(serialPort) : new String[0];
+		if(ports.length > 0) {
 			serialControls.connectedMode(false);
-			serialControls.printlnConsole("connecting to port '" + serialPort + "'...");
+			for(String port : ports)
+				serialControls.printlnConsole("connecting to port '" + port + "'...");
 
+			SerialStatus[] statuses = deviceGroup.connect(ports);
 			boolean connectedFlag = false;
-			switch (protocolSerial.initSerial(serialPort)) {
-				case CONNECTION_SUCCEEDED:
-					serialControls.printlnConsole("loaded cube side " + protocolSerial.getCubeSide());
-					serialControls.printlnConsole("number of color channels " + protocolSerial.getChannelCount());
-					serialControls.printlnConsole("channel resolution " + protocolSerial.getChannelSize() + " bits");
-					serialControls.printlnConsole("connected");
-					serialControls.connectedMode(true);
-					connectedFlag = true;
-					break;
-				case CONNECTION_FAILED:
-					serialControls.printlnConsole("connection failed");
-					break;
-				case CONNECTION_TIMEOUT:
-					serialControls.printlnConsole("connection timed out");
-					break;
-				case NOT_RESPONDING_PROPERLY:
-					serialControls.printlnConsole("received improper response");
-					break;
-			}
+			for(int i = 0; i < statuses.length; i++)
+				connectedFlag |= printConnectionStatus(i, statuses[i]);
+			if(connectedFlag)
+				serialControls.connectedMode(true);
 
 			try {
 				synchronized (this) {
@@ -155,15 +154,65 @@ public class SerialInterface implements Runnable {
 			catch(InterruptedException e) {}
 
 			if(connectedFlag) {
-				serialControls.printlnConsole("disconnected, a total of " + protocolSerial.getFailedFrames() + " failed frames were detected");
+				for(int i = 0; i < ports.length; i++) {
+					DeviceHealth health = deviceGroup.getHealth(i);
+					serialControls.printlnConsole("disconnected" + getPortSuffix(i) + ", a total of " + health.getDisplayedFrames() + " displayed, " +
+							health.getDroppedFrames() + " dropped and " + health.getFailedFrames() + " failed frames were detected");
+				}
 			}
 		}
 		else {
 			serialControls.printlnConsole("no serial port selected");
 		}
 
-		protocolSerial.terminateConnection();
+		deviceGroup.disconnect();
 
 		disconnect();
 	}
+	// returns true if the device is connected
+	private boolean printConnectionStatus(int device, SerialStatus status) {
+		ProtocolSerial protocolSerial = deviceGroup.getDevice(device);
+		if(deviceGroup.getDeviceCount() > 1)
+			serialControls.printlnConsole("port '" + deviceGroup.getPort(device) + "'");
+
+		switch (status) {
+			case CONNECTION_SUCCEEDED:
+				serialControls.printlnConsole("loaded cube side " + protocolSerial.getCubeSide());
+				serialControls.printlnConsole("number of color channels " + protocolSerial.getChannelCount());
+				serialControls.printlnConsole("channel resolution " + protocolSerial.getChannelSize() + " bits");
+				serialControls.printlnConsole("stream packet size " + protocolSerial.getStreamSize() + " bytes");
+				if(protocolSerial.isChecksumChecked())
+					serialControls.printlnConsole("stream packets checked with crc-16");
+				if(protocolSerial.getStreamWindowSize() > 0)
+					serialControls.printlnConsole("stream window " + protocolSerial.getStreamWindowSize() + " packets");
+				if(protocolSerial.isDatagramStreamed())
+					serialControls.printlnConsole("frames sent as udp datagrams");
+				if(protocolSerial.hasSerialSpeed())
+					serialControls.printlnConsole("serial speed " + protocolSerial.getSerialSpeed() + " baud");
+				serialControls.printlnConsole("connected");
+				return true;
+			case CONNECTION_FAILED:
+				serialControls.printlnConsole("connection failed");
+				break;
+			case CONNECTION_TIMEOUT:
+				serialControls.printlnConsole("connection timed out");
+				break;
+			case NOT_RESPONDING_PROPERLY:
+				serialControls.printlnConsole("received improper response");
+				break;
+		}
+		return false;
+	}
+	// names the port when streaming to more than one device
+	private String getPortSuffix(int device) {
+		return deviceGroup.getDeviceCount() > 1 ? " on port '" + deviceGroup.getPort(device) + "'" : "";
+	}
+	private static String[] splitPorts(String serialPort) {
+		List<String> ports = new ArrayList<>();
+		for(String port : serialPort.split(PORT_SEPARATOR)) {
+			if(!port.trim().isEmpty())
+				ports.add(port.trim());
+		}
+		return ports.toArray(new String[0]);
+	}
 }
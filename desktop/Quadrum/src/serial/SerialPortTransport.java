@@ -0,0 +1,76 @@
+/*
+ * SerialPortTransport.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+public class SerialPortTransport implements Transport {
+	private final SerialPort serialPort;
+	private int readTimeout = -1;	// last timeout set on the port
+
+	public SerialPortTransport(String port, int speed) {
+		serialPort = SerialPort.getCommPort(port);
+		serialPort.setComPortParameters(speed, 8, 1, 0);
+		serialPort.setComPortTimeouts(SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
+	}
+
+	@Override
+	public boolean open() {
+		return serialPort.openPort();
+	}
+	@Override
+	public void close() {
+		serialPort.closePort();
+	}
+
+	@Override
+	public int available() {
+		return serialPort.bytesAvailable();
+	}
+	@Override
+	public int read(byte[] buffer, int offset, int length, int timeout) {
+		if(timeout == 0) {	// a semi blocking read without timeout would block forever
+			int count = Math.min(serialPort.bytesAvailable(), length);
+			if(count <= 0)
+				return count;
+			return serialPort.readBytes(buffer, count, offset);
+		}
+
+		if(timeout != readTimeout) {
+			serialPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, timeout, 0);
+			readTimeout = timeout;
+		}
+		return serialPort.readBytes(buffer, length, offset);
+	}
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		serialPort.writeBytes(bytes, length, offset);
+	}
+
+	@Override
+	public boolean setSpeed(int speed) {
+		return serialPort.setBaudRate(speed);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * SocketTransport.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+// the protocol over a tcp connection, either connecting to host:port or on a socket that was accepted
+public class SocketTransport implements Transport {
+	private static final int CONNECT_TIMEOUT = 2000;
+
+	private final String host;
+	private final int port;
+	private Socket socket;
+	private InputStream input;
+	private OutputStream output;
+
+	public SocketTransport(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+	public SocketTransport(Socket socket) {
+		this.socket = socket;
+		host = null;
+		port = socket.getPort();
+	}
+
+	@Override
+	public boolean open() {
+		try {
+			if(socket == null) {
+				socket = new Socket();
+				socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			}
+			socket.setTcpNoDelay(true);	// protocol packets are small and answered right away
+			input = socket.getInputStream();
+			output = socket.getOutputStream();
+			return true;
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			close();
+			return false;
+		}
+	}
+	@Override
+	public void close() {
+		if(socket == null)
+			return;
+		try {
+			socket.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public int available() {
+		try {
+			return input.available();
+		}
+		catch(IOException e) {
+			return -1;
+		}
+	}
+	@Override
+	public int read(byte[] buffer, int offset, int length, int timeout) {
+		try {
+			if(timeout == 0) {	// a socket timeout of 0 blocks forever
+				int count = Math.min(input.available(), length);
+				if(count <= 0)
+					return count;
+				return input.read(buffer, offset, count);
+			}
+
+			socket.setSoTimeout(timeout);
+			return input.read(buffer, offset, length);
+		}
+		catch(SocketTimeoutException e) {
+			return 0;
+		}
+		catch(IOException e) {
+			return -1;	// closed
+		}
+	}
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		try {
+			output.write(bytes, offset, length);
+			output.flush();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public boolean setSpeed(int speed) {
+		return false;
+	}
+
+	// null until open
+	public InetSocketAddress getRemoteAddress() {
+		if(socket == null)
+			return null;
+		return (InetSocketAddress) socket.getRemoteSocketAddress();
+	}
+}
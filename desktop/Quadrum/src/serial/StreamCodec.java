@@ -0,0 +1,165 @@
+/*
+ * StreamCodec.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.util.Arrays;
+
+/*
+	Encoders for the voxel data carried by stream packets. Every encoder writes a stream of streamSize bytes at
+	position, clears whatever it leaves unused and returns the voxel data offset the stream ends at.
+
+	coded stream tokens:
+	0x00        end of stream, unused bytes are cleared so padding ends the stream
+	0x01..0x7F  literal run, that many bytes follow
+	10LLLLLL    zero run of L + 1 bytes
+	11LLLLLL    repeat run of L + 3 bytes, the repeated byte follows
+	L == 63 means the length continues in the next bytes, each one is added until a byte is not 0xFF
+*/
+public class StreamCodec {
+	private static final int MAX_LITERAL_LENGTH = 0x7F;
+	private static final int ZERO_RUN_TOKEN = 0x80, REPEAT_RUN_TOKEN = 0xC0;
+	private static final int EXTENDED_LENGTH = 0x3F, LENGTH_BYTE_MAX = 0xFF;
+	private static final int MIN_ZERO_RUN_LENGTH = 1, MIN_REPEAT_RUN_LENGTH = 3;
+	private static final int DELTA_RUN_HEADER_SIZE = 3, MAX_DELTA_RUN_LENGTH = 0xFF;	// offset (LE16), length
+
+	// format is one of the raw, compressed or coded stream start packets
+	public static int writeStream(int format, byte[] voxelData, int offset, byte[] stream, int position, int streamSize) {
+		if(format == ProtocolSerial.STREAM_START_CODED_PACKET)
+			return writeCodedStream(voxelData, offset, stream, position, streamSize);
+		else if(format == ProtocolSerial.STREAM_START_COMPRESSED_PACKET)
+			return writeCompressedStream(voxelData, offset, stream, position, streamSize);
+		return writeRawStream(voxelData, offset, stream, position, streamSize);
+	}
+	public static int writeRawStream(byte[] voxelData, int offset, byte[] stream, int position, int streamSize) {
+		int length = Math.min(streamSize, voxelData.length - offset);
+		System.arraycopy(voxelData, offset, stream, position, length);
+		Arrays.fill(stream, position + length, position + streamSize, (byte) 0);
+		return offset + length;
+	}
+	// byte pairs of value and count, understood by every device
+	public static int writeCompressedStream(byte[] voxelData, int offset, byte[] stream, int position, int streamSize) {
+		Arrays.fill(stream, position, position + streamSize, (byte) 0);
+		for(int i = position; i + 1 < position + streamSize && offset < voxelData.length; i += 2) {
+			byte value = voxelData[offset];
+			int count = getRunLength(voxelData, offset, Byte.MAX_VALUE);
+			stream[i] = value;
+			stream[i + 1] = (byte) count;
+			offset += count;
+		}
+		return offset;
+	}
+	public static int writeCodedStream(byte[] voxelData, int offset, byte[] stream, int position, int streamSize) {
+		int end = position + streamSize;
+		while(offset < voxelData.length && position < end) {
+			int runLength = getRunLength(voxelData, offset, voxelData.length);
+
+			if(voxelData[offset] == 0 || runLength >= MIN_REPEAT_RUN_LENGTH) {
+				boolean zeroRun = voxelData[offset] == 0;
+				int length = getFittingRunLength(runLength, zeroRun ? MIN_ZERO_RUN_LENGTH : MIN_REPEAT_RUN_LENGTH, end - position - (zeroRun ? 0 : 1));	// repeat runs need a byte for the value
+				if(length == 0)
+					break;
+				position = writeRunToken(stream, position, zeroRun ? ZERO_RUN_TOKEN : REPEAT_RUN_TOKEN, length - (zeroRun ? MIN_ZERO_RUN_LENGTH : MIN_REPEAT_RUN_LENGTH));
+				if(!zeroRun)
+					stream[position++] = voxelData[offset];
+				offset += length;
+			}
+			else {
+				// literals end where a run worth its own token starts
+				int length = 0;
+				int maxLength = Math.min(MAX_LITERAL_LENGTH, end - position - 1);
+				while(offset + length < voxelData.length && length < maxLength && voxelData[offset + length] != 0 &&
+						getRunLength(voxelData, offset + length, MIN_REPEAT_RUN_LENGTH) < MIN_REPEAT_RUN_LENGTH)
+					length++;
+				if(length == 0)
+					break;
+				stream[position++] = (byte) length;
+				System.arraycopy(voxelData, offset, stream, position, length);
+				position += length;
+				offset += length;
+			}
+		}
+		Arrays.fill(stream, position, end, (byte) 0);
+		return offset;
+	}
+	/*
+		Runs of bytes that differ from baseVoxelData as offset (LE16), length and bytes, unchanged gaps shorter than
+		a run header are sent along instead of starting a new run. Returns the offset of the next changed byte so a
+		stream never starts without changes, unless there are none at all.
+	*/
+	public static int writeDeltaStream(byte[] voxelData, byte[] baseVoxelData, int offset, byte[] stream, int position, int streamSize) {
+		int end = position + streamSize;
+		offset = getNextChange(voxelData, baseVoxelData, offset);
+		while(offset < voxelData.length && end - position > DELTA_RUN_HEADER_SIZE) {
+			int runEnd = offset + 1;
+			for(int j = runEnd; j < voxelData.length && j - offset < MAX_DELTA_RUN_LENGTH && j - runEnd < DELTA_RUN_HEADER_SIZE; j++) {
+				if(voxelData[j] != baseVoxelData[j])
+					runEnd = j + 1;
+			}
+
+			int length = Math.min(runEnd - offset, end - position - DELTA_RUN_HEADER_SIZE);	// the rest goes into the next stream
+			stream[position] = (byte) offset;
+			stream[position + 1] = (byte) (offset >> 8);
+			stream[position + 2] = (byte) length;
+			System.arraycopy(voxelData, offset, stream, position + DELTA_RUN_HEADER_SIZE, length);
+			position += DELTA_RUN_HEADER_SIZE + length;
+			offset = getNextChange(voxelData, baseVoxelData, offset + length);
+		}
+		Arrays.fill(stream, position, end, (byte) 0);
+		return offset;
+	}
+
+	private static int getRunLength(byte[] voxelData, int offset, int maxLength) {
+		int length = 1;
+		while(offset + length < voxelData.length && length < maxLength && voxelData[offset + length] == voxelData[offset])
+			length++;
+		return length;
+	}
+	private static int getNextChange(byte[] voxelData, byte[] baseVoxelData, int offset) {
+		while(offset < voxelData.length && voxelData[offset] == baseVoxelData[offset])
+			offset++;
+		return offset;
+	}
+	// longest run up to length that fits into lengthBytes bytes (token included), 0 if none does
+	private static int getFittingRunLength(int length, int minLength, int lengthBytes) {
+		if(lengthBytes < 1 || length < minLength)
+			return 0;
+		if(lengthBytes == 1)
+			return Math.min(length, minLength + EXTENDED_LENGTH - 1);
+		int extensionBytes = lengthBytes - 1;
+		return Math.min(length, minLength + EXTENDED_LENGTH + (LENGTH_BYTE_MAX * extensionBytes) - 1);
+	}
+	private static int writeRunToken(byte[] stream, int position, int token, int length) {
+		if(length < EXTENDED_LENGTH) {
+			stream[position++] = (byte) (token | length);
+			return position;
+		}
+		stream[position++] = (byte) (token | EXTENDED_LENGTH);
+		length -= EXTENDED_LENGTH;
+		for(; length >= LENGTH_BYTE_MAX; length -= LENGTH_BYTE_MAX)
+			stream[position++] = (byte) LENGTH_BYTE_MAX;
+		stream[position++] = (byte) length;
+		return position;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * StreamWindow.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.util.Arrays;
+
+/*
+	One frame transfer of a window stream. The voxel data is split into numbered chunks up front (each one raw
+	or compressed, whichever covers more bytes) which carry their offset so the device can write them in any
+	order. Chunks are sent in bursts of at most windowSize and sent again until the device acknowledges them.
+	Only the format and start of every chunk is kept, chunks are encoded again whenever they are sent.
+
+	When the device supports delta streams and the frame it displays is known, a transfer may instead consist of
+	delta chunks holding only the runs of bytes that differ from that frame, the device applies them to a copy of
+	its display buffer. Whichever kind of transfer needs fewer chunks is used.
+
+	chunk layout:
+	stream start packet, transfer id, sequence (LE16), offset (LE16), streamSize bytes, stream end packet,
+	checksum of everything before it
+	delta chunks hold the transfer's chunk count instead of an offset, see StreamCodec for the stream formats
+*/
+public class StreamWindow {
+	private static final int CHUNK_HEADER_SIZE = 6;
+	private static final int SELECTIVE_ACKNOWLEDGE_CHUNKS = 8;
+
+	private final int streamSize, windowSize, checksumSize;
+	private final boolean deltaStream;
+	private final int compressedFormat;	// coded streams if the device supports them
+
+	private int transferId = 0;
+	private byte[] voxelData = null;
+	private byte[] displayedVoxelData = null;	// what the device displays, null if unknown
+	private byte[] deltaBaseVoxelData = null;	// what the current transfer's delta chunks are based on
+
+	private int chunkCount = 0;
+	private int[] chunkFormats = new int[0], chunkOffsets = new int[0], deltaChunkOffsets = new int[0];
+	private boolean[] acknowledged = new boolean[0];
+	private int acknowledgedCount = 0;
+	private final byte[] stream;	// chunks are encoded here while splitting a transfer
+
+	public StreamWindow(int streamSize, int windowSize, int checksumSize, boolean deltaStream, boolean codedStream) {
+		this.streamSize = streamSize;
+		this.windowSize = windowSize;
+		this.checksumSize = checksumSize;
+		this.deltaStream = deltaStream;
+		compressedFormat = codedStream ? ProtocolSerial.STREAM_START_CODED_PACKET : ProtocolSerial.STREAM_START_COMPRESSED_PACKET;
+		stream = new byte[streamSize];
+	}
+
+	// starts a new transfer, chunks of the previous one still on their way are ignored by the device
+	protected void start(byte[] voxelData) {
+		transferId = (transferId + 1) & 0xFF;
+		this.voxelData = voxelData;
+
+		int maxChunks = (voxelData.length + streamSize - 1) / streamSize;	// every chunk covers at least as much as a raw one
+		if(chunkFormats.length < maxChunks) {
+			chunkFormats = new int[maxChunks];
+			chunkOffsets = new int[maxChunks];
+			deltaChunkOffsets = new int[maxChunks];
+			acknowledged = new boolean[maxChunks];
+		}
+
+		chunkCount = 0;
+		for(int offset = 0; offset < voxelData.length; chunkCount++) {
+			chunkOffsets[chunkCount] = offset;
+			int compressedEnd = StreamCodec.writeStream(compressedFormat, voxelData, offset, stream, 0, streamSize);
+			int rawEnd = Math.min(offset + streamSize, voxelData.length);
+			chunkFormats[chunkCount] = compressedEnd > rawEnd ? compressedFormat : ProtocolSerial.STREAM_START_RAW_PACKET;
+			offset = Math.max(compressedEnd, rawEnd);
+		}
+
+		deltaBaseVoxelData = null;
+		if(deltaStream && displayedVoxelData != null && displayedVoxelData.length == voxelData.length) {
+			int deltaChunkCount = 0;
+			int offset = 0;
+			do {	// a transfer without changes still needs a chunk to display
+				deltaChunkOffsets[deltaChunkCount++] = offset;
+				offset = StreamCodec.writeDeltaStream(voxelData, displayedVoxelData, offset, stream, 0, streamSize);
+			} while(offset < voxelData.length && deltaChunkCount < chunkCount);
+
+			if(offset >= voxelData.length && deltaChunkCount < chunkCount) {
+				deltaBaseVoxelData = displayedVoxelData;
+				chunkCount = deltaChunkCount;
+				System.arraycopy(deltaChunkOffsets, 0, chunkOffsets, 0, chunkCount);
+				Arrays.fill(chunkFormats, 0, chunkCount, ProtocolSerial.STREAM_START_DELTA_PACKET);
+			}
+		}
+
+		Arrays.fill(acknowledged, false);
+		acknowledgedCount = 0;
+	}
+
+	// the device displays the current transfer
+	protected void setDisplayed() {
+		displayedVoxelData = voxelData;
+	}
+	// the device may or may not display the current transfer
+	protected void clearDisplayed() {
+		displayedVoxelData = null;
+	}
+	// every chunk below firstMissing was received and bit i of selective tells if chunk firstMissing + 1 + i was
+	protected void acknowledge(int transferId, int firstMissing, int selective) {
+		if(voxelData == null || transferId != this.transferId)
+			return;
+
+		for(int i = 0; i < Math.min(firstMissing, chunkCount); i++)
+			setAcknowledged(i);
+		for(int i = 0; i < SELECTIVE_ACKNOWLEDGE_CHUNKS; i++) {
+			if((selective & (1 << i)) != 0 && firstMissing + 1 + i < chunkCount)
+				setAcknowledged(firstMissing + 1 + i);
+		}
+	}
+	private void setAcknowledged(int sequence) {
+		if(!acknowledged[sequence]) {
+			acknowledged[sequence] = true;
+			acknowledgedCount++;
+		}
+	}
+
+	protected boolean isComplete() {
+		return voxelData != null && acknowledgedCount == chunkCount;
+	}
+	protected byte[] getVoxelData() {
+		return voxelData;
+	}
+	protected int getTransferId() {
+		return transferId;
+	}
+	protected int getWindowSize() {
+		return windowSize;
+	}
+
+	// window packet and chunk count followed by the first chunks not acknowledged yet
+	protected byte[] getBurst() {
+		int burstChunks = 0;
+		for(int i = 0; i < chunkCount && burstChunks < windowSize; i++) {
+			if(!acknowledged[i])
+				burstChunks++;
+		}
+
+		int chunkSize = CHUNK_HEADER_SIZE + streamSize + 1 + checksumSize;
+		byte[] burst = new byte[2 + (burstChunks * chunkSize)];
+		burst[0] = (byte) ProtocolSerial.STREAM_WINDOW_PACKET;
+		burst[1] = (byte) burstChunks;
+
+		int position = 2;
+		for(int i = 0; i < chunkCount && position < burst.length; i++) {
+			if(acknowledged[i])
+				continue;
+			int format = chunkFormats[i];
+			int offset = format == ProtocolSerial.STREAM_START_DELTA_PACKET ? chunkCount : chunkOffsets[i];
+			burst[position] = (byte) format;
+			burst[position + 1] = (byte) transferId;
+			burst[position + 2] = (byte) i;
+			burst[position + 3] = (byte) (i >> 8);
+			burst[position + 4] = (byte) offset;
+			burst[position + 5] = (byte) (offset >> 8);
+			if(format == ProtocolSerial.STREAM_START_DELTA_PACKET)
+				StreamCodec.writeDeltaStream(voxelData, deltaBaseVoxelData, chunkOffsets[i], burst, position + CHUNK_HEADER_SIZE, streamSize);
+			else
+				StreamCodec.writeStream(format, voxelData, chunkOffsets[i], burst, position + CHUNK_HEADER_SIZE, streamSize);
+			burst[position + CHUNK_HEADER_SIZE + streamSize] = (byte) ProtocolSerial.STREAM_END_PACKET;
+			ProtocolSerial.writeChecksum(burst, position, CHUNK_HEADER_SIZE + streamSize + 1, checksumSize);
+			position += chunkSize;
+		}
+		return burst;
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Transport.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+/*
+	Byte link between the editor and a device. ProtocolSerial only talks to its device through one of these, so
+	the same protocol runs over serial ports, sockets and the in-memory pipe the tests use.
+*/
+public interface Transport {
+	boolean open();
+	void close();
+
+	// bytes that can be read without blocking
+	int available();
+	// blocks up to timeout milliseconds until anything arrived (not at all for 0), then reads at most length bytes
+	// into buffer from offset. Returns the number of bytes read, 0 on timeout and -1 once the link is closed
+	int read(byte[] buffer, int offset, int length, int timeout);
+	void write(byte[] bytes, int offset, int length);
+
+	// returns false if the link has no speed to set
+	boolean setSpeed(int speed);
+}
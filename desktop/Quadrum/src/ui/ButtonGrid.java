@@ -0,0 +1,94 @@
+/*
+ * ButtonGrid.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package ui;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+public class ButtonGrid {
+	private static final Color HOVERED_COLOR = new Color(1, 1, 1, 0.3),
+			PRESSED_COLOR = new Color(0, 0, 0, 0.3);
+
+	private final int count, border;	// count x count square buttons with border pixels between them
+
+	private float x = 0, y = 0, buttonSize = 0;
+
+	public ButtonGrid(int count, int border) {
+		this.count = count;
+		this.border = border;
+	}
+
+	public void setPosSize(float x, float y, float buttonSize) {
+		this.x = x;
+		this.y = y;
+		this.buttonSize = buttonSize;
+	}
+
+	public int getCount() {
+		return count;
+	}
+	public float getButtonX(int column) {
+		return x + (column * (buttonSize + border));
+	}
+	public float getButtonY(int row) {
+		return y + (row * (buttonSize + border));
+	}
+
+	// returns the column / row under the mouse or -1, includeBorder also counts the border right of / below every button
+	public int getColumn(float mouseX, boolean includeBorder) {
+		return getCell(mouseX - x, includeBorder);
+	}
+	public int getRow(float mouseY, boolean includeBorder) {
+		return getCell(mouseY - y, includeBorder);
+	}
+	private int getCell(float offset, boolean includeBorder) {
+		if(offset < 0 || buttonSize <= 0)
+			return -1;
+		float shiftSize = buttonSize + border;
+		int cell = (int) (offset / shiftSize);
+		if(cell >= count)
+			return -1;
+		if(!includeBorder && offset - (cell * shiftSize) >= buttonSize)
+			return -1;
+		return cell;
+	}
+
+	public void drawButton(GraphicsContext gc, int column, int row, Color color, ButtonState buttonState) {
+		float buttonX = getButtonX(column);
+		float buttonY = getButtonY(row);
+		gc.setFill(color);
+		gc.fillRect(buttonX, buttonY, buttonSize, buttonSize);
+		switch(buttonState) {
+			case HOVERED:
+				gc.setFill(HOVERED_COLOR);
+				gc.fillRect(buttonX, buttonY, buttonSize, buttonSize);
+				break;
+			case PRESSED:
+				gc.setFill(PRESSED_COLOR);
+				gc.fillRect(buttonX, buttonY, buttonSize, buttonSize);
+				break;
+		}
+	}
+}
@@ -59,8 +59,18 @@ public class DialogBoxes {
 		return RequestAnswer.CANCEL;
 	}
 
-	public static void errorSaveDialogBox(String projectName) {
-		error("Save Failed", "Failed to save project.", "Project: '" + projectName + "'");
+	public static void errorSaveDialogBox(String projectName, String reason) {
+		error("Save Failed", "Failed to save project.", "Project: '" + projectName + "'" + (reason != null ? "\n" + reason : ""));
+	}
+	public static void errorUnreadableFramesDialogBox(String projectName) {
+		error("Read Failed", "Some frames could not be read from the project file and are shown empty.",
+				"Project: '" + projectName + "'\nThe project can not be saved until these frames have been changed or removed.");
+	}
+	public static void errorExportDialogBox(String path) {
+		error("Export Failed", "Failed to export generated code.", "Path: '" + path + "'");
+	}
+	public static void errorExportProjectDialogBox(String path, String reason) {
+		error("Export Failed", "Failed to export project.", "Path: '" + path + "'" + (reason != null ? "\n" + reason : ""));
 	}
 	public static void errorOpenDialogBox(String projectPath) {
 		error("Open Failed", "Failed to open project path.", "Path: '" + projectPath + "'");
@@ -316,6 +316,12 @@ public class EditorController {
 		menuControls.saveProjectAction();
 	}
 	@FXML
+	private void exportVersion1Action() {
+		if(menuControls == null)
+			return;
+		menuControls.exportVersion1Action();
+	}
+	@FXML
 	private void undoAction() {
 		if(menuControls == null)
 			return;
@@ -405,6 +411,10 @@ public class EditorController {
 	private ComboBox<String> colorChannelsComboBox;
 	@FXML
 	private ComboBox<String> channelResolutionComboBox;
+	@FXML
+	private CheckBox compressCodeCheckBox;
+	@FXML
+	private CheckBox frameTableCheckBox;
 
 	@FXML
 	private void generateCodeAction() {
@@ -418,6 +428,12 @@ public class EditorController {
 			return;
 		codeGeneratorControls.copyCode();
 	}
+	@FXML
+	private void exportCodeAction() {
+		if(codeGeneratorControls == null)
+			return;
+		codeGeneratorControls.exportCode();
+	}
 
 	// non-fxml
 
@@ -479,10 +495,11 @@ public class EditorController {
 		projectControls.add(menuControls);
 
 		// code generator controls
-		codeGeneratorControls = new CodeGeneratorControls(projectManager,
+		codeGeneratorControls = new CodeGeneratorControls(projectManager, stage,
 				codeGeneratorAnchorPane, codeGeneratorText, codeGeneratorImageView,
 				codeGeneratorTextArea,
-				colorChannelsComboBox, channelResolutionComboBox);
+				colorChannelsComboBox, channelResolutionComboBox,
+				compressCodeCheckBox, frameTableCheckBox);
 		projectControls.add(codeGeneratorControls);
 
 		// serial controls
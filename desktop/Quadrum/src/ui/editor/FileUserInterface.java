@@ -24,6 +24,7 @@
 
 package ui.editor;
 
+import javafx.application.Platform;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import main.ProjectManager;
@@ -32,31 +33,86 @@ import java.io.File;
 
 public class FileUserInterface {
 	public static boolean saveProjectFileChooser(Project project, Stage stage) {
-		if(project == null || stage == null)
+		String path = getSavePath(project, stage);
+		if(path == null)
 			return false;
 
-		if(project.hasFilePath()) {
-			if(project.save())
-				return true;
-		}
-		else {
-			FileChooser fileChooser = new FileChooser();
-			fileChooser.setInitialFileName(project.getName() + "." + Project.FILE_EXTENSION);
+		if(project.save(path))
+			return true;
 
-			FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter(Project.FILE_TYPE_DESCRIPTION, "*." + Project.FILE_EXTENSION);
-			fileChooser.getExtensionFilters().add(extFilter);
+		DialogBoxes.errorSaveDialogBox(project.getName(), project.getSaveError());
+		return false;
+	}
+	// saves without blocking the platform thread, progress is shown in the window title and onFinished runs once done
+	public static void saveProjectInBackground(Project project, Stage stage, Runnable onFinished) {
+		String path = getSavePath(project, stage);
+		if(path == null)
+			return;
 
-			File file = fileChooser.showSaveDialog(stage);
+		String title = stage.getTitle();
+		project.saveInBackground(path, new Project.SaveListener() {
+			private int shownPercent = -1;
 
-			if(file == null)
-				return false;
+			@Override
+			public void progress(double fraction) {
+				int percent = (int) (fraction * 100);
+				if(percent == shownPercent)	// avoid flooding the platform thread
+					return;
+				shownPercent = percent;
+				Platform.runLater(() -> stage.setTitle(title + " - Saving '" + project.getName() + "' " + percent + "%"));
+			}
+			@Override
+			public void finished(boolean saved) {
+				Platform.runLater(() -> {
+					stage.setTitle(title);
+					if(!saved)
+						DialogBoxes.errorSaveDialogBox(project.getName(), project.getSaveError());
+					if(onFinished != null)
+						onFinished.run();
+				});
+			}
+		});
+	}
+	// returns the path to save project to, asking the user if the project has none yet, or null if cancelled
+	private static String getSavePath(Project project, Stage stage) {
+		if(project == null || stage == null)
+			return null;
 
-			if (project.save(file.getAbsolutePath()))
-				return true;
-		}
+		if(project.hasFilePath())
+			return project.getFilePath();
 
-		DialogBoxes.errorSaveDialogBox(project.getName());
-		return false;
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setInitialFileName(project.getName() + "." + Project.FILE_EXTENSION);
+
+		FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter(Project.FILE_TYPE_DESCRIPTION, "*." + Project.FILE_EXTENSION);
+		fileChooser.getExtensionFilters().add(extFilter);
+
+		File file = fileChooser.showSaveDialog(stage);
+
+		if(file == null)
+			return null;
+		return file.getAbsolutePath();
+	}
+	// writes a copy of the project in the zip based qu3d layout of older Quadrum versions
+	public static void exportVersion1FileChooser(Project project, Stage stage) {
+		if(project == null || stage == null)
+			return;
+
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setInitialFileName(project.getName() + "_v1." + Project.FILE_EXTENSION);
+
+		FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter(Project.FILE_TYPE_DESCRIPTION, "*." + Project.FILE_EXTENSION);
+		fileChooser.getExtensionFilters().add(extFilter);
+
+		File file = fileChooser.showSaveDialog(stage);
+
+		if(file == null)
+			return;
+
+		if(project.saveVersion1(file.getAbsolutePath()))
+			return;
+
+		DialogBoxes.errorExportProjectDialogBox(file.getAbsolutePath(), project.getSaveError());
 	}
 	public static void openProjectFileChooser(ProjectManager projectManager, Stage stage) {
 		if(stage == null)
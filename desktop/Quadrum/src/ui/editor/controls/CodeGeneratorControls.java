@@ -26,19 +26,27 @@ package ui.editor.controls;
 
 import codeGenerator.CodeGenerator;
 import javafx.collections.FXCollections;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TextArea;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.text.Text;
+import javafx.stage.FileChooser;
+import javafx.stage.Stage;
 import main.ProjectManager;
+import ui.editor.DialogBoxes;
 import ui.editor.EditorController;
 import java.awt.*;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.StringSelection;
+import java.io.File;
 
 public class CodeGeneratorControls implements ProjectControls {
+	private static final int PREVIEW_LENGTH = 16384;	// characters shown in codeGeneratorTextArea, laying out more makes the ui hang
+
 	private ProjectManager projectManager;
+	private Stage stage;
 
 	private AnchorPane codeGeneratorAnchorPane;
 	private Text codeGeneratorText;
@@ -47,12 +55,15 @@ public class CodeGeneratorControls implements ProjectControls {
 	private TextArea codeGeneratorTextArea;
 
 	private ComboBox<String> colorChannelsComboBox, channelResolutionComboBox;
+	private CheckBox compressCodeCheckBox, frameTableCheckBox;
 	
-	public CodeGeneratorControls(ProjectManager projectManager,
+	public CodeGeneratorControls(ProjectManager projectManager, Stage stage,
 								 AnchorPane codeGeneratorAnchorPane, Text codeGeneratorText, ImageView codeGeneratorImageView,
 								 TextArea codeGeneratorTextArea,
-								 ComboBox<String> colorChannelsComboBox, ComboBox<String> channelResolutionComboBox) {
+								 ComboBox<String> colorChannelsComboBox, ComboBox<String> channelResolutionComboBox,
+								 CheckBox compressCodeCheckBox, CheckBox frameTableCheckBox) {
 		this.projectManager = projectManager;
+		this.stage = stage;
 
 		this.codeGeneratorAnchorPane = codeGeneratorAnchorPane;
 		this.codeGeneratorText = codeGeneratorText;
@@ -62,6 +73,8 @@ public class CodeGeneratorControls implements ProjectControls {
 
 		this.colorChannelsComboBox = colorChannelsComboBox;
 		this.channelResolutionComboBox = channelResolutionComboBox;
+		this.compressCodeCheckBox = compressCodeCheckBox;
+		this.frameTableCheckBox = frameTableCheckBox;
 
 		codeGeneratorTextArea.setWrapText(true);
 
@@ -90,18 +103,50 @@ public class CodeGeneratorControls implements ProjectControls {
 		codeGeneratorAnchorPane.setDisable(nullProject);
 	}
 
+	private int getChannelCount() {
+		return colorChannelsComboBox.getSelectionModel().getSelectedIndex() + 1;
+	}
+	private int getChannelSize() {
+		return (int) Math.pow(2, channelResolutionComboBox.getSelectionModel().getSelectedIndex());
+	}
+	private boolean isCompressed() {
+		return compressCodeCheckBox.isSelected();
+	}
+	private boolean isFrameTable() {
+		return frameTableCheckBox.isSelected();
+	}
+
 	public void generateCode() {
 		if(projectManager.getCurrent() == null)
 			return;
 
-		int channelCount = colorChannelsComboBox.getSelectionModel().getSelectedIndex() + 1;
-		int channelSize = (int) Math.pow(2, channelResolutionComboBox.getSelectionModel().getSelectedIndex());
-
-		codeGeneratorTextArea.setText(CodeGenerator.getCodeString(projectManager.getCurrent(), channelCount, channelSize));
+		codeGeneratorTextArea.setText(CodeGenerator.getPreviewString(projectManager.getCurrent(), getChannelCount(), getChannelSize(), isCompressed(), isFrameTable(), PREVIEW_LENGTH));
 	}
 	public void copyCode() {
-		StringSelection selection = new StringSelection(codeGeneratorTextArea.getText());
+		if(projectManager.getCurrent() == null || codeGeneratorTextArea.getText().isEmpty())
+			return;
+
+		// the text area only holds a preview, so the full code is generated again
+		StringSelection selection = new StringSelection(CodeGenerator.getCodeString(projectManager.getCurrent(), getChannelCount(), getChannelSize(), isCompressed(), isFrameTable()));
 		Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
 		clipboard.setContents(selection, selection);
 	}
+	public void exportCode() {
+		if(projectManager.getCurrent() == null)
+			return;
+
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setInitialFileName(projectManager.getCurrent().getName() + "." + CodeGenerator.HEADER_FILE_EXTENSION);
+
+		FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter(CodeGenerator.HEADER_FILE_TYPE_DESCRIPTION, "*." + CodeGenerator.HEADER_FILE_EXTENSION);
+		fileChooser.getExtensionFilters().add(extFilter);
+
+		File file = fileChooser.showSaveDialog(stage);
+
+		if(file == null)
+			return;
+
+		if(!CodeGenerator.exportHeaderFile(projectManager.getCurrent(), getChannelCount(), getChannelSize(), isCompressed(), isFrameTable(), file.getAbsolutePath()))
+			DialogBoxes.errorExportDialogBox(file.getAbsolutePath());
+	}
 }
@@ -24,6 +24,7 @@
 
 package ui.editor.controls;
 
+import javafx.application.Platform;
 import javafx.event.Event;
 import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.MenuItem;
@@ -108,6 +109,11 @@ public class MenuControls implements ProjectControls {
 		undoMenuItem.setDisable(!projectManager.getCurrent().canUndo());
 		redoMenuItem.setDisable(!projectManager.getCurrent().canRedo());
 		gridCheckMenuItem.setSelected(projectManager.getCurrent().isGrid());
+
+		if(projectManager.getCurrent().hasNewUnreadableFrames()) {
+			String projectName = projectManager.getCurrent().getName();
+			Platform.runLater(() -> DialogBoxes.errorUnreadableFramesDialogBox(projectName));	// dialogs can not be shown during layout
+		}
 	}
 	boolean previouslyNullProject = false;	// keeps track if the last loaded project was null
 	private void setNullProject(boolean nullProject) {
@@ -143,7 +149,13 @@ public class MenuControls implements ProjectControls {
 	public void saveProjectAction() {
 		if(projectManager.getCurrent() == null)
 			return;
-		projectManager.getCurrent().execute(new SaveAction(stage));
+		projectManager.getCurrent().execute(new SaveAction(stage, this::updateLayout));	// refresh the save menu item once written
+	}
+	public void exportVersion1Action() {
+		if(projectManager.getCurrent() == null)
+			return;
+		projectManager.getCurrent().execute(null);	// execute null action to update layout, terminate animation etc.
+		FileUserInterface.exportVersion1FileChooser(projectManager.getCurrent(), stage);
 	}
 
 	public void undoAction() {
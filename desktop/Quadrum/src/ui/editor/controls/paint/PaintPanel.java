@@ -27,7 +27,6 @@ package ui.editor.controls.paint;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import project.Project;
-import project.Voxel;
 import java.util.ArrayList;
 
 public class PaintPanel {
@@ -129,7 +128,7 @@ public class PaintPanel {
 			return;
 		}
 
-		int minPlaneSize = (project.getSide() * Voxel.MIN_VOXEL_BUTTON_SIZE) + ((project.getSide() - 1) * Plane.VOXEL_BUTTON_BORDER);	// minimum side length (in pixels of every plane)
+		int minPlaneSize = (project.getSide() * Plane.MIN_VOXEL_BUTTON_SIZE) + ((project.getSide() - 1) * Plane.VOXEL_BUTTON_BORDER);	// minimum side length (in pixels of every plane)
 
 		float canvasHeight = (float) canvas.getHeight();
 		float canvasWidth = (float) canvas.getWidth();
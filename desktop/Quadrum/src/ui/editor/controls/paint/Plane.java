@@ -28,12 +28,15 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import main.Editor;
+import project.Frame;
 import project.Project;
-import project.Voxel;
+import project.VoxelColor;
 import project.userActions.specialActions.stackActions.VoxelColorAction;
+import ui.ButtonGrid;
 import ui.ButtonState;
 
 public class Plane {
+	public static final int MIN_VOXEL_BUTTON_SIZE = 15;
 	protected static final int VOXEL_BUTTON_BORDER = 2, STRING_BORDER = 13;
 	private static final Color PLANE_PREFIX_COLOR = Color.BLACK;
 	private static final String PLANE_PREFIX = "Plane ";
@@ -43,10 +46,12 @@ public class Plane {
 	private int yPlane;	// sets y position to modify in project frame voxels
 
 	private float x = 0, y = 0, size = 0;
+	private ButtonGrid voxelButtons;	// button (a, b) corresponds to voxel (a, yPlane, b)
 
 	public Plane(Project project, int yPlane) {
 		this.project = project;
 		this.yPlane = yPlane;
+		voxelButtons = new ButtonGrid(project.getSide(), VOXEL_BUTTON_BORDER);
 	}
 
 	protected void setPosSize(float x, float y, float size) {
@@ -55,28 +60,21 @@ public class Plane {
 		this.size = size;
 
 		float voxelButtonSize = (size - (VOXEL_BUTTON_BORDER * (project.getSide() - 1))) / project.getSide();
-		for (int b = 0; b < project.getSide(); b++)
-			for(int a = 0; a < project.getSide(); a++)
-				project.getFrame().getVoxel(a, yPlane, b).setButtonPosSize(a * (voxelButtonSize + VOXEL_BUTTON_BORDER) + x,
-						b * (voxelButtonSize + VOXEL_BUTTON_BORDER) + y,
-						voxelButtonSize);
+		voxelButtons.setPosSize(x, y, voxelButtonSize);
 	}
 
 	protected int mouseAction(PaintControls paintControls, int frameIndex, float mouseX, float mouseY, int previousVoxel) {
-		if(intersects(mouseX, mouseY)) {
-			for (int z = 0; z < project.getSide(); z++) {
-				for (int x = 0; x < project.getSide(); x++) {
-					if(project.getFrame().getVoxel(x, yPlane, z).intersects(mouseX, mouseY)) {
-						// execute action on this particular voxel if it was not the previous one
-						int currentVoxel = (x) + (yPlane * project.getSide()) + (z * (int) Math.pow(project.getSide(), 2));
-						if(previousVoxel != currentVoxel)
-							project.executeOnStack(new VoxelColorAction(paintControls, frameIndex, yPlane, project.getFrame().getVoxel(x, yPlane, z), project.getPaintColor()));
-						return currentVoxel;
-					}
-				}
-			}
-		}
-		return -1;
+		if(!intersects(mouseX, mouseY))
+			return -1;
+		int x = voxelButtons.getColumn(mouseX, false);
+		int z = voxelButtons.getRow(mouseY, false);
+		if(x < 0 || z < 0)
+			return -1;
+		// execute action on this particular voxel if it was not the previous one
+		int currentVoxel = x + (yPlane * project.getSide()) + (z * project.getSide() * project.getSide());
+		if(previousVoxel != currentVoxel)
+			project.executeOnStack(new VoxelColorAction(paintControls, frameIndex, yPlane, project.getFrame().getVoxel(x, yPlane, z), project.getPaintArgb()));
+		return currentVoxel;
 	}
 
 	private boolean intersects(float mouseX, float mouseY) {
@@ -84,25 +82,22 @@ public class Plane {
 	}
 
 	protected void draw(GraphicsContext gc, float mouseX, float mouseY, boolean mousePressedState) {
+		int hoveredX = -1, hoveredZ = -1;
+		if(intersects(mouseX, mouseY)) {
+			hoveredX = voxelButtons.getColumn(mouseX, false);
+			hoveredZ = voxelButtons.getRow(mouseY, false);
+		}
+		ButtonState hoveredState = mousePressedState ? ButtonState.PRESSED : ButtonState.HOVERED;
+
+		Frame frame = project.getFrame();
 		for (int z = 0; z < project.getSide(); z++) {
 			for (int x = 0; x < project.getSide(); x++) {
-				Voxel voxel = project.getFrame().getVoxel(x, yPlane, z);
-				voxel.drawButton(gc, getButtonState(voxel, mouseX, mouseY, mousePressedState));
+				ButtonState buttonState = (x == hoveredX && z == hoveredZ) ? hoveredState : ButtonState.NEUTRAL;
+				voxelButtons.drawButton(gc, x, z, VoxelColor.toColor(frame.getRgb(x, yPlane, z)), buttonState);
 			}
 		}
 		gc.setFill(PLANE_PREFIX_COLOR);
 		gc.setFont(TEXT_FONT);
 		gc.fillText(PLANE_PREFIX + (yPlane + 1), x, y + size + STRING_BORDER);
 	}
-	private ButtonState getButtonState(Voxel voxel, float mouseX, float mouseY, boolean mousePressedState) {
-		ButtonState result = ButtonState.NEUTRAL;
-		if(intersects(mouseX, mouseY)) {
-			if(voxel.intersects(mouseX, mouseY)) {
-				result = ButtonState.HOVERED;
-				if(mousePressedState)
-					result = ButtonState.PRESSED;
-			}
-		}
-		return result;
-	}
 }
@@ -32,6 +32,7 @@ import matrixAlgebra.Vec3;
 import project.Frame;
 import project.Project;
 import project.Voxel;
+import project.VoxelColor;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -40,7 +41,7 @@ public class SimulatorPanel {
 	private static final float MOUSE_ANGLE_SENSITIVITY = 0.01f,
 			VOXEL_SPACING_SIZE_RATIO = 0.3f;
 
-	private static final int CUBE_BORDER = 50, MIN_VOXEL_SPACING = 30;
+	private static final int CUBE_BORDER = 50, MIN_VOXEL_SPACING = 30, MIN_VOXEL_SIZE = 8;
 
 	private static final Color GRID_COLOR = new Color(0.725490196f, 0.725490196f, 0.725490196f, 1.0f);
 	private static final float GRID_LINE_WIDTH = 1.0f;
@@ -58,6 +59,7 @@ public class SimulatorPanel {
 
 	private float outsetMouseX = 0, outsetMouseY = 0;
 	private Vec3[][][] voxelVectors = null;
+	private float voxelSize = MIN_VOXEL_SIZE;
 
 	private ArrayList<GimbalVector> gimbalVectors = new ArrayList(GIMBAL_VECTORS_SIZE);
 
@@ -114,9 +116,8 @@ public class SimulatorPanel {
 		float voxelSpacing = (maxSideLength - (2 * CUBE_BORDER)) / (float) (project.getSide() - 1);
 		voxelSpacing = Math.max(voxelSpacing, MIN_VOXEL_SPACING);
 
-		float voxelSize = voxelSpacing * VOXEL_SPACING_SIZE_RATIO;
-		voxelSize = Math.max(voxelSize, Voxel.MIN_VOXEL_SIZE);
-		Voxel.setVoxelSize(voxelSize);
+		voxelSize = voxelSpacing * VOXEL_SPACING_SIZE_RATIO;
+		voxelSize = Math.max(voxelSize, MIN_VOXEL_SIZE);
 
 		// voxel position computation
 
@@ -185,6 +186,7 @@ public class SimulatorPanel {
 
 		drawGimbal(gc);
 
+		int[] voxels = frame.copyVoxels();
 		for (int x = 0; x < project.getSide(); x++) {
 			for (int y = 0; y < project.getSide(); y++) {
 				for (int z = 0; z < project.getSide(); z++) {
@@ -196,11 +198,17 @@ public class SimulatorPanel {
 					if(backwardsSortZ)
 						sortedZ = project.getSide() - 1 - z;
 
-					frame.getVoxel(sortedX, sortedY, sortedZ).draw(gc, centerX, centerY, voxelVectors[sortedX][sortedY][sortedZ]);
+					drawVoxel(gc, voxels[frame.getVoxelIndex(sortedX, sortedY, sortedZ)], centerX, centerY, voxelVectors[sortedX][sortedY][sortedZ]);
 				}
 			}
 		}
 	}
+	private void drawVoxel(GraphicsContext gc, int rgb, float centerX, float centerY, Vec3 position) {
+		if(rgb == Voxel.INVISIBLE_RGB)
+			return;
+		gc.setFill(VoxelColor.toColor(rgb));
+		gc.fillOval(centerX + position.get(0) - (voxelSize / 2), centerY - position.get(1) - (voxelSize / 2), voxelSize, voxelSize);
+	}
 	private void drawGrid(GraphicsContext gc, float centerX, float centerY) {
 		gc.setStroke(GRID_COLOR);
 		gc.setLineWidth(GRID_LINE_WIDTH);
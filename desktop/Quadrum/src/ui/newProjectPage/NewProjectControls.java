@@ -31,7 +31,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import main.ProjectManager;
 import project.Project;
-import project.Voxel;
+import ui.ButtonGrid;
 import ui.ButtonState;
 
 public class NewProjectControls {
@@ -48,7 +48,7 @@ public class NewProjectControls {
 	private boolean mousePressedState = false;
 	private int hoverSide = -1;
 
-	private Voxel[][] voxelButtons = new Voxel[MAX_SIDE][MAX_SIDE];
+	private ButtonGrid sideButtons = new ButtonGrid(MAX_SIDE, BUTTON_BORDER);
 
 	private ProjectManager projectManager;
 	private Canvas canvas;
@@ -61,10 +61,6 @@ public class NewProjectControls {
 		this.projectNameTextField = projectNameTextField;
 		this.sideText = sideText;
 
-		for(int x = 0; x < MAX_SIDE; x++)
-			for(int y = 0; y < MAX_SIDE; y++)
-				voxelButtons[x][y] = new Voxel();
-
 		setSelectedSide(START_SIDE);
 		projectNameTextField.setPromptText(Project.DEFAULT_PROJECT_NAME);
 	}
@@ -88,16 +84,12 @@ public class NewProjectControls {
 	}
 	private void mouseState(float mouseX, float mouseY, boolean mousePressedState) {
 		this.mousePressedState = mousePressedState;
-		for(int x = 0; x < MAX_SIDE; x++) {
-			for (int y = 0; y < MAX_SIDE; y++) {
-				if(voxelButtons[x][y].intersectsWithBorder(mouseX, mouseY, BUTTON_BORDER)) {
-					setHoverSide(Math.max(x + 1, MAX_SIDE - y));
-					draw();
-					return;
-				}
-			}
-		}
-		setHoverSide(-1);
+		int x = sideButtons.getColumn(mouseX, true);
+		int y = sideButtons.getRow(mouseY, true);
+		if(x >= 0 && y >= 0)
+			setHoverSide(Math.max(x + 1, MAX_SIDE - y));
+		else
+			setHoverSide(-1);
 		draw();
 	}
 
@@ -113,20 +105,7 @@ public class NewProjectControls {
 		float topY = centerY - (size / 2);
 
 		float buttonSize = (size - ((MAX_SIDE - 1) * BUTTON_BORDER)) / MAX_SIDE;
-		float shiftSize = buttonSize + BUTTON_BORDER;
-
-		for(int x = 0; x < MAX_SIDE; x++) {
-			for(int y = 0; y < MAX_SIDE; y++) {
-				float buttonX = leftX + (shiftSize * x);
-				float buttonY = topY + (shiftSize * y);
-				voxelButtons[x][y].setButtonPosSize(buttonX, buttonY, buttonSize);
-
-				if(x < selectedSide && (MAX_SIDE - y - 1) < selectedSide)
-					voxelButtons[x][y].setColor(SELECTED_BUTTON_COLOR);
-				else
-					voxelButtons[x][y].setColor(NON_SELECTED_BUTTON_COLOR);
-			}
-		}
+		sideButtons.setPosSize(leftX, topY, buttonSize);
 
 		draw();
 	}
@@ -143,7 +122,10 @@ public class NewProjectControls {
 					else
 						buttonState = ButtonState.HOVERED;
 				}
-				voxelButtons[x][y].drawButton(gc, buttonState);
+				Color buttonColor = NON_SELECTED_BUTTON_COLOR;
+				if(x < selectedSide && (MAX_SIDE - y - 1) < selectedSide)
+					buttonColor = SELECTED_BUTTON_COLOR;
+				sideButtons.drawButton(gc, x, y, buttonColor, buttonState);
 			}
 		}
 	}
@@ -0,0 +1,187 @@
+/*
+ * LoopbackCube.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/*
+	Stand-in for a network cube on this computer. Listens for the editor on a tcp port and takes datagram streams
+	on the udp port of the same number, every connection is answered by a VirtualCube of its own, one at a time.
+	Connect to it with localhost:port in the custom port field.
+*/
+public class LoopbackCube implements Runnable {
+	private static final int STREAM_SIZE = 1024, STREAM_WINDOW = 32;	// a network cube is not limited by a uart buffer
+	private static final int CUBE_CHECK_PERIOD = 10;
+
+	private final int cubeSide, channelCount, channelSize;
+	private final int requestedPort;
+	private int features = VirtualCube.ALL_FEATURES;
+
+	private ServerSocket serverSocket = null;
+	private DatagramSocket datagramSocket = null;
+	private Thread thread = null;
+	private volatile boolean running = false;
+
+	private volatile VirtualCube cube = null;	// answering the connected editor
+	private Transport cubeTransport = null;
+
+	// port 0 picks a free one
+	public LoopbackCube(int port, int cubeSide, int channelCount, int channelSize) {
+		this.requestedPort = port;
+		this.cubeSide = cubeSide;
+		this.channelCount = channelCount;
+		this.channelSize = channelSize;
+	}
+
+	// features to advertise, call before start
+	public void setFeatures(int features) {
+		this.features = features;
+	}
+	public boolean start() {
+		if(thread != null)
+			return true;
+		try {
+			InetAddress loopback = InetAddress.getLoopbackAddress();
+			serverSocket = new ServerSocket(requestedPort, 1, loopback);
+			datagramSocket = new DatagramSocket(new InetSocketAddress(loopback, serverSocket.getLocalPort()));
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			closeServerSocket();
+			return false;
+		}
+
+		running = true;
+		thread = new Thread(this);
+		thread.start();
+		return true;
+	}
+	// ends the current connection like a cube calling terminate and stops listening
+	public void terminate() {
+		if(thread == null)
+			return;
+
+		running = false;
+		closeServerSocket();	// ends a waiting accept
+		try {
+			thread.join();
+		}
+		catch(InterruptedException e) {
+			e.printStackTrace();
+		}
+		thread = null;
+
+		if(cube != null) {
+			cube.terminate();
+			cubeTransport.close();
+		}
+		cube = null;
+		cubeTransport = null;
+		datagramSocket.close();
+	}
+
+	public int getPort() {
+		return serverSocket != null ? serverSocket.getLocalPort() : requestedPort;
+	}
+	// null while no editor is connected
+	public VirtualCube getCube() {
+		return cube;
+	}
+
+	@Override
+	public void run() {
+		while(running) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			}
+			catch(IOException e) {
+				break;	// closed by terminate
+			}
+
+			Transport transport = new SocketTransport(socket);
+			if(!transport.open())
+				continue;
+			VirtualCube connectedCube = new VirtualCube(transport, cubeSide, channelCount, channelSize);
+			connectedCube.setFeatures(features);
+			connectedCube.setStreamLimits(STREAM_SIZE, STREAM_WINDOW);
+			connectedCube.setDatagramSocket(datagramSocket);
+			cubeTransport = transport;
+			cube = connectedCube;
+			connectedCube.start();
+
+			while(running && connectedCube.isRunning()) {
+				try {
+					Thread.sleep(CUBE_CHECK_PERIOD);
+				}
+				catch(InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+			if(!running)
+				break;	// terminate still has to tell the editor
+
+			// the editor disconnected
+			transport.close();
+			cube = null;
+			cubeTransport = null;
+		}
+	}
+	private void closeServerSocket() {
+		try {
+			if(serverSocket != null)
+				serverSocket.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// arguments: port, cube side, channel count and channel size, runs until enter is pressed
+	public static void main(String[] args) {
+		if(args.length < 4) {
+			System.out.println("usage: LoopbackCube port cubeSide channelCount channelSize");
+			return;
+		}
+
+		LoopbackCube loopbackCube = new LoopbackCube(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+				Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		if(!loopbackCube.start())
+			return;
+		System.out.println("listening on localhost:" + loopbackCube.getPort());
+		try {
+			System.in.read();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		loopbackCube.terminate();
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * PipeTransport.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.util.Random;
+
+/*
+	In-memory link between the editor and a VirtualCube, one end each. The link can act like a serial line:
+	bytes take the time their speed needs to get through one after another, arrive latency microseconds later
+	and have bits flipped at bitErrorRate. Bytes read at another speed than they were sent at arrive garbled,
+	as they would on a serial line.
+*/
+public class PipeTransport implements Transport {
+	private final BytePipe input, output;
+	private volatile int speed = 0;
+
+	private PipeTransport(BytePipe input, BytePipe output) {
+		this.input = input;
+		this.output = output;
+	}
+	// speedSimulated makes the link as slow as the speed its ends have set
+	public static PipeTransport[] createPair(boolean speedSimulated, long latency, double bitErrorRate) {
+		BytePipe forward = new BytePipe(speedSimulated, latency, bitErrorRate);
+		BytePipe backward = new BytePipe(speedSimulated, latency, bitErrorRate);
+		return new PipeTransport[] {new PipeTransport(backward, forward), new PipeTransport(forward, backward)};
+	}
+
+	@Override
+	public boolean open() {
+		return !input.isClosed();
+	}
+	@Override
+	public void close() {
+		input.close();
+		output.close();
+	}
+
+	@Override
+	public int available() {
+		return input.available();
+	}
+	@Override
+	public int read(byte[] buffer, int offset, int length, int timeout) {
+		try {
+			return input.read(buffer, offset, length, timeout, speed);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return 0;
+		}
+	}
+	@Override
+	public void write(byte[] bytes, int offset, int length) {
+		output.write(bytes, offset, length, speed);
+	}
+
+	@Override
+	public boolean setSpeed(int speed) {
+		this.speed = speed;
+		return true;
+	}
+
+	// changes the bit error rate of both directions of the pair, for bytes sent from now on
+	public void setBitErrorRate(double bitErrorRate) {
+		input.setBitErrorRate(bitErrorRate);
+		output.setBitErrorRate(bitErrorRate);
+	}
+}
+
+// one direction of a pipe, bytes are kept with the time they arrive at and the speed they were sent at
+class BytePipe {
+	private static final int BITS_PER_BYTE = 10;	// start and stop bit
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int GARBLED_BYTE_MASK = 0x5A;
+
+	private final boolean speedSimulated;
+	private final long latency;	// nanoseconds
+	private volatile double bitErrorRate;
+	private final Random random = new Random();
+
+	private byte[] bytes = new byte[INITIAL_CAPACITY];
+	private long[] arrivalTimes = new long[INITIAL_CAPACITY];
+	private int[] speeds = new int[INITIAL_CAPACITY];
+	private int head = 0, count = 0;
+	private long lineFreeTime = 0;	// when the last byte sent has left
+	private boolean closed = false;
+
+	public BytePipe(boolean speedSimulated, long latency, double bitErrorRate) {
+		this.speedSimulated = speedSimulated;
+		this.latency = latency * 1000;
+		this.bitErrorRate = bitErrorRate;
+	}
+
+	public synchronized void write(byte[] data, int offset, int length, int speed) {
+		if(closed)
+			return;
+		if(count + length > bytes.length)
+			grow(count + length);
+
+		long time = System.nanoTime();
+		long byteTime = speedSimulated && speed > 0 ? (BITS_PER_BYTE * 1_000_000_000L) / speed : 0;
+		for(int i = 0; i < length; i++) {
+			lineFreeTime = Math.max(lineFreeTime, time) + byteTime;
+			int index = (head + count) % bytes.length;
+			bytes[index] = flipBits(data[offset + i]);
+			arrivalTimes[index] = lineFreeTime + latency;
+			speeds[index] = speed;
+			count++;
+		}
+		notifyAll();
+	}
+	public synchronized int read(byte[] buffer, int offset, int length, int timeout, int speed) throws InterruptedException {
+		long deadline = System.nanoTime() + timeout * 1_000_000L;
+		while(getArrivedCount(1) == 0) {
+			if(closed)
+				return -1;
+			long time = System.nanoTime();
+			long wait = deadline - time;
+			if(count > 0)
+				wait = Math.min(wait, arrivalTimes[head] - time);	// wake up when the next byte arrives
+			if(wait <= 0 && time >= deadline)
+				return 0;
+			wait(Math.max(wait / 1_000_000, 0), (int) Math.max(wait % 1_000_000, 1));
+		}
+
+		int readCount = getArrivedCount(length);
+		for(int i = 0; i < readCount; i++) {
+			byte value = bytes[head];
+			if(speedSimulated && speeds[head] != speed)
+				value ^= GARBLED_BYTE_MASK;
+			buffer[offset + i] = value;
+			head = (head + 1) % bytes.length;
+			count--;
+		}
+		return readCount;
+	}
+	public void setBitErrorRate(double bitErrorRate) {
+		this.bitErrorRate = bitErrorRate;
+	}
+	public synchronized int available() {
+		return getArrivedCount(count);
+	}
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	// bytes that have arrived, counted up to limit
+	private int getArrivedCount(int limit) {
+		long time = System.nanoTime();
+		int arrived = 0;
+		while(arrived < Math.min(count, limit) && arrivalTimes[(head + arrived) % bytes.length] <= time)
+			arrived++;
+		return arrived;
+	}
+	private byte flipBits(byte value) {
+		if(bitErrorRate <= 0)
+			return value;
+		for(int i = 0; i < Byte.SIZE; i++) {
+			if(random.nextDouble() < bitErrorRate)
+				value ^= 1 << i;
+		}
+		return value;
+	}
+	private void grow(int capacity) {
+		int newCapacity = Math.max(bytes.length * 2, capacity);
+		byte[] newBytes = new byte[newCapacity];
+		long[] newArrivalTimes = new long[newCapacity];
+		int[] newSpeeds = new int[newCapacity];
+		for(int i = 0; i < count; i++) {
+			int index = (head + i) % bytes.length;
+			newBytes[i] = bytes[index];
+			newArrivalTimes[i] = arrivalTimes[index];
+			newSpeeds[i] = speeds[index];
+		}
+		bytes = newBytes;
+		arrivalTimes = newArrivalTimes;
+		speeds = newSpeeds;
+		head = 0;
+	}
+}
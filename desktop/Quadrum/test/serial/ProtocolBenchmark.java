@@ -0,0 +1,219 @@
+/*
+ * ProtocolBenchmark.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import project.Frame;
+import project.VoxelDataCache;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+	Streams frames from a ProtocolSerial to a VirtualCube over a simulated serial line for every feature set and
+	bit error rate below and prints how each run fared, so protocol changes can be measured without a cube
+	attached. Bits only get flipped once connected, a garbled handshake leaves the cube waiting for the rest
+	of it until the user connects again. Every frame the cube displays is compared with the frames that were queued, one that was never
+	queued is counted as garbage. Exits with 1 if a run did not pass, see Run.isPassed. ProtocolSerialTest
+	checks the same runs automatically.
+
+	usage: ProtocolBenchmark [cube side] [channel count] [channel size] [frames] [frame period in milliseconds]
+	lowering the frame period until frames fail shows the frame rate each feature set sustains
+*/
+public class ProtocolBenchmark {
+	static final int[] FEATURE_SETS = {
+			0,	// stop and wait, as older cubes
+			VirtualCube.CHECKSUM_FEATURE,
+			VirtualCube.STREAM_WINDOW_FEATURE,
+			VirtualCube.STREAM_WINDOW_FEATURE | VirtualCube.CHECKSUM_FEATURE,
+			VirtualCube.STREAM_WINDOW_FEATURE | VirtualCube.CHECKSUM_FEATURE | VirtualCube.DELTA_STREAM_FEATURE,
+			VirtualCube.STREAM_WINDOW_FEATURE | VirtualCube.CHECKSUM_FEATURE | VirtualCube.DELTA_STREAM_FEATURE | VirtualCube.CODED_STREAM_FEATURE
+	};
+	static final double[] BIT_ERROR_RATES = {0, 1e-4, 3e-4};
+	private static final long LINK_LATENCY = 200;	// microseconds
+	private static final int DEFAULT_CUBE_SIDE = 8, DEFAULT_CHANNEL_COUNT = 3, DEFAULT_CHANNEL_SIZE = 8,
+			DEFAULT_FRAMES = 60, DEFAULT_FRAME_PERIOD = 80;
+	private static final long FIRST_FRAME_DELAY = 50, RESULT_WAIT = 5000;	// milliseconds
+	private static final int EMPTY_FRAME_INTERVAL = 3;	// every third frame is all black, these compress well
+	private static final long FRAME_SEED = 7;
+
+	private final int cubeSide, channelCount, channelSize;
+	private final List<Frame> frames = new ArrayList<>();
+	private final Set<ByteBuffer> queuedVoxelData = new HashSet<>();	// and the black frame a cube starts with
+	private FrameQueuePolicy frameQueuePolicy = FrameQueuePolicy.BLOCK;
+
+	public ProtocolBenchmark(int cubeSide, int channelCount, int channelSize, int frameCount) {
+		this.cubeSide = cubeSide;
+		this.channelCount = channelCount;
+		this.channelSize = channelSize;
+
+		Random random = new Random(FRAME_SEED);
+		for(int i = 0; i < frameCount; i++) {
+			Frame frame = new Frame(cubeSide);
+			if(i % EMPTY_FRAME_INTERVAL != 0) {
+				for(int x = 0; x < cubeSide; x++) {
+					for(int y = 0; y < cubeSide; y++) {
+						for(int z = 0; z < cubeSide; z++)
+							frame.setRgb(x, y, z, random.nextInt());
+					}
+				}
+			}
+			frames.add(frame);
+			queuedVoxelData.add(ByteBuffer.wrap(VoxelDataCache.getVoxelData(frame, channelCount, channelSize)));
+		}
+		queuedVoxelData.add(ByteBuffer.wrap(new byte[Frame.getVoxelDataSize(cubeSide, channelCount, channelSize)]));
+	}
+
+	public int getFrameCount() {
+		return frames.size();
+	}
+	// BLOCK by default, with DROP frames the queue can not take in time are dropped
+	public void setFrameQueuePolicy(FrameQueuePolicy frameQueuePolicy) {
+		this.frameQueuePolicy = frameQueuePolicy;
+	}
+
+	public Run run(int features, double bitErrorRate, int framePeriod) {
+		PipeTransport[] link = PipeTransport.createPair(true, LINK_LATENCY, 0);
+		VirtualCube cube = new VirtualCube(link[1], cubeSide, channelCount, channelSize);
+		cube.setFeatures(features);
+		AtomicInteger garbageFrames = new AtomicInteger();
+		cube.setDisplayListener(voxelData -> {
+			if(!queuedVoxelData.contains(ByteBuffer.wrap(voxelData)))
+				garbageFrames.incrementAndGet();
+		});
+		cube.start();
+
+		ProtocolSerial protocolSerial = new ProtocolSerial();
+		protocolSerial.setFrameQueuePolicy(frameQueuePolicy);
+		SerialStatus status = protocolSerial.initSerial(link[0]);
+		if(status != SerialStatus.CONNECTION_SUCCEEDED) {
+			cube.terminate();
+			protocolSerial.terminateConnection();
+			return new Run(features, bitErrorRate, status);
+		}
+		link[0].setBitErrorRate(bitErrorRate);
+
+		long startTime = System.currentTimeMillis() + FIRST_FRAME_DELAY;
+		for(int i = 0; i < frames.size(); i++)
+			protocolSerial.queueFrame(frames.get(i), startTime + ((long) i * framePeriod));
+		long endTime = System.currentTimeMillis() + RESULT_WAIT;
+		while(protocolSerial.isConnected() && System.currentTimeMillis() < endTime &&
+				protocolSerial.getDisplayedFrames() + protocolSerial.getFailedFrames() + protocolSerial.getDroppedFrames() < frames.size()) {
+			try {
+				Thread.sleep(1);
+			}
+			catch(InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+
+		Run run = new Run(features, bitErrorRate, status);
+		run.time = System.currentTimeMillis() - startTime;
+		run.connected = protocolSerial.isConnected();
+		run.displayedFrames = protocolSerial.getDisplayedFrames();
+		run.failedFrames = protocolSerial.getFailedFrames();
+		run.droppedFrames = protocolSerial.getDroppedFrames();
+		run.corruptedPackets = protocolSerial.getCorruptedPackets();
+		run.garbageFrames = garbageFrames.get();
+
+		protocolSerial.terminateConnection();
+		cube.terminate();
+		return run;
+	}
+
+	// counts of a single run, taken once every queued frame was accounted for or RESULT_WAIT ran out
+	public static class Run {
+		private final int features;
+		private final double bitErrorRate;
+		private final SerialStatus status;
+		private boolean connected = false;
+		private int displayedFrames, failedFrames, droppedFrames, corruptedPackets, garbageFrames;
+		private long time;	// milliseconds from the first frame's display time until the counts were taken
+
+		private Run(int features, double bitErrorRate, SerialStatus status) {
+			this.features = features;
+			this.bitErrorRate = bitErrorRate;
+			this.status = status;
+		}
+
+		public boolean isConnected() {
+			return connected;
+		}
+		public int getDisplayedFrames() {
+			return displayedFrames;
+		}
+		public int getFailedFrames() {
+			return failedFrames;
+		}
+		public int getDroppedFrames() {
+			return droppedFrames;
+		}
+		public int getCorruptedPackets() {
+			return corruptedPackets;
+		}
+		public int getGarbageFrames() {
+			return garbageFrames;
+		}
+		// false if the connection was lost or the cube displayed garbage despite checksums, without them
+		// corrupted packets are displayed as they are
+		public boolean isPassed() {
+			return connected && ((features & VirtualCube.CHECKSUM_FEATURE) == 0 || garbageFrames == 0);
+		}
+
+		public String getName() {
+			return String.format("features 0x%02X ber %.0e", features, bitErrorRate);
+		}
+		@Override
+		public String toString() {
+			if(status != SerialStatus.CONNECTION_SUCCEEDED)
+				return getName() + " " + status;
+			return String.format("%s displayed %d failed %d dropped %d corrupted %d garbage %d %s in %d ms",
+					getName(), displayedFrames, failedFrames, droppedFrames, corruptedPackets, garbageFrames,
+					connected ? "connected" : "disconnected", time);
+		}
+	}
+
+	public static void main(String[] args) {
+		int cubeSide = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CUBE_SIDE;
+		int channelCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CHANNEL_COUNT;
+		int channelSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CHANNEL_SIZE;
+		int frameCount = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_FRAMES;
+		int framePeriod = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_FRAME_PERIOD;
+
+		ProtocolBenchmark benchmark = new ProtocolBenchmark(cubeSide, channelCount, channelSize, frameCount);
+		boolean passed = true;
+		for(int features : FEATURE_SETS) {
+			for(double bitErrorRate : BIT_ERROR_RATES) {
+				Run run = benchmark.run(features, bitErrorRate, framePeriod);
+				System.out.println(run);
+				passed &= run.isPassed();
+			}
+		}
+		System.exit(passed ? 0 : 1);
+	}
+}
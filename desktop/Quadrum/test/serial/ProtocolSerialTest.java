@@ -0,0 +1,88 @@
+/*
+ * ProtocolSerialTest.java
+ *
+ *       Created on:  Okt 18, 2026
+ *  Last Updated on:  Okt 18, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package serial;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+	Streams frames to a VirtualCube over a simulated serial line, like ProtocolBenchmark, and checks that
+	ProtocolSerial accounts for every queued frame exactly once as displayed, failed or dropped.
+*/
+public class ProtocolSerialTest {
+	private static final int CUBE_SIDE = 4, CHANNEL_COUNT = 3, CHANNEL_SIZE = 8;
+	private static final int FRAMES = 20, FRAME_PERIOD = 80;	// milliseconds, slow enough for every feature set
+	private static final int MAX_CLEAN_LINE_FAILURES = 2;	// a frame due just as the cube gives up waiting for an answer fails
+	private static final int NOISY_FRAMES = 40, NOISY_RUNS = 2;
+	private static final double NOISY_BIT_ERROR_RATE = 3e-3;
+	private static final long TEST_TIMEOUT = 120000;	// milliseconds, a playback blocked by a stuck link never returns
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void displaysFramesOnACleanLine() {
+		ProtocolBenchmark benchmark = new ProtocolBenchmark(CUBE_SIDE, CHANNEL_COUNT, CHANNEL_SIZE, FRAMES);
+		for(int features : ProtocolBenchmark.FEATURE_SETS) {
+			ProtocolBenchmark.Run run = benchmark.run(features, 0, FRAME_PERIOD);
+			assertTrue(run.toString(), run.isPassed());
+			assertEquals(run.toString(), FRAMES, run.getDisplayedFrames() + run.getFailedFrames() + run.getDroppedFrames());
+			assertTrue(run.toString(), run.getDisplayedFrames() >= FRAMES - MAX_CLEAN_LINE_FAILURES);
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void countsEveryFrameOnANoisyLine() {
+		ProtocolBenchmark benchmark = new ProtocolBenchmark(CUBE_SIDE, CHANNEL_COUNT, CHANNEL_SIZE, FRAMES);
+		for(int features : ProtocolBenchmark.FEATURE_SETS) {
+			for(double bitErrorRate : ProtocolBenchmark.BIT_ERROR_RATES) {
+				if(bitErrorRate == 0)
+					continue;
+				ProtocolBenchmark.Run run = benchmark.run(features, bitErrorRate, FRAME_PERIOD);
+				assertTrue(run.toString(), run.isPassed());
+				assertEquals(run.toString(), FRAMES, run.getDisplayedFrames() + run.getFailedFrames() + run.getDroppedFrames());
+			}
+		}
+	}
+
+	// display answers that got garbled or never came must be counted as failed rather than lost, stop and wait
+	// gets one answer per frame so a very noisy line garbles a few of them every run
+	@Test(timeout = TEST_TIMEOUT)
+	public void countsGarbledDisplayAnswersAsFailed() {
+		ProtocolBenchmark benchmark = new ProtocolBenchmark(CUBE_SIDE, CHANNEL_COUNT, CHANNEL_SIZE, NOISY_FRAMES);
+		for(int i = 0; i < NOISY_RUNS; i++) {
+			ProtocolBenchmark.Run run = benchmark.run(VirtualCube.CHECKSUM_FEATURE, NOISY_BIT_ERROR_RATE, FRAME_PERIOD);
+			assertTrue(run.toString(), run.isPassed());
+			assertEquals(run.toString(), NOISY_FRAMES, run.getDisplayedFrames() + run.getFailedFrames() + run.getDroppedFrames());
+		}
+	}
+
+	@Test(timeout = TEST_TIMEOUT)
+	public void countsFramesDroppedByAFullQueue() {
+		ProtocolBenchmark benchmark = new ProtocolBenchmark(CUBE_SIDE, CHANNEL_COUNT, CHANNEL_SIZE, FRAMES);
+		benchmark.setFrameQueuePolicy(FrameQueuePolicy.DROP);
+		ProtocolBenchmark.Run run = benchmark.run(0, 0, 0);	// every frame is due at once, more than the queue holds
+		assertTrue(run.toString(), run.isConnected());
+		assertTrue(run.toString(), run.getDroppedFrames() > 0);
+		assertEquals(run.toString(), FRAMES, run.getDisplayedFrames() + run.getFailedFrames() + run.getDroppedFrames());
+	}
+}
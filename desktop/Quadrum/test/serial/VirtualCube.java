@@ -0,0 +1,685 @@
+/*
+ * VirtualCube.java
+ *
+ *       Created on:  Okt 17, 2026
+ *  Last Updated on:  Okt 17, 2026
+ *           Author:  Gecko Anton https://github.com/geckoanton
+ *
+ * Quadrum is a LED-Cube framework and editor.
+ * Copyright (C) 2020  geckoanton
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package serial;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/*
+	Java port of the firmware's QuadrumSerial, it answers the editor like a cube would without displaying
+	anything. Runs on its own thread on any Transport, usually one end of a PipeTransport, so the protocol can
+	be tested and measured without a cube attached.
+
+	Follows QuadrumSerial.cpp function by function, changes to the protocol there belong here as well. The plane
+	multiplexing a cube does between requests is left out, displayed frames are only counted and kept.
+*/
+public class VirtualCube implements Runnable {
+	public static final int STREAM_WINDOW_FEATURE = 0x01, CHECKSUM_FEATURE = 0x02, DELTA_STREAM_FEATURE = 0x04, CODED_STREAM_FEATURE = 0x08,
+			DATAGRAM_FEATURE = 0x10,	// only advertised with a datagram socket
+			ALL_FEATURES = STREAM_WINDOW_FEATURE | CHECKSUM_FEATURE | DELTA_STREAM_FEATURE | CODED_STREAM_FEATURE | DATAGRAM_FEATURE;
+
+	private static final int MAX_CUBE_SIDE = 8, MAX_CHANNEL_COUNT = 3;
+	private static final long MAX_INIT_RETREIVE_WAIT = 500000, MAX_SERIAL_RETREIVE_WAIT = 10000;	// microseconds
+	private static final int SERIAL_SPEED = 115200, MAX_SERIAL_SPEED = 1000000;
+	private static final int NO_SERIAL_SPEED = 0xFF;
+	private static final int BITS_PER_SERIAL_BYTE = 10;	// start and stop bit
+	private static final byte[] SERIAL_SPEED_PROBE_DATA = {(byte) 0x55, (byte) 0xAA, (byte) 0x0F, (byte) 0xF0};
+	private static final int LEGACY_STREAM_SIZE = 8, MAX_STREAM_SIZE = 64, MIN_STREAM_SIZE = 2;
+	private static final int MAX_STREAM_WINDOW = 8;	// this and MAX_STREAM_SIZE are the firmware's limits, see setStreamLimits
+	private static final int CHUNK_HEADER_SIZE = 6, DELTA_RUN_HEADER_SIZE = 3;
+	private static final int CODED_RUN_TOKEN = 0x80, CODED_REPEAT_RUN_FLAG = 0x40;
+	private static final int CODED_EXTENDED_LENGTH = 0x3F, CODED_LENGTH_BYTE_MAX = 0xFF;
+	private static final int CODED_MIN_ZERO_RUN_LENGTH = 1, CODED_MIN_REPEAT_RUN_LENGTH = 3;
+	private static final int PLACEHOLDER_CHECKSUM_SIZE = 1;
+	private static final int STREAM_OFFSET_SIZE = 2;	// offset of stop and wait packets with checksums, little endian
+	private static final long NO_TIMEOUT = -1;
+	private static final int IDLE_READ_TIMEOUT = 10;	// milliseconds, reads without timeout check for termination this often
+	private static final int LINK_CHECK_TIMEOUT = 1;	// milliseconds, a datagram stream checks for a closed link after idle reads
+
+	private final Transport transport;
+	private final int cubeSide, channelCount, channelSize;
+	private final int voxelDataSize;
+	private int features = ALL_FEATURES;	// advertised on init
+	private int maxStreamSize = MAX_STREAM_SIZE, maxStreamWindow = MAX_STREAM_WINDOW;
+
+	private byte[] writeVoxelData, displayVoxelData;	// 2 buffers because of double buffering
+	private int voxelDataStride;
+	private int previousStride = -1;	// stride before the last packet was written, a packet sent again starts there
+
+	private int streamSize = LEGACY_STREAM_SIZE;	// chosen by the editor on init
+	private byte[] streamBuffer;	// a whole packet, start packet to checksum
+	private int checksumSize = PLACEHOLDER_CHECKSUM_SIZE;
+	private long serialRetrieveWait = MAX_SERIAL_RETREIVE_WAIT;	// raised while a window burst arrives
+	private int serialSpeed = SERIAL_SPEED;
+
+	// window stream state, chunks of a transfer are numbered and written straight to their offset
+	private boolean windowStream = false;
+	private int transferId = 0, displayedTransferId = 0;
+	private boolean transferDisplayed = false;	// displayedTransferId was swapped in, answer a repeated display packet again
+	private boolean[] receivedChunks = new boolean[0];
+	private int maxChunks, acknowledgedChunks;	// every chunk below acknowledgedChunks has been received
+	private int transferChunks;	// chunk count of a delta transfer, 0 for full transfers
+	private int receivedSize;
+
+	// datagram stream state, frames come in on datagramSocket and are displayed once all of their parts arrived
+	private DatagramSocket datagramSocket = null;
+	private boolean datagramStream = false;
+	private int datagramSequence = -1;	// newest frame a part arrived of
+	private boolean[] receivedParts = new boolean[DatagramStream.MAX_PARTS];
+	private int missingParts = 0;	// 0 once the frame was displayed
+
+	private Thread thread = null;
+	private volatile boolean running = false;
+	private volatile int displayedFrames = 0;
+	private volatile Consumer<byte[]> displayListener = null;
+
+	public VirtualCube(Transport transport, int cubeSide, int channelCount, int channelSize) {
+		if(!(channelSize == 1 || channelSize == 2 || channelSize == 4 || channelSize == 8))
+			channelSize = 1;
+
+		this.transport = transport;
+		this.cubeSide = Math.min(cubeSide, MAX_CUBE_SIDE);
+		this.channelCount = Math.min(channelCount, MAX_CHANNEL_COUNT);
+		this.channelSize = channelSize;
+
+		int voxelBitSize = this.cubeSide * this.cubeSide * this.cubeSide * this.channelCount * this.channelSize;
+		voxelDataSize = (voxelBitSize + Byte.SIZE - 1) / Byte.SIZE;
+		writeVoxelData = new byte[voxelDataSize];
+		displayVoxelData = new byte[voxelDataSize];
+		streamBuffer = new byte[CHUNK_HEADER_SIZE + MAX_STREAM_SIZE + 1 + Crc16.SIZE];
+	}
+
+	// features to advertise, call before start to act like an older cube
+	public void setFeatures(int features) {
+		this.features = features & ALL_FEATURES;
+	}
+	// call before start, a cube on a network has more room than the firmware's serial buffers
+	public void setStreamLimits(int maxStreamSize, int maxStreamWindow) {
+		this.maxStreamSize = Math.max(maxStreamSize, MIN_STREAM_SIZE);
+		this.maxStreamWindow = Math.min(maxStreamWindow, 0xFF);
+		streamBuffer = new byte[CHUNK_HEADER_SIZE + this.maxStreamSize + 1 + Crc16.SIZE];
+	}
+	// call before start, frames of a datagram stream are received on socket, see DatagramStream
+	public void setDatagramSocket(DatagramSocket datagramSocket) {
+		this.datagramSocket = datagramSocket;
+	}
+	// called on the cube's thread with a copy of every frame it displays
+	public void setDisplayListener(Consumer<byte[]> displayListener) {
+		this.displayListener = displayListener;
+	}
+	public void start() {
+		if(thread != null)
+			return;
+		running = true;
+		thread = new Thread(this);
+		thread.start();
+	}
+	// stops answering and tells the editor, like a cube calling terminate
+	public void terminate() {
+		if(thread == null)
+			return;
+		running = false;
+		try {
+			thread.join();
+		}
+		catch(InterruptedException e) {
+			e.printStackTrace();
+		}
+		thread = null;
+		sendChar(ProtocolSerial.TERMINATE_COMMUNICATION_PACKET);
+	}
+
+	public int getDisplayedFrames() {
+		return displayedFrames;
+	}
+	public synchronized byte[] getDisplayVoxelData() {
+		return displayVoxelData.clone();
+	}
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public void run() {
+		transport.setSpeed(SERIAL_SPEED);
+		if(!initSerialWait())
+			return;
+
+		// every request gets the full time for its answer, an answer arriving after the next request would be taken for its answer
+		while(running) {
+			if(datagramStream)
+				receiveDatagram();
+			else if(windowStream)
+				while(requestWindow(micros()));
+			else
+				while(requestData(micros()));
+		}
+	}
+
+	private boolean initSerialWait() {
+		byte[] initData = new byte[1];
+		while(running) {
+			if(!retrieveBuffer(NO_TIMEOUT, initData, 0, 1) || (initData[0] & 0xFF) != ProtocolSerial.INIT_REQUEST_PACKET)
+				continue;
+
+			int advertisedFeatures = datagramSocket != null ? features : features & ~DATAGRAM_FEATURE;
+			sendChar(ProtocolSerial.INIT_START_PACKET, cubeSide, channelCount, channelSize,
+					maxStreamSize & 0xFF, maxStreamSize >> 8,	// maximum stream size, little endian
+					advertisedFeatures, maxStreamWindow);
+
+			byte[] initAcknowledge = new byte[1];
+			retrieveBuffer(NO_TIMEOUT, initAcknowledge, 0, 1);
+			if((initAcknowledge[0] & 0xFF) == ProtocolSerial.INIT_ACKNOWLEDGE_PACKET) {
+				byte[] chosenStreamSize = new byte[2];	// stream size chosen by the editor, little endian
+				retrieveBuffer(NO_TIMEOUT, chosenStreamSize, 0, 2);
+				streamSize = (chosenStreamSize[0] & 0xFF) | ((chosenStreamSize[1] & 0xFF) << 8);
+				if(streamSize < MIN_STREAM_SIZE || streamSize > maxStreamSize)
+					streamSize = LEGACY_STREAM_SIZE;
+				byte[] usedFeatures = new byte[1];	// features the editor uses
+				retrieveBuffer(NO_TIMEOUT, usedFeatures, 0, 1);
+				int enabledFeatures = usedFeatures[0] & advertisedFeatures;
+				datagramStream = (enabledFeatures & DATAGRAM_FEATURE) != 0;
+				if((enabledFeatures & CHECKSUM_FEATURE) != 0)
+					checksumSize = Crc16.SIZE;
+				if((enabledFeatures & STREAM_WINDOW_FEATURE) != 0) {
+					windowStream = true;
+					maxChunks = (voxelDataSize + streamSize - 1) / streamSize;	// a chunk covers at least streamSize bytes
+					receivedChunks = new boolean[maxChunks];
+					resetTransfer(0);
+				}
+				negotiateSerialSpeed();
+				return running;
+			}
+		}
+		return false;
+	}
+	private void negotiateSerialSpeed() {
+		byte[] request = new byte[2];	// request packet, number of proposed speeds
+		retrieveBuffer(NO_TIMEOUT, request, 0, 2);
+		if((request[0] & 0xFF) != ProtocolSerial.SERIAL_SPEED_REQUEST_PACKET)
+			return;
+
+		// speeds are proposed fastest first as 4 bytes each (little endian), pick the first one supported
+		int speedIndex = NO_SERIAL_SPEED;
+		int speed = SERIAL_SPEED;
+		byte[] proposedSpeed = new byte[4];
+		for(int i = 0; i < (request[1] & 0xFF); i++) {
+			retrieveBuffer(NO_TIMEOUT, proposedSpeed, 0, 4);
+			int value = 0;
+			for(int j = 3; j >= 0; j--)
+				value = (value << 8) | (proposedSpeed[j] & 0xFF);
+			if(speedIndex == NO_SERIAL_SPEED && value > 0 && value <= MAX_SERIAL_SPEED) {
+				speedIndex = i;
+				speed = value;
+			}
+		}
+		sendChar(ProtocolSerial.SERIAL_SPEED_CONFIRM_PACKET, speedIndex);
+		if(speedIndex == NO_SERIAL_SPEED)
+			return;
+
+		transport.setSpeed(speed);	// the confirmation was sent at the old speed already
+		serialSpeed = speed;
+		long switchTime = micros();
+
+		byte[] probe = new byte[1 + SERIAL_SPEED_PROBE_DATA.length];
+		if(retrieveInitBuffer(probe, probe.length, MAX_INIT_RETREIVE_WAIT)) {
+			boolean validProbe = (probe[0] & 0xFF) == ProtocolSerial.SERIAL_SPEED_PROBE_PACKET;
+			for(int i = 0; i < SERIAL_SPEED_PROBE_DATA.length; i++)
+				validProbe = validProbe && probe[1 + i] == SERIAL_SPEED_PROBE_DATA[i];
+
+			if(validProbe) {
+				probe[0] = (byte) ProtocolSerial.SERIAL_SPEED_PROBE_ACKNOWLEDGE_PACKET;
+				transport.write(probe, 0, probe.length);
+				return;
+			}
+
+			// the editor falls back on its own, switch back at the same time as without a probe
+			sleepMicros(MAX_INIT_RETREIVE_WAIT - (micros() - switchTime));
+		}
+		transport.setSpeed(SERIAL_SPEED);
+		serialSpeed = SERIAL_SPEED;
+	}
+
+	private boolean requestData(long startTime) {
+		if(!clearSerialBuffer(startTime))
+			return false;
+
+		sendChar(ProtocolSerial.STREAM_REQUEST_PACKET);
+
+		// streamBuffer[0] - {streamFormat}/display current voxelData
+		if(!retrieveBuffer(startTime, streamBuffer, 0, 1))
+			return false;
+
+		int streamStartData = streamBuffer[0] & 0xFF;
+		if(streamStartData == ProtocolSerial.STREAM_START_COMPRESSED_PACKET || streamStartData == ProtocolSerial.STREAM_START_RAW_PACKET ||
+				streamStartData == ProtocolSerial.STREAM_START_CODED_PACKET) {
+			// the whole packet is kept for the checksum, the stream is only read once it passed
+			if(!retrieveBuffer(startTime, streamBuffer, 1, getStreamOffsetSize() + streamSize))
+				return false;
+
+			if(!endOfStream(startTime))
+				return false;
+		}
+		else if(streamStartData == ProtocolSerial.DISPLAY_PACKET) {
+			if(voxelDataStride == voxelDataSize) {
+				swapDisplayBuffer();
+				sendChar(ProtocolSerial.FRAME_DISPLAYED_PACKET);
+			}
+			else {
+				sendChar(ProtocolSerial.FRAME_FAILED_PACKET);
+			}
+			voxelDataStride = 0;
+			previousStride = -1;
+		}
+		return true;
+	}
+	private boolean endOfStream(long startTime) {
+		int start = 1 + getStreamOffsetSize();
+		int end = start + streamSize;
+		if(!retrieveBuffer(startTime, streamBuffer, end, 1 + checksumSize))
+			return false;
+
+		// streamBuffer[1..2] - offset with checksums, streamBuffer[end] - end of stream packet, streamBuffer[end + 1..] - checksum
+		if((streamBuffer[end] & 0xFF) == ProtocolSerial.STREAM_END_PACKET && isChecksumValid(streamBuffer, 0, end + 1)) {
+			if(start > 1) {
+				int offset = (streamBuffer[1] & 0xFF) | ((streamBuffer[2] & 0xFF) << 8);
+				if(offset != (voxelDataStride & 0xFFFF)) {
+					// sent again because the acknowledge got lost, it is already written
+					boolean resent = offset == (previousStride & 0xFFFF);
+					sendChar(resent ? ProtocolSerial.STREAM_ACKNOWLEDGE_PACKET : ProtocolSerial.STREAM_CORRUPTED_PACKET);
+					return true;
+				}
+			}
+
+			int increasedStride;
+			if((streamBuffer[0] & 0xFF) == ProtocolSerial.STREAM_START_COMPRESSED_PACKET)
+				increasedStride = readCompressedStream(streamBuffer, start, streamSize, voxelDataStride);
+			else if((streamBuffer[0] & 0xFF) == ProtocolSerial.STREAM_START_CODED_PACKET)
+				increasedStride = readCodedStream(streamBuffer, start, streamSize, voxelDataStride);
+			else
+				increasedStride = readRawStream(streamBuffer, start, streamSize, voxelDataStride);
+
+			sendChar(ProtocolSerial.STREAM_ACKNOWLEDGE_PACKET);
+			previousStride = voxelDataStride;
+			if(voxelDataStride + increasedStride <= voxelDataSize)
+				voxelDataStride += increasedStride;
+		}
+		else {
+			sendChar(ProtocolSerial.STREAM_CORRUPTED_PACKET);	// the editor sends the same packet again
+		}
+		return true;
+	}
+	private int getStreamOffsetSize() {
+		return checksumSize == Crc16.SIZE ? STREAM_OFFSET_SIZE : 0;
+	}
+	private boolean isChecksumValid(byte[] packet, int offset, int packetSize) {
+		if(checksumSize != Crc16.SIZE)
+			return true;	// placeholder byte of editors without checksums
+		int checksum = (packet[offset + packetSize] & 0xFF) | ((packet[offset + packetSize + 1] & 0xFF) << 8);
+		return Crc16.compute(packet, offset, packetSize) == checksum;
+	}
+
+	// the stream starts at start in stream, returns number of voxel data bytes written
+	private int readRawStream(byte[] stream, int start, int streamSize, int offset) {
+		int written = 0;
+		for(int i = 0; i < streamSize && offset + i < voxelDataSize; i++) {
+			writeVoxelData[offset + i] = stream[start + i];
+			written++;
+		}
+		return written;
+	}
+	private int readCompressedStream(byte[] stream, int start, int streamSize, int offset) {
+		int written = 0;
+		for(int i = 0; i + 1 < streamSize && offset + written < voxelDataSize; i += 2) {
+			// stream[i + 0] - one byte in voxelData, stream[i + 1] - number of bytes to apply stream[i + 0] to in voxelData
+			for(int j = 0; j < stream[start + i + 1] && offset + written < voxelDataSize; j++) {
+				writeVoxelData[offset + written] = stream[start + i];
+				written++;
+			}
+		}
+		return written;
+	}
+	private int readCodedStream(byte[] stream, int start, int streamSize, int offset) {
+		// literal runs (token is the length), zero runs and repeat runs (value follows), 0 ends the stream
+		int written = 0;
+		int i = 0;
+		while(i < streamSize && offset + written < voxelDataSize) {
+			int token = stream[start + i++] & 0xFF;
+			if(token == 0)
+				break;
+
+			if(token < CODED_RUN_TOKEN) {
+				for(int j = 0; j < token && i < streamSize && offset + written < voxelDataSize; j++)
+					writeVoxelData[offset + written++] = stream[start + i++];
+				continue;
+			}
+
+			int length = token & CODED_EXTENDED_LENGTH;
+			if(length == CODED_EXTENDED_LENGTH) {	// length continues in the next bytes
+				int lengthByte = CODED_LENGTH_BYTE_MAX;
+				while(lengthByte == CODED_LENGTH_BYTE_MAX && i < streamSize) {
+					lengthByte = stream[start + i++] & 0xFF;
+					length += lengthByte;
+				}
+			}
+			byte value = 0;
+			if((token & CODED_REPEAT_RUN_FLAG) != 0) {
+				length += CODED_MIN_REPEAT_RUN_LENGTH;
+				if(i < streamSize)
+					value = stream[start + i++];
+			}
+			else {
+				length += CODED_MIN_ZERO_RUN_LENGTH;
+			}
+			for(int j = 0; j < length && offset + written < voxelDataSize; j++)
+				writeVoxelData[offset + written++] = value;
+		}
+		return written;
+	}
+	private void readDeltaStream(byte[] stream, int start, int streamSize) {
+		// runs of offset (little endian), length and length bytes, a run of length 0 ends the stream
+		for(int i = 0; i + DELTA_RUN_HEADER_SIZE < streamSize;) {
+			int offset = (stream[start + i] & 0xFF) | ((stream[start + i + 1] & 0xFF) << 8);
+			int length = stream[start + i + 2] & 0xFF;
+			if(length == 0)
+				break;
+			i += DELTA_RUN_HEADER_SIZE;
+			for(int j = 0; j < length && i < streamSize; j++, i++) {
+				if(offset + j < voxelDataSize)
+					writeVoxelData[offset + j] = stream[start + i];
+			}
+		}
+	}
+
+	// window stream, see QuadrumSerial::requestWindow
+	private boolean requestWindow(long startTime) {
+		if(!clearSerialBuffer(startTime))
+			return false;
+
+		byte[] request = new byte[ProtocolSerial.WINDOW_REQUEST_SIZE + Crc16.SIZE];
+		request[0] = (byte) ProtocolSerial.STREAM_WINDOW_REQUEST_PACKET;
+		request[1] = (byte) transferId;
+		request[2] = (byte) acknowledgedChunks;
+		request[3] = (byte) (acknowledgedChunks >> 8);
+		request[4] = (byte) getSelectiveAcknowledge();
+		int requestSize = ProtocolSerial.WINDOW_REQUEST_SIZE;
+		if(checksumSize == Crc16.SIZE) {	// a corrupted request could otherwise acknowledge chunks or end the connection
+			ProtocolSerial.writeChecksum(request, 0, requestSize, checksumSize);
+			requestSize += Crc16.SIZE;
+		}
+		transport.write(request, 0, requestSize);
+
+		// response[0] - window/display packet, response[1] - chunk count/transfer id to display
+		byte[] response = new byte[2];
+		if(!retrieveBuffer(startTime, response, 0, 2))
+			return false;
+
+		if((response[0] & 0xFF) == ProtocolSerial.STREAM_WINDOW_PACKET) {
+			int chunkCount = Math.min(response[1] & 0xFF, maxStreamWindow);
+			int chunkSize = CHUNK_HEADER_SIZE + streamSize + 1 + checksumSize;
+
+			// a burst takes longer than a single packet
+			long burstStartTime = micros();
+			serialRetrieveWait = MAX_SERIAL_RETREIVE_WAIT + getTransferTime(chunkCount * chunkSize);
+			boolean filled = true;
+			for(int i = 0; i < chunkCount && filled; i++) {
+				filled = retrieveBuffer(burstStartTime, streamBuffer, 0, chunkSize);
+				if(filled)
+					readChunk(streamBuffer);
+			}
+			serialRetrieveWait = MAX_SERIAL_RETREIVE_WAIT;
+			return filled;
+		}
+		else if((response[0] & 0xFF) == ProtocolSerial.DISPLAY_PACKET) {
+			int displayId = response[1] & 0xFF;
+			if(transferDisplayed && displayId == displayedTransferId) {
+				sendChar(ProtocolSerial.FRAME_DISPLAYED_PACKET);	// the previous answer got lost
+			}
+			else if(displayId == transferId && (transferChunks > 0 ? acknowledgedChunks >= transferChunks : receivedSize >= voxelDataSize)) {
+				swapDisplayBuffer();
+				sendChar(ProtocolSerial.FRAME_DISPLAYED_PACKET);
+				resetTransfer(transferId);
+				displayedTransferId = displayId;
+				transferDisplayed = true;
+			}
+			else {
+				sendChar(ProtocolSerial.FRAME_FAILED_PACKET);
+				resetTransfer(transferId);
+			}
+		}
+		else {
+			// out of step with the editor, most likely in the middle of a burst sent twice, let it pass before asking again
+			skipSerialBytes();
+			return false;
+		}
+		return true;
+	}
+	// datagram stream, see DatagramStream
+	private void receiveDatagram() {
+		byte[] datagram = new byte[DatagramStream.HEADER_SIZE + DatagramStream.MAX_STREAM_SIZE + Crc16.SIZE];
+		DatagramPacket packet = new DatagramPacket(datagram, datagram.length);
+		try {
+			datagramSocket.setSoTimeout(IDLE_READ_TIMEOUT);
+			datagramSocket.receive(packet);
+		}
+		catch(SocketTimeoutException e) {
+			// nothing is sent on the link during a datagram stream, it only ends
+			if(transport.read(new byte[1], 0, 1, LINK_CHECK_TIMEOUT) < 0)
+				running = false;
+			return;
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			running = false;
+			return;
+		}
+		readDatagram(datagram, packet.getLength());
+	}
+	private void readDatagram(byte[] datagram, int length) {
+		// datagram[0] - frame packet, datagram[1] - stream format, datagram[2..3] - sequence, datagram[4] - part,
+		// datagram[5] - part count, datagram[6..7] - offset (little endian)
+		int streamLength = length - DatagramStream.HEADER_SIZE - Crc16.SIZE;
+		if(streamLength < 0 || (datagram[0] & 0xFF) != ProtocolSerial.DATAGRAM_FRAME_PACKET)
+			return;
+		int checksum = (datagram[length - Crc16.SIZE] & 0xFF) | ((datagram[length - Crc16.SIZE + 1] & 0xFF) << 8);
+		if(Crc16.compute(datagram, 0, length - Crc16.SIZE) != checksum)
+			return;	// corrupted, the same as lost
+
+		int format = datagram[1] & 0xFF;
+		int sequence = (datagram[2] & 0xFF) | ((datagram[3] & 0xFF) << 8);
+		int part = datagram[4] & 0xFF;
+		int partCount = datagram[5] & 0xFF;
+		int offset = (datagram[6] & 0xFF) | ((datagram[7] & 0xFF) << 8);
+		if(part >= partCount || offset >= voxelDataSize ||
+				(format != ProtocolSerial.STREAM_START_CODED_PACKET && format != ProtocolSerial.STREAM_START_RAW_PACKET))
+			return;
+
+		if(datagramSequence < 0 || (short) (sequence - datagramSequence) > 0) {
+			// first part of a newer frame, the current one is skipped if a part of it got lost
+			if(missingParts > 0)
+				sendChar(ProtocolSerial.FRAME_FAILED_PACKET);
+			for(int i = datagramSequence < 0 ? 1 : (short) (sequence - datagramSequence); i > 1; i--)
+				sendChar(ProtocolSerial.FRAME_FAILED_PACKET);	// frames none of the datagrams arrived of
+			datagramSequence = sequence;
+			missingParts = partCount;
+			Arrays.fill(receivedParts, false);
+		}
+		else if(sequence != datagramSequence || missingParts == 0 || receivedParts[part]) {
+			return;	// an older frame, or displayed or received already
+		}
+
+		// the stream was cut after its last byte that is not 0
+		byte[] stream = Arrays.copyOfRange(datagram, DatagramStream.HEADER_SIZE, DatagramStream.HEADER_SIZE + DatagramStream.MAX_STREAM_SIZE);
+		Arrays.fill(stream, streamLength, stream.length, (byte) 0);
+		if(format == ProtocolSerial.STREAM_START_CODED_PACKET)
+			readCodedStream(stream, 0, stream.length, offset);
+		else
+			readRawStream(stream, 0, stream.length, offset);
+
+		receivedParts[part] = true;
+		missingParts--;
+		if(missingParts == 0) {
+			swapDisplayBuffer();
+			sendChar(ProtocolSerial.FRAME_DISPLAYED_PACKET);
+		}
+	}
+	private void readChunk(byte[] chunk) {
+		// chunk[0] - stream format, chunk[1] - transfer id, chunk[2..3] - sequence, chunk[4..5] - offset (little endian)
+		int format = chunk[0] & 0xFF;
+		if((format != ProtocolSerial.STREAM_START_COMPRESSED_PACKET && format != ProtocolSerial.STREAM_START_RAW_PACKET &&
+				format != ProtocolSerial.STREAM_START_CODED_PACKET && format != ProtocolSerial.STREAM_START_DELTA_PACKET) ||
+				(chunk[CHUNK_HEADER_SIZE + streamSize] & 0xFF) != ProtocolSerial.STREAM_END_PACKET ||
+				!isChecksumValid(chunk, 0, CHUNK_HEADER_SIZE + streamSize + 1))
+			return;	// corrupted, never acknowledged so it will be sent again
+
+		int chunkTransferId = chunk[1] & 0xFF;
+		int sequence = (chunk[2] & 0xFF) | ((chunk[3] & 0xFF) << 8);
+		int offset = (chunk[4] & 0xFF) | ((chunk[5] & 0xFF) << 8);
+
+		if(chunkTransferId != transferId)
+			resetTransfer(chunkTransferId);	// the editor moved on to another frame
+		if(format == ProtocolSerial.STREAM_START_DELTA_PACKET) {
+			// offset holds the transfer's chunk count, the first delta chunk starts from the displayed frame
+			if(sequence >= maxChunks || offset == 0 || offset > maxChunks || receivedChunks[sequence])
+				return;
+			if(transferChunks == 0) {
+				System.arraycopy(displayVoxelData, 0, writeVoxelData, 0, voxelDataSize);
+				transferChunks = offset;
+			}
+			readDeltaStream(chunk, CHUNK_HEADER_SIZE, streamSize);
+		}
+		else if(sequence >= maxChunks || offset >= voxelDataSize || receivedChunks[sequence])
+			return;
+		else if(format == ProtocolSerial.STREAM_START_COMPRESSED_PACKET)
+			receivedSize += readCompressedStream(chunk, CHUNK_HEADER_SIZE, streamSize, offset);
+		else if(format == ProtocolSerial.STREAM_START_CODED_PACKET)
+			receivedSize += readCodedStream(chunk, CHUNK_HEADER_SIZE, streamSize, offset);
+		else
+			receivedSize += readRawStream(chunk, CHUNK_HEADER_SIZE, streamSize, offset);
+
+		receivedChunks[sequence] = true;
+		while(acknowledgedChunks < maxChunks && receivedChunks[acknowledgedChunks])
+			acknowledgedChunks++;
+	}
+	private void resetTransfer(int transferId) {
+		if(transferId != this.transferId)
+			transferDisplayed = false;
+		this.transferId = transferId;
+		Arrays.fill(receivedChunks, false);
+		acknowledgedChunks = 0;
+		transferChunks = 0;
+		receivedSize = 0;
+	}
+	// bit i set if chunk acknowledgedChunks + 1 + i was received
+	private int getSelectiveAcknowledge() {
+		int acknowledge = 0;
+		for(int i = 0; i < Byte.SIZE && acknowledgedChunks + 1 + i < maxChunks; i++) {
+			if(receivedChunks[acknowledgedChunks + 1 + i])
+				acknowledge |= 1 << i;
+		}
+		return acknowledge;
+	}
+	// microseconds
+	private long getTransferTime(int byteCount) {
+		return ((long) byteCount * BITS_PER_SERIAL_BYTE * 1000000) / serialSpeed;
+	}
+
+	private synchronized void swapDisplayBuffer() {
+		byte[] t = displayVoxelData;
+		displayVoxelData = writeVoxelData;
+		writeVoxelData = t;
+		displayedFrames++;
+
+		Consumer<byte[]> listener = displayListener;
+		if(listener != null)
+			listener.accept(displayVoxelData.clone());
+	}
+	private boolean clearSerialBuffer(long startTime) {
+		byte[] trashBin = new byte[streamBuffer.length];
+		while(transport.available() > 0 && hasTimeLeft(startTime))
+			transport.read(trashBin, 0, trashBin.length, 0);
+		return transport.available() <= 0;
+	}
+	// reads until nothing arrived for serialRetrieveWait
+	private void skipSerialBytes() {
+		byte[] trashBin = new byte[streamBuffer.length];
+		long lastByteTime = micros();
+		while(running && hasTimeLeft(lastByteTime)) {
+			int count = transport.read(trashBin, 0, trashBin.length, (int) Math.max((serialRetrieveWait - (micros() - lastByteTime)) / 1000, 1));
+			if(count < 0)
+				running = false;	// the link is gone
+			else if(count > 0)
+				lastByteTime = micros();
+		}
+	}
+	// startTime NO_TIMEOUT waits until the buffer is filled or the cube is terminated
+	private boolean retrieveBuffer(long startTime, byte[] buffer, int offset, int bufferSize) {
+		return fillBuffer(buffer, offset, bufferSize, startTime == NO_TIMEOUT ? NO_TIMEOUT : startTime + serialRetrieveWait);
+	}
+	// returns true if buffer was filled within timeout microseconds
+	private boolean retrieveInitBuffer(byte[] buffer, int bufferSize, long timeout) {
+		return fillBuffer(buffer, 0, bufferSize, micros() + timeout);
+	}
+	private boolean fillBuffer(byte[] buffer, int offset, int bufferSize, long deadline) {
+		int i = 0;
+		while(i < bufferSize) {
+			long timeLeft = deadline == NO_TIMEOUT ? IDLE_READ_TIMEOUT * 1000L : deadline - micros();
+			if(timeLeft <= 0 || !running)
+				return false;
+
+			int count = transport.read(buffer, offset + i, bufferSize - i, (int) Math.max(timeLeft / 1000, 1));
+			if(count < 0)
+				running = false;	// the link is gone
+			else
+				i += count;
+		}
+		return true;
+	}
+	private void sendChar(int ... data) {
+		byte[] bytes = new byte[data.length];
+		for(int i = 0; i < data.length; i++)
+			bytes[i] = (byte) data[i];
+		transport.write(bytes, 0, bytes.length);
+	}
+	private boolean hasTimeLeft(long startTime) {
+		return startTime == NO_TIMEOUT || micros() - startTime < serialRetrieveWait;
+	}
+
+	private static long micros() {
+		return System.nanoTime() / 1000;
+	}
+	private static void sleepMicros(long time) {
+		if(time <= 0)
+			return;
+		try {
+			Thread.sleep(time / 1000, (int) (time % 1000) * 1000);
+		}
+		catch(InterruptedException e) {}
+	}
+}